@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser.flow;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import io.github.xstream.mxparser.EventBatch;
+import io.github.xstream.mxparser.MXParser;
+
+
+/**
+ * Publisher of the events of a {@link MXParser} for {@link Flow} subscribers.
+ * <p>
+ * The events are delivered in {@link EventBatch} instances filled with {@link MXParser#nextBatch(EventBatch)}. The
+ * parser reads the next batch only when the subscriber has requested it, reading the input is therefore driven by the
+ * demand of the subscriber and the memory of a stream is bounded by the parser's buffer and a single batch, no matter
+ * how fast the subscriber consumes. The parser and the batch are used by the thread of the executor, a blocking input
+ * blocks this thread.
+ * </p>
+ * <p>
+ * A publisher created with {@link #batches(MXParser, int, Executor)} delivers always the same batch instance, it is
+ * refilled after {@link Flow.Subscriber#onNext(Object)} returns. Subscribers that process the events asynchronously
+ * should use {@link #records(MXParser, int, Executor, Function)} instead and map each batch to their own records. The
+ * publisher parses a single document and supports therefore only one subscriber. The parser must read its input from
+ * a reader or an input stream, feed mode is not supported. Reactive Streams subscribers can be connected with
+ * <code>org.reactivestreams.FlowAdapters</code>.
+ * </p>
+ *
+ * @param <T> the type of the published items
+ */
+public final class MXParserPublisher<T> implements Flow.Publisher<T> {
+
+    private final MXParser parser;
+    private final int capacity;
+    private final Executor executor;
+    private final Function<EventBatch, ? extends T> mapper;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    private MXParserPublisher(
+            final MXParser parser, final int capacity, final Executor executor,
+            final Function<EventBatch, ? extends T> mapper) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive and not " + capacity);
+        }
+        this.parser = Objects.requireNonNull(parser, "parser");
+        this.capacity = capacity;
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.mapper = Objects.requireNonNull(mapper, "mapper");
+    }
+
+    /**
+     * Create a publisher of reused event batches.
+     *
+     * @param parser the parser with its input set
+     * @param capacity the maximum number of events in a batch
+     * @param executor the executor used to parse and to signal the subscriber
+     * @return the publisher
+     */
+    public static MXParserPublisher<EventBatch> batches(
+            final MXParser parser, final int capacity, final Executor executor) {
+        return new MXParserPublisher<>(parser, capacity, executor, Function.identity());
+    }
+
+    /**
+     * Create a publisher of records mapped from the event batches. Batches mapped to null are skipped without
+     * consuming demand.
+     *
+     * @param parser the parser with its input set
+     * @param capacity the maximum number of events in a batch
+     * @param executor the executor used to parse and to signal the subscriber
+     * @param mapper the function mapping a batch to a record, called with the reused batch
+     * @param <T> the type of the records
+     * @return the publisher
+     */
+    public static <T> MXParserPublisher<T> records(
+            final MXParser parser, final int capacity, final Executor executor,
+            final Function<EventBatch, ? extends T> mapper) {
+        return new MXParserPublisher<>(parser, capacity, executor, mapper);
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(final long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("publisher supports only a single subscriber"));
+            return;
+        }
+        final BatchSubscription subscription = new BatchSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private final class BatchSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final EventBatch batch = new EventBatch(capacity);
+        private final AtomicLong demand = new AtomicLong();
+        // number of pending drain requests, only the request incrementing it from zero starts a drain
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private boolean done;
+
+        BatchSubscription(final Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("requested number of items must be positive and not "
+                    + n);
+            } else {
+                long current;
+                do {
+                    current = demand.get();
+                } while (!demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void schedule() {
+            if (work.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (final RuntimeException e) {
+                    cancelled = true;
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            while (!done && !cancelled) {
+                if (invalidRequest != null) {
+                    done = true;
+                    subscriber.onError(invalidRequest);
+                    return;
+                }
+                if (demand.get() == 0) {
+                    return;
+                }
+                final T item;
+                final boolean end;
+                try {
+                    final int size = parser.nextBatch(batch);
+                    if (size == 0 && parser.getEventType() != XmlPullParser.END_DOCUMENT) {
+                        throw new XmlPullParserException("no complete event available, feed mode is not supported",
+                            parser, null);
+                    }
+                    end = size == 0 || batch.getType(size - 1) == XmlPullParser.END_DOCUMENT;
+                    item = size == 0 ? null : mapper.apply(batch);
+                } catch (final Exception e) {
+                    done = true;
+                    subscriber.onError(e);
+                    return;
+                }
+                if (item != null) {
+                    demand.decrementAndGet();
+                    subscriber.onNext(item);
+                }
+                if (end) {
+                    done = true;
+                    if (!cancelled) {
+                        subscriber.onComplete();
+                    }
+                }
+            }
+        }
+    }
+}
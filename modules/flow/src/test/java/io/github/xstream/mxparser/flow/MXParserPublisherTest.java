@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser.flow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import io.github.xstream.mxparser.EventBatch;
+import io.github.xstream.mxparser.MXParser;
+
+import org.junit.Test;
+
+public class MXParserPublisherTest
+{
+    private static final String XML = "<orders><order id='1'>a</order><order id='2'>b</order>"
+        + "<order id='3'>c</order></orders>";
+
+    private static MXParser newParser( String xml )
+        throws Exception
+    {
+        MXParser parser = new MXParser();
+        parser.setInput( new StringReader( xml ) );
+        return parser;
+    }
+
+    private static class Recorder<T> implements Flow.Subscriber<T>
+    {
+        final List<String> items = new ArrayList<String>();
+        final CountDownLatch terminated = new CountDownLatch( 1 );
+        final long initial;
+        final boolean requestMore;
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        Recorder( long initial, boolean requestMore )
+        {
+            this.initial = initial;
+            this.requestMore = requestMore;
+        }
+
+        public void onSubscribe( Flow.Subscription subscription )
+        {
+            this.subscription = subscription;
+            subscription.request( initial );
+        }
+
+        public void onNext( T item )
+        {
+            if ( item instanceof EventBatch )
+            {
+                EventBatch batch = (EventBatch) item;
+                StringBuilder sb = new StringBuilder();
+                for ( int i = 0; i < batch.size(); i++ )
+                {
+                    sb.append( XmlPullParser.TYPES[batch.getType( i )].charAt( 0 ) );
+                }
+                items.add( sb.toString() );
+            }
+            else
+            {
+                items.add( String.valueOf( item ) );
+            }
+            if ( requestMore )
+            {
+                subscription.request( 1 );
+            }
+        }
+
+        public void onError( Throwable throwable )
+        {
+            error = throwable;
+            terminated.countDown();
+        }
+
+        public void onComplete()
+        {
+            completed = true;
+            terminated.countDown();
+        }
+    }
+
+    @Test
+    public void testBatchesOnDemand()
+        throws Exception
+    {
+        Recorder<EventBatch> recorder = new Recorder<EventBatch>( 1, true );
+        MXParserPublisher.batches( newParser( XML ), 4, Runnable::run ).subscribe( recorder );
+        assertTrue( recorder.completed );
+        assertNull( recorder.error );
+        assertEquals( "[SSTE, STES, TEEE]", recorder.items.toString() );
+    }
+
+    @Test
+    public void testBoundedDemand()
+        throws Exception
+    {
+        MXParser parser = newParser( XML );
+        Recorder<EventBatch> recorder = new Recorder<EventBatch>( 2, false );
+        MXParserPublisher.batches( parser, 2, Runnable::run ).subscribe( recorder );
+        assertEquals( 2, recorder.items.size() );
+        assertFalse( recorder.completed );
+        assertEquals( 2, parser.getDepth() );
+        recorder.subscription.request( Long.MAX_VALUE );
+        recorder.subscription.request( Long.MAX_VALUE );
+        assertTrue( recorder.completed );
+        assertEquals( 6, recorder.items.size() );
+    }
+
+    @Test
+    public void testRecordsOnExecutor()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Recorder<String> recorder = new Recorder<String>( 1, true );
+            MXParserPublisher.records( newParser( XML ), 1, executor, batch ->
+                batch.getType( 0 ) == XmlPullParser.START_TAG && batch.equals( 0, "order" )
+                    ? batch.getAttributeValue( batch.getAttributeStart( 0 ) ) : null ).subscribe( recorder );
+            assertTrue( recorder.terminated.await( 10, TimeUnit.SECONDS ) );
+            assertTrue( recorder.completed );
+            assertEquals( "[1, 2, 3]", recorder.items.toString() );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancel()
+        throws Exception
+    {
+        Recorder<EventBatch> recorder = new Recorder<EventBatch>( 1, false );
+        MXParserPublisher.batches( newParser( XML ), 1, Runnable::run ).subscribe( recorder );
+        recorder.subscription.cancel();
+        recorder.subscription.request( 5 );
+        assertEquals( 1, recorder.items.size() );
+        assertFalse( recorder.completed );
+    }
+
+    @Test
+    public void testErrors()
+        throws Exception
+    {
+        MXParserPublisher<EventBatch> publisher = MXParserPublisher.batches( newParser( "<a></b>" ), 8, Runnable::run );
+        Recorder<EventBatch> recorder = new Recorder<EventBatch>( 1, false );
+        publisher.subscribe( recorder );
+        assertTrue( recorder.error.getMessage().startsWith( "end tag name </b> must be the same as start tag <a>" ) );
+
+        Recorder<EventBatch> second = new Recorder<EventBatch>( 1, false );
+        publisher.subscribe( second );
+        assertTrue( second.error instanceof IllegalStateException );
+
+        Recorder<EventBatch> invalid = new Recorder<EventBatch>( 0, false );
+        MXParserPublisher.batches( newParser( XML ), 8, Runnable::run ).subscribe( invalid );
+        assertTrue( invalid.error instanceof IllegalArgumentException );
+    }
+}
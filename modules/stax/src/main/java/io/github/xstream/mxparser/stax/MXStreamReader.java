@@ -0,0 +1,538 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser.stax;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import io.github.xstream.mxparser.MXParser;
+
+
+/**
+ * StAX stream reader backed by a {@link MXParser}.
+ * <p>
+ * The reader delivers the events of {@link MXParser#next()}: adjacent text, entity references and CDATA sections are
+ * always coalesced into one CHARACTERS event, comments and processing instructions are not reported. The text
+ * methods {@link #getTextCharacters()}, {@link #getTextStart()} and {@link #getTextLength()} return the internal
+ * buffer of the parser without copying, the content of the array is only valid until the next event. Namespace
+ * processing is controlled by the features of the parser. In feed or follow mode the methods advancing the reader
+ * throw a {@link XMLStreamException} if the available data does not contain the next complete event. The reader stays
+ * then at the last complete event and {@link #next()} can be called again when more data is available.
+ * </p>
+ * <p>
+ * The StAX API is not part of Java 1.4, therefore the class is kept in the separate module mxparser-stax.
+ * </p>
+ */
+public class MXStreamReader implements XMLStreamReader {
+
+    private static final String PROPERTY_XMLDECL_VERSION =
+        "http://xmlpull.org/v1/doc/properties.html#xmldecl-version";
+    private static final String PROPERTY_XMLDECL_STANDALONE =
+        "http://xmlpull.org/v1/doc/properties.html#xmldecl-standalone";
+    private static final String PROPERTY_XMLDECL_CONTENT =
+        "http://xmlpull.org/v1/doc/properties.html#xmldecl-content";
+
+    private final MXParser parser;
+    private final int[] holder = new int[2];
+    private int eventType;
+    private char[] text;
+
+    /**
+     * Create a reader.
+     *
+     * @param parser the parser with its input set, the reader starts with the current event of the parser
+     */
+    public MXStreamReader(MXParser parser) throws XmlPullParserException {
+        this.parser = parser;
+        update(parser.getEventType());
+    }
+
+    /**
+     * Retrieve the underlying parser.
+     */
+    public MXParser getParser() {
+        return parser;
+    }
+
+    private void update(int type) {
+        switch (type) {
+        case XmlPullParser.START_TAG:
+            eventType = START_ELEMENT;
+            break;
+        case XmlPullParser.END_TAG:
+            eventType = END_ELEMENT;
+            break;
+        case XmlPullParser.TEXT:
+            eventType = CHARACTERS;
+            break;
+        case XmlPullParser.END_DOCUMENT:
+            eventType = END_DOCUMENT;
+            break;
+        default:
+            eventType = START_DOCUMENT;
+        }
+        text = eventType == CHARACTERS ? parser.getTextCharacters(holder) : null;
+    }
+
+    private XMLStreamException toStreamException(Exception e) {
+        return new XMLStreamException(e.getMessage(), getLocation(), e);
+    }
+
+    public Object getProperty(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("property name should not be null");
+        }
+        if (XMLInputFactory.IS_COALESCING.equals(name)) {
+            return Boolean.TRUE;
+        } else if (XMLInputFactory.IS_NAMESPACE_AWARE.equals(name)) {
+            return parser.getFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES) ? Boolean.TRUE : Boolean.FALSE;
+        }
+        return null;
+    }
+
+    public int next() throws XMLStreamException {
+        if (eventType == END_DOCUMENT) {
+            throw new NoSuchElementException("already reached end of XML input");
+        }
+        final int type;
+        try {
+            type = parser.next();
+        } catch (final XmlPullParserException e) {
+            throw toStreamException(e);
+        } catch (final IOException e) {
+            throw toStreamException(e);
+        }
+        if (type == MXParser.EVENT_INCOMPLETE) {
+            throw new XMLStreamException("no complete event available, more input is needed", getLocation());
+        }
+        update(type);
+        return eventType;
+    }
+
+    public void require(int type, String namespaceURI, String localName) throws XMLStreamException {
+        if (type != eventType) {
+            throw new XMLStreamException("expected event " + eventName(type) + " but got " + eventName(eventType),
+                getLocation());
+        }
+        if (localName != null) {
+            if (!hasName()) {
+                throw new XMLStreamException("expected local name '" + localName + "' but current event has no name",
+                    getLocation());
+            } else if (!localName.equals(getLocalName())) {
+                throw new XMLStreamException("expected local name '" + localName + "' but got '" + getLocalName()
+                    + "'", getLocation());
+            }
+        }
+        if (namespaceURI != null) {
+            if (!hasName()) {
+                throw new XMLStreamException("expected namespace '" + namespaceURI
+                    + "' but current event has no name", getLocation());
+            }
+            final String uri = getNamespaceURI();
+            if (!namespaceURI.equals(uri == null ? XMLConstants.NULL_NS_URI : uri)) {
+                throw new XMLStreamException("expected namespace '" + namespaceURI + "' but got '" + uri + "'",
+                    getLocation());
+            }
+        }
+    }
+
+    private static String eventName(int type) {
+        switch (type) {
+        case START_ELEMENT:
+            return "START_ELEMENT";
+        case END_ELEMENT:
+            return "END_ELEMENT";
+        case CHARACTERS:
+            return "CHARACTERS";
+        case START_DOCUMENT:
+            return "START_DOCUMENT";
+        case END_DOCUMENT:
+            return "END_DOCUMENT";
+        default:
+            return String.valueOf(type);
+        }
+    }
+
+    public String getElementText() throws XMLStreamException {
+        if (eventType != START_ELEMENT) {
+            throw new XMLStreamException("parser must be on START_ELEMENT to read next text", getLocation());
+        }
+        // advance with next() to detect an incomplete event in feed mode, the text is coalesced into one event
+        String result = "";
+        if (next() == CHARACTERS) {
+            result = getText();
+            next();
+        }
+        if (eventType != END_ELEMENT) {
+            throw new XMLStreamException("element text must be followed by END_ELEMENT not "
+                + eventName(eventType), getLocation());
+        }
+        return result;
+    }
+
+    public int nextTag() throws XMLStreamException {
+        next();
+        if (isWhiteSpace()) {
+            next();
+        }
+        if (eventType != START_ELEMENT && eventType != END_ELEMENT) {
+            throw new XMLStreamException("expected START_ELEMENT or END_ELEMENT not " + eventName(eventType),
+                getLocation());
+        }
+        return eventType;
+    }
+
+    public boolean hasNext() {
+        return eventType != END_DOCUMENT;
+    }
+
+    /**
+     * Close the reader. The underlying input is not closed.
+     */
+    public void close() {
+    }
+
+    public String getNamespaceURI(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("prefix should not be null");
+        }
+        return emptyToNull(parser.getNamespace(prefix.length() == 0 ? null : prefix));
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.length() == 0 ? null : s;
+    }
+
+    public boolean isStartElement() {
+        return eventType == START_ELEMENT;
+    }
+
+    public boolean isEndElement() {
+        return eventType == END_ELEMENT;
+    }
+
+    public boolean isCharacters() {
+        return eventType == CHARACTERS;
+    }
+
+    public boolean isWhiteSpace() {
+        try {
+            return eventType == CHARACTERS && parser.isWhitespace();
+        } catch (final XmlPullParserException e) {
+            return false;
+        }
+    }
+
+    private void requireStartElement() {
+        if (eventType != START_ELEMENT) {
+            throw new IllegalStateException("only START_ELEMENT can have attributes");
+        }
+    }
+
+    public String getAttributeValue(String namespaceURI, String localName) {
+        requireStartElement();
+        final int count = parser.getAttributeCount();
+        for (int i = 0; i < count; i++) {
+            if (localName.equals(getAttributeLocalName(i))
+                && (namespaceURI == null || namespaceURI.equals(parser.getAttributeNamespace(i)))) {
+                return parser.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    public int getAttributeCount() {
+        requireStartElement();
+        return parser.getAttributeCount();
+    }
+
+    public QName getAttributeName(int index) {
+        requireStartElement();
+        final String prefix = parser.getAttributePrefix(index);
+        return new QName(parser.getAttributeNamespace(index), getAttributeLocalName(index),
+            prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix);
+    }
+
+    public String getAttributeNamespace(int index) {
+        requireStartElement();
+        return emptyToNull(parser.getAttributeNamespace(index));
+    }
+
+    public String getAttributeLocalName(int index) {
+        requireStartElement();
+        return parser.getAttributeName(index);
+    }
+
+    public String getAttributePrefix(int index) {
+        requireStartElement();
+        return parser.getAttributePrefix(index);
+    }
+
+    public String getAttributeType(int index) {
+        requireStartElement();
+        return parser.getAttributeType(index);
+    }
+
+    public String getAttributeValue(int index) {
+        requireStartElement();
+        return parser.getAttributeValue(index);
+    }
+
+    public boolean isAttributeSpecified(int index) {
+        requireStartElement();
+        return !parser.isAttributeDefault(index);
+    }
+
+    private int getNamespaceStart() {
+        if (eventType != START_ELEMENT && eventType != END_ELEMENT) {
+            throw new IllegalStateException("only START_ELEMENT and END_ELEMENT can declare namespaces");
+        }
+        try {
+            return parser.getNamespaceCount(parser.getDepth() - 1);
+        } catch (final XmlPullParserException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public int getNamespaceCount() {
+        final int start = getNamespaceStart();
+        try {
+            return parser.getNamespaceCount(parser.getDepth()) - start;
+        } catch (final XmlPullParserException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public String getNamespacePrefix(int index) {
+        try {
+            return parser.getNamespacePrefix(getNamespaceStart() + index);
+        } catch (final XmlPullParserException e) {
+            throw new IndexOutOfBoundsException(e.getMessage());
+        }
+    }
+
+    public String getNamespaceURI(int index) {
+        try {
+            return parser.getNamespaceUri(getNamespaceStart() + index);
+        } catch (final XmlPullParserException e) {
+            throw new IndexOutOfBoundsException(e.getMessage());
+        }
+    }
+
+    /**
+     * Retrieve the namespace context of the current event. The context is live, it changes with the following events.
+     */
+    public NamespaceContext getNamespaceContext() {
+        return new NamespaceContext() {
+
+            public String getNamespaceURI(String prefix) {
+                if (prefix == null) {
+                    throw new IllegalArgumentException("prefix should not be null");
+                }
+                final String uri = parser.getNamespace(prefix.length() == 0 ? null : prefix);
+                return uri == null ? XMLConstants.NULL_NS_URI : uri;
+            }
+
+            public String getPrefix(String namespaceURI) {
+                final Iterator<String> prefixes = getPrefixes(namespaceURI);
+                return prefixes.hasNext() ? prefixes.next() : null;
+            }
+
+            public Iterator<String> getPrefixes(String namespaceURI) {
+                if (namespaceURI == null) {
+                    throw new IllegalArgumentException("namespace URI should not be null");
+                }
+                final List<String> prefixes = new ArrayList<>();
+                if (XMLConstants.XML_NS_URI.equals(namespaceURI)) {
+                    prefixes.add(XMLConstants.XML_NS_PREFIX);
+                } else if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(namespaceURI)) {
+                    prefixes.add(XMLConstants.XMLNS_ATTRIBUTE);
+                } else {
+                    try {
+                        for (int i = parser.getNamespaceCount(parser.getDepth()) - 1; i >= 0; i--) {
+                            final String prefix = parser.getNamespacePrefix(i);
+                            final String key = prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix;
+                            // only prefixes that are not redeclared by an inner element
+                            if (namespaceURI.equals(parser.getNamespaceUri(i))
+                                && namespaceURI.equals(parser.getNamespace(prefix))
+                                && !prefixes.contains(key)) {
+                                prefixes.add(key);
+                            }
+                        }
+                    } catch (final XmlPullParserException e) {
+                        throw new IllegalStateException(e.getMessage());
+                    }
+                }
+                return prefixes.iterator();
+            }
+        };
+    }
+
+    public int getEventType() {
+        return eventType;
+    }
+
+    private void requireText() {
+        if (eventType != CHARACTERS) {
+            throw new IllegalStateException("only CHARACTERS have text and not " + eventName(eventType));
+        }
+    }
+
+    public String getText() {
+        requireText();
+        return parser.getText();
+    }
+
+    /**
+     * Retrieve the internal buffer of the parser containing the text of the current event.
+     * The content is only valid until the next event.
+     */
+    public char[] getTextCharacters() {
+        requireText();
+        return text;
+    }
+
+    public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length)
+        throws XMLStreamException {
+        requireText();
+        if (sourceStart < 0 || sourceStart > holder[1]) {
+            throw new IndexOutOfBoundsException("source start must be 0.." + holder[1] + " and not " + sourceStart);
+        }
+        final int copied = Math.min(length, holder[1] - sourceStart);
+        System.arraycopy(text, holder[0] + sourceStart, target, targetStart, copied);
+        return copied;
+    }
+
+    public int getTextStart() {
+        requireText();
+        return holder[0];
+    }
+
+    public int getTextLength() {
+        requireText();
+        return holder[1];
+    }
+
+    public String getEncoding() {
+        return parser.getInputEncoding();
+    }
+
+    public boolean hasText() {
+        return eventType == CHARACTERS;
+    }
+
+    /**
+     * Retrieve the location of the current event. The location is a snapshot of the parser's position.
+     */
+    public Location getLocation() {
+        final int lineNumber = parser.getLineNumber();
+        final int columnNumber = parser.getColumnNumber();
+        final int characterOffset = (int)parser.getEventStartOffset();
+        return new Location() {
+
+            public int getLineNumber() {
+                return lineNumber;
+            }
+
+            public int getColumnNumber() {
+                return columnNumber;
+            }
+
+            public int getCharacterOffset() {
+                return characterOffset;
+            }
+
+            public String getPublicId() {
+                return null;
+            }
+
+            public String getSystemId() {
+                return null;
+            }
+
+            public String toString() {
+                return lineNumber + ":" + columnNumber;
+            }
+        };
+    }
+
+    public QName getName() {
+        if (!hasName()) {
+            throw new IllegalStateException("only START_ELEMENT and END_ELEMENT have a name");
+        }
+        final String prefix = parser.getPrefix();
+        return new QName(parser.getNamespace(), parser.getName(),
+            prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix);
+    }
+
+    public String getLocalName() {
+        if (!hasName()) {
+            throw new IllegalStateException("only START_ELEMENT and END_ELEMENT have a name");
+        }
+        return parser.getName();
+    }
+
+    public boolean hasName() {
+        return eventType == START_ELEMENT || eventType == END_ELEMENT;
+    }
+
+    public String getNamespaceURI() {
+        return hasName() ? emptyToNull(parser.getNamespace()) : null;
+    }
+
+    public String getPrefix() {
+        return hasName() ? parser.getPrefix() : null;
+    }
+
+    public String getVersion() {
+        return (String)parser.getProperty(PROPERTY_XMLDECL_VERSION);
+    }
+
+    public boolean isStandalone() {
+        return Boolean.TRUE.equals(getStandalone());
+    }
+
+    public boolean standaloneSet() {
+        return getStandalone() != null;
+    }
+
+    private Object getStandalone() {
+        return parser.getProperty(PROPERTY_XMLDECL_STANDALONE);
+    }
+
+    public String getCharacterEncodingScheme() {
+        final String content = (String)parser.getProperty(PROPERTY_XMLDECL_CONTENT);
+        // the parser reports the declared encoding as input encoding
+        return content != null && content.indexOf("encoding") >= 0 ? parser.getInputEncoding() : null;
+    }
+
+    public String getPITarget() {
+        return null;
+    }
+
+    public String getPIData() {
+        return null;
+    }
+}
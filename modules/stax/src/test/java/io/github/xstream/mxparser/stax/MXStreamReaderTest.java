@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser.stax;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import io.github.xstream.mxparser.MXParser;
+
+import org.junit.Test;
+
+public class MXStreamReaderTest
+{
+    private static final String XML = "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>\n"
+        + "<orders xmlns='urn:orders' xmlns:a='urn:address'>\n"
+        + "  <order id='1' a:zip='8000'><city>Zürich</city><!-- c --><note>a &amp; b<![CDATA[ <c> ]]>end</note></order>\n"
+        + "</orders>";
+
+    private static MXStreamReader newReader( String xml, boolean namespaces )
+        throws Exception
+    {
+        MXParser parser = new MXParser();
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, namespaces );
+        parser.setInput( new StringReader( xml ) );
+        return new MXStreamReader( parser );
+    }
+
+    private static String describe( XMLStreamReader reader )
+    {
+        switch ( reader.getEventType() )
+        {
+            case XMLStreamReader.START_ELEMENT:
+                StringBuffer sb = new StringBuffer( "<" ).append( reader.getName() );
+                for ( int i = 0; i < reader.getNamespaceCount(); i++ )
+                {
+                    sb.append( " ns " ).append( reader.getNamespacePrefix( i ) ).append( '=' );
+                    sb.append( reader.getNamespaceURI( i ) );
+                }
+                for ( int i = 0; i < reader.getAttributeCount(); i++ )
+                {
+                    sb.append( ' ' ).append( reader.getAttributeName( i ) ).append( '=' );
+                    sb.append( reader.getAttributeValue( i ) );
+                }
+                return sb.append( '>' ).toString();
+            case XMLStreamReader.END_ELEMENT:
+                return "</" + reader.getName() + ">";
+            case XMLStreamReader.CHARACTERS:
+                return new String( reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength() );
+            default:
+                return String.valueOf( reader.getEventType() );
+        }
+    }
+
+    @Test
+    public void testEvents()
+        throws Exception
+    {
+        MXStreamReader reader = newReader( XML, true );
+        assertEquals( XMLStreamReader.START_DOCUMENT, reader.getEventType() );
+        List<String> events = new ArrayList<String>();
+        while ( reader.hasNext() )
+        {
+            reader.next();
+            events.add( describe( reader ) );
+        }
+        assertEquals( "<{urn:orders}orders ns null=urn:orders ns a=urn:address>", events.get( 0 ) );
+        assertEquals( "<{urn:orders}order id=1 {urn:address}zip=8000>", events.get( 2 ) );
+        assertEquals( "Zürich", events.get( 4 ) );
+        assertEquals( "<{urn:orders}note>", events.get( 6 ) );
+        assertEquals( "a & b <c> end", events.get( 7 ) );
+        assertEquals( "</{urn:orders}orders>", events.get( events.size() - 2 ) );
+        assertEquals( String.valueOf( XMLStreamReader.END_DOCUMENT ), events.get( events.size() - 1 ) );
+        assertEquals( 13, events.size() );
+        assertEquals( "1.0", reader.getVersion() );
+        assertEquals( "UTF-8", reader.getCharacterEncodingScheme() );
+        assertTrue( reader.standaloneSet() );
+        assertTrue( reader.isStandalone() );
+    }
+
+    @Test
+    public void testTextWithoutCopy()
+        throws Exception
+    {
+        MXStreamReader reader = newReader( "<a>text<b/>more</a>", false );
+        reader.next();
+        assertEquals( XMLStreamReader.CHARACTERS, reader.next() );
+        int[] holder = new int[2];
+        assertSame( reader.getParser().getTextCharacters( holder ), reader.getTextCharacters() );
+        assertEquals( holder[0], reader.getTextStart() );
+        assertEquals( 4, reader.getTextLength() );
+        char[] target = new char[3];
+        assertEquals( 3, reader.getTextCharacters( 1, target, 0, 10 ) );
+        assertEquals( "ext", new String( target ) );
+        assertFalse( reader.isWhiteSpace() );
+        assertEquals( "text", reader.getText() );
+        assertEquals( XMLStreamReader.START_ELEMENT, reader.next() );
+        try
+        {
+            reader.getTextStart();
+            fail( "IllegalStateException expected" );
+        }
+        catch ( IllegalStateException e )
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNavigation()
+        throws Exception
+    {
+        MXStreamReader reader = newReader( XML, true );
+        assertEquals( XMLStreamReader.START_ELEMENT, reader.nextTag() );
+        assertEquals( XMLStreamReader.START_ELEMENT, reader.nextTag() );
+        reader.require( XMLStreamReader.START_ELEMENT, "urn:orders", "order" );
+        assertEquals( "8000", reader.getAttributeValue( "urn:address", "zip" ) );
+        assertEquals( "8000", reader.getAttributeValue( null, "zip" ) );
+        assertNull( reader.getAttributeValue( "urn:orders", "zip" ) );
+        assertEquals( "urn:address", reader.getNamespaceURI( "a" ) );
+        assertEquals( "urn:orders", reader.getNamespaceURI( "" ) );
+        assertEquals( "a", reader.getNamespaceContext().getPrefix( "urn:address" ) );
+        assertEquals( "", reader.getNamespaceContext().getPrefix( "urn:orders" ) );
+        assertEquals( XMLStreamReader.START_ELEMENT, reader.nextTag() );
+        assertEquals( "Zürich", reader.getElementText() );
+        assertEquals( XMLStreamReader.END_ELEMENT, reader.getEventType() );
+        assertEquals( new QName( "urn:orders", "city" ), reader.getName() );
+        try
+        {
+            reader.require( XMLStreamReader.END_ELEMENT, null, "town" );
+            fail( "XMLStreamException expected" );
+        }
+        catch ( XMLStreamException e )
+        {
+            assertEquals( 3, e.getLocation().getLineNumber() );
+        }
+    }
+
+    @Test
+    public void testWithoutNamespaces()
+        throws Exception
+    {
+        MXStreamReader reader = newReader( "<a:b xmlns:a='urn:a' a:c='1'/>", false );
+        assertEquals( XMLStreamReader.START_ELEMENT, reader.next() );
+        assertEquals( Boolean.FALSE, reader.getProperty( "javax.xml.stream.isNamespaceAware" ) );
+        assertEquals( "a:b", reader.getLocalName() );
+        assertNull( reader.getNamespaceURI() );
+        assertEquals( 0, reader.getNamespaceCount() );
+        assertEquals( 2, reader.getAttributeCount() );
+        assertEquals( "1", reader.getAttributeValue( null, "a:c" ) );
+        assertEquals( XMLStreamReader.END_ELEMENT, reader.next() );
+        assertEquals( XMLStreamReader.END_DOCUMENT, reader.next() );
+        assertFalse( reader.hasNext() );
+    }
+
+    @Test
+    public void testIncompleteFeedInput()
+        throws Exception
+    {
+        MXParser parser = new MXParser();
+        parser.setFeedInput( "UTF-8" );
+        MXStreamReader reader = new MXStreamReader( parser );
+        feed( parser, "<a><b>te" );
+        assertEquals( XMLStreamReader.START_ELEMENT, reader.nextTag() );
+        assertEquals( XMLStreamReader.START_ELEMENT, reader.nextTag() );
+        try
+        {
+            reader.getElementText();
+            fail( "XMLStreamException expected" );
+        }
+        catch ( XMLStreamException e )
+        {
+            assertTrue( e.getMessage().endsWith( "no complete event available, more input is needed" ) );
+        }
+        assertEquals( XMLStreamReader.START_ELEMENT, reader.getEventType() );
+        assertEquals( "b", reader.getLocalName() );
+        feed( parser, "xt</b" );
+        assertEquals( XMLStreamReader.CHARACTERS, reader.next() );
+        assertEquals( "text", reader.getText() );
+        try
+        {
+            reader.nextTag();
+            fail( "XMLStreamException expected" );
+        }
+        catch ( XMLStreamException e )
+        {
+            assertEquals( XMLStreamReader.CHARACTERS, reader.getEventType() );
+        }
+        feed( parser, ">\n</a>" );
+        parser.endOfInput();
+        assertEquals( XMLStreamReader.END_ELEMENT, reader.nextTag() );
+        assertEquals( XMLStreamReader.END_ELEMENT, reader.nextTag() );
+        assertEquals( "a", reader.getLocalName() );
+        assertEquals( XMLStreamReader.END_DOCUMENT, reader.next() );
+    }
+
+    private static void feed( MXParser parser, String data )
+        throws Exception
+    {
+        byte[] bytes = data.getBytes( "UTF-8" );
+        parser.feed( bytes, 0, bytes.length );
+    }
+
+    @Test
+    public void testSyntaxError()
+        throws Exception
+    {
+        MXStreamReader reader = newReader( "<a>\n<b></a>", false );
+        reader.nextTag();
+        reader.nextTag();
+        try
+        {
+            reader.next();
+            fail( "XMLStreamException expected" );
+        }
+        catch ( XMLStreamException e )
+        {
+            assertTrue( e.getNestedException() != null );
+            assertEquals( 2, e.getLocation().getLineNumber() );
+        }
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import java.io.IOException;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+
+/**
+ * Read-only tree of an element with random access to its nodes.
+ * <p>
+ * The tree is built with the events of a {@link MXParser} and stores its nodes in primitive arrays: the kind, the
+ * parent, first child and next sibling, the symbol of the element name and the range of text in one shared character
+ * store. Names are kept once per distinct name in a symbol table, text and attribute values are copied from the
+ * parser into the character store and Strings are only created on access. A node is identified by its index, the
+ * element the tree was built for has the index 0 and nodes are numbered in document order.
+ * </p>
+ */
+public final class CompactTree {
+
+    public static final byte ELEMENT = 1;
+    public static final byte TEXT = 2;
+
+    /** Index of a node that does not exist. */
+    public static final int NONE = -1;
+
+    private final MXParserConfig config;
+
+    private int nodeCount;
+    private byte[] kind;
+    private int[] parent;
+    private int[] firstChild;
+    private int[] nextSibling;
+    // symbol for elements, start in the character store for text
+    private int[] nameOrStart;
+    // first attribute for elements, length in the character store for text
+    private int[] attributeOrLength;
+    private int[] attributeCount;
+
+    private int attributeEnd;
+    private int[] attributeName;
+    private int[] attributeValueStart;
+    private int[] attributeValueLength;
+
+    private int symbolCount;
+    private String[] symbolName;
+    private String[] symbolNamespace;
+    private String[] symbolPrefix;
+    private int[] symbolTable;
+
+    private char[] chars;
+    private int charsEnd;
+
+    private CompactTree(MXParserConfig config) {
+        this.config = config;
+        kind = new byte[64];
+        parent = new int[64];
+        firstChild = new int[64];
+        nextSibling = new int[64];
+        nameOrStart = new int[64];
+        attributeOrLength = new int[64];
+        attributeCount = new int[64];
+        attributeName = new int[16];
+        attributeValueStart = new int[16];
+        attributeValueLength = new int[16];
+        symbolName = new String[16];
+        symbolNamespace = new String[16];
+        symbolPrefix = new String[16];
+        symbolTable = new int[32];
+        chars = new char[1024];
+    }
+
+    /**
+     * Build the tree of the next element.
+     * <p>
+     * The parser is moved to the next start tag if it is not already positioned on one and reads the complete element.
+     * After the method returns, the parser is positioned on the end tag of the element.
+     * </p>
+     *
+     * @param parser the parser
+     * @return the tree
+     * @throws XmlPullParserException if the parser is not followed by an element
+     */
+    public static CompactTree build(MXParser parser) throws XmlPullParserException, IOException {
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.START_TAG) {
+            if (eventType == XmlPullParser.END_TAG || eventType == XmlPullParser.END_DOCUMENT) {
+                throw new XmlPullParserException("no element to build the tree for", parser, null);
+            }
+            eventType = parser.next();
+        }
+        final CompactTree tree = new CompactTree(parser.getConfig());
+        final int[] holder = new int[2];
+        final int depth = parser.getDepth();
+        int current = tree.addElement(parser, NONE, NONE);
+        // last child of the current element
+        int last = NONE;
+        while (true) {
+            eventType = parser.next();
+            if (eventType == XmlPullParser.START_TAG) {
+                current = tree.addElement(parser, current, last);
+                last = NONE;
+            } else if (eventType == XmlPullParser.TEXT) {
+                final char[] text = parser.getTextCharacters(holder);
+                last = tree.addText(text, holder[0], holder[1], current, last);
+            } else if (eventType == XmlPullParser.END_TAG) {
+                if (parser.getDepth() == depth) {
+                    break;
+                }
+                last = current;
+                current = tree.parent[current];
+            } else if (eventType == XmlPullParser.END_DOCUMENT) {
+                throw new XmlPullParserException("unexpected end of document", parser, null);
+            }
+        }
+        return tree;
+    }
+
+    private int addNode(byte nodeKind, int parentNode, int previousSibling) {
+        if (nodeCount == kind.length) {
+            final int size = config.grow(nodeCount, 64);
+            kind = grow(kind, size);
+            parent = grow(parent, size);
+            firstChild = grow(firstChild, size);
+            nextSibling = grow(nextSibling, size);
+            nameOrStart = grow(nameOrStart, size);
+            attributeOrLength = grow(attributeOrLength, size);
+            attributeCount = grow(attributeCount, size);
+        }
+        final int node = nodeCount++;
+        kind[node] = nodeKind;
+        parent[node] = parentNode;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        if (previousSibling != NONE) {
+            nextSibling[previousSibling] = node;
+        } else if (parentNode != NONE) {
+            firstChild[parentNode] = node;
+        }
+        return node;
+    }
+
+    private int addElement(MXParser parser, int parentNode, int previousSibling) {
+        final int node = addNode(ELEMENT, parentNode, previousSibling);
+        nameOrStart[node] = symbol(parser.getNamespace(), parser.getName(), parser.getPrefix());
+        final int count = parser.getAttributeCount();
+        if (attributeEnd + count > attributeName.length) {
+            final int size = config.grow(attributeName.length, attributeEnd + count);
+            attributeName = grow(attributeName, size);
+            attributeValueStart = grow(attributeValueStart, size);
+            attributeValueLength = grow(attributeValueLength, size);
+        }
+        attributeOrLength[node] = attributeEnd;
+        attributeCount[node] = count;
+        for (int i = 0; i < count; i++) {
+            attributeName[attributeEnd] = symbol(
+                parser.getAttributeNamespace(i), parser.getAttributeName(i), parser.getAttributePrefix(i));
+            final String value = parser.getAttributeValue(i);
+            final int length = value.length();
+            ensureChars(length);
+            value.getChars(0, length, chars, charsEnd);
+            attributeValueStart[attributeEnd] = charsEnd;
+            attributeValueLength[attributeEnd++] = length;
+            charsEnd += length;
+        }
+        return node;
+    }
+
+    private int addText(char[] text, int start, int length, int parentNode, int previousSibling) {
+        final int node = addNode(TEXT, parentNode, previousSibling);
+        ensureChars(length);
+        System.arraycopy(text, start, chars, charsEnd, length);
+        nameOrStart[node] = charsEnd;
+        attributeOrLength[node] = length;
+        charsEnd += length;
+        return node;
+    }
+
+    private void ensureChars(int length) {
+        if (charsEnd + length > chars.length) {
+            final char[] newChars = new char[config.grow(chars.length, charsEnd + length)];
+            System.arraycopy(chars, 0, newChars, 0, charsEnd);
+            chars = newChars;
+        }
+    }
+
+    private int symbol(String namespace, String name, String prefix) {
+        final int hash = 31 * name.hashCode() + (namespace != null ? namespace.hashCode() : 0);
+        int i = hash & (symbolTable.length - 1);
+        while (symbolTable[i] != 0) {
+            final int symbol = symbolTable[i] - 1;
+            if (symbolName[symbol].equals(name)
+                && (namespace == null ? symbolNamespace[symbol] == null : namespace.equals(symbolNamespace[symbol]))
+                && (prefix == null ? symbolPrefix[symbol] == null : prefix.equals(symbolPrefix[symbol]))) {
+                return symbol;
+            }
+            i = (i + 1) & (symbolTable.length - 1);
+        }
+        if (symbolCount == symbolName.length) {
+            final int size = config.grow(symbolCount, 16);
+            final String[] newName = new String[size];
+            final String[] newNamespace = new String[size];
+            final String[] newPrefix = new String[size];
+            System.arraycopy(symbolName, 0, newName, 0, symbolCount);
+            System.arraycopy(symbolNamespace, 0, newNamespace, 0, symbolCount);
+            System.arraycopy(symbolPrefix, 0, newPrefix, 0, symbolCount);
+            symbolName = newName;
+            symbolNamespace = newNamespace;
+            symbolPrefix = newPrefix;
+        }
+        final int symbol = symbolCount++;
+        symbolName[symbol] = name;
+        symbolNamespace[symbol] = namespace;
+        symbolPrefix[symbol] = prefix;
+        if (2 * symbolCount > symbolTable.length) {
+            rehashSymbols();
+        } else {
+            symbolTable[i] = symbol + 1;
+        }
+        return symbol;
+    }
+
+    private void rehashSymbols() {
+        symbolTable = new int[2 * symbolTable.length];
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            final String namespace = symbolNamespace[symbol];
+            final int hash = 31 * symbolName[symbol].hashCode() + (namespace != null ? namespace.hashCode() : 0);
+            int i = hash & (symbolTable.length - 1);
+            while (symbolTable[i] != 0) {
+                i = (i + 1) & (symbolTable.length - 1);
+            }
+            symbolTable[i] = symbol + 1;
+        }
+    }
+
+    private static byte[] grow(byte[] array, int size) {
+        final byte[] newArray = new byte[size];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static int[] grow(int[] array, int size) {
+        final int[] newArray = new int[size];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Kind of a node, either {@link #ELEMENT} or {@link #TEXT}.
+     */
+    public byte getKind(int node) {
+        checkNode(node);
+        return kind[node];
+    }
+
+    public int getParent(int node) {
+        checkNode(node);
+        return parent[node];
+    }
+
+    public int getFirstChild(int node) {
+        checkNode(node);
+        return firstChild[node];
+    }
+
+    public int getNextSibling(int node) {
+        checkNode(node);
+        return nextSibling[node];
+    }
+
+    /**
+     * Find the first child element with the given name.
+     *
+     * @param node the parent element
+     * @param namespace the namespace or null for any namespace
+     * @param name the local name
+     * @return the child element or {@link #NONE}
+     */
+    public int getChildElement(int node, String namespace, String name) {
+        for (int child = getFirstChild(node); child != NONE; child = nextSibling[child]) {
+            if (kind[child] == ELEMENT) {
+                final int symbol = nameOrStart[child];
+                if (name.equals(symbolName[symbol])
+                    && (namespace == null || namespace.equals(symbolNamespace[symbol]))) {
+                    return child;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Symbol of the name of an element. Elements with equal name, namespace and prefix share the symbol.
+     */
+    public int getSymbol(int node) {
+        checkElement(node);
+        return nameOrStart[node];
+    }
+
+    public int getSymbolCount() {
+        return symbolCount;
+    }
+
+    public String getSymbolName(int symbol) {
+        return symbolName[symbol];
+    }
+
+    public String getSymbolNamespace(int symbol) {
+        return symbolNamespace[symbol];
+    }
+
+    public String getSymbolPrefix(int symbol) {
+        return symbolPrefix[symbol];
+    }
+
+    public String getName(int node) {
+        return symbolName[getSymbol(node)];
+    }
+
+    public String getNamespace(int node) {
+        return symbolNamespace[getSymbol(node)];
+    }
+
+    public String getPrefix(int node) {
+        return symbolPrefix[getSymbol(node)];
+    }
+
+    /**
+     * The character store with the text and attribute values of all nodes.
+     */
+    public char[] getCharacters() {
+        return chars;
+    }
+
+    /**
+     * Start of the text of a text node in the character store.
+     */
+    public int getTextStart(int node) {
+        checkText(node);
+        return nameOrStart[node];
+    }
+
+    public int getTextLength(int node) {
+        checkText(node);
+        return attributeOrLength[node];
+    }
+
+    /**
+     * Text of a text node or the concatenated text of all descendants of an element.
+     */
+    public String getText(int node) {
+        checkNode(node);
+        if (kind[node] == TEXT) {
+            return new String(chars, nameOrStart[node], attributeOrLength[node]);
+        }
+        final StringBuffer sb = new StringBuffer();
+        // descendants follow the element in document order
+        for (int i = node + 1; i < nodeCount && isDescendant(i, node); i++) {
+            if (kind[i] == TEXT) {
+                sb.append(chars, nameOrStart[i], attributeOrLength[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    private boolean isDescendant(int node, int ancestor) {
+        int p = parent[node];
+        while (p > ancestor) {
+            p = parent[p];
+        }
+        return p == ancestor;
+    }
+
+    public int getAttributeCount(int node) {
+        checkElement(node);
+        return attributeCount[node];
+    }
+
+    public int getAttributeSymbol(int node, int index) {
+        return attributeName[attribute(node, index)];
+    }
+
+    public String getAttributeName(int node, int index) {
+        return symbolName[getAttributeSymbol(node, index)];
+    }
+
+    public String getAttributeNamespace(int node, int index) {
+        return symbolNamespace[getAttributeSymbol(node, index)];
+    }
+
+    public String getAttributePrefix(int node, int index) {
+        return symbolPrefix[getAttributeSymbol(node, index)];
+    }
+
+    public String getAttributeValue(int node, int index) {
+        final int attribute = attribute(node, index);
+        return new String(chars, attributeValueStart[attribute], attributeValueLength[attribute]);
+    }
+
+    /**
+     * Retrieve the value of an attribute by name.
+     *
+     * @param node the element
+     * @param namespace the namespace or null for any namespace
+     * @param name the local name
+     * @return the value or null if the element has no such attribute
+     */
+    public String getAttributeValue(int node, String namespace, String name) {
+        checkElement(node);
+        final int start = attributeOrLength[node];
+        for (int i = start; i < start + attributeCount[node]; i++) {
+            final int symbol = attributeName[i];
+            if (name.equals(symbolName[symbol]) && (namespace == null || namespace.equals(symbolNamespace[symbol]))) {
+                return new String(chars, attributeValueStart[i], attributeValueLength[i]);
+            }
+        }
+        return null;
+    }
+
+    private int attribute(int node, int index) {
+        checkElement(node);
+        if (index < 0 || index >= attributeCount[node]) {
+            throw new IndexOutOfBoundsException("attribute position must be 0.."
+                + (attributeCount[node] - 1) + " and not " + index);
+        }
+        return attributeOrLength[node] + index;
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= nodeCount) {
+            throw new IndexOutOfBoundsException("node must be 0.." + (nodeCount - 1) + " and not " + node);
+        }
+    }
+
+    private void checkElement(int node) {
+        checkNode(node);
+        if (kind[node] != ELEMENT) {
+            throw new IllegalArgumentException("node " + node + " is not an element");
+        }
+    }
+
+    private void checkText(int node) {
+        checkNode(node);
+        if (kind[node] != TEXT) {
+            throw new IllegalArgumentException("node " + node + " is not a text");
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+
+/**
+ * Splits a long-lived XML stream into the complete child elements of its root element.
+ * <p>
+ * The framer is fed with the bytes of the stream as they arrive and never blocks. Each complete child element of the
+ * stream root is returned as {@link Frame} with the characters of the element and the namespace declarations in scope
+ * at the stream root, so that the frames can be parsed independently, e.g. in parallel by worker threads. The
+ * stream is tokenized only once by a {@link MXParser} in push mode; the characters of a frame are taken directly from
+ * its input buffer.
+ * </p>
+ */
+public class ElementFramer {
+
+    private final MXParser parser;
+    private final Frame frame = new Frame();
+    private final int[] holder = new int[2];
+    private long frameStart = -1;
+    private long frameByteStart = -1;
+    private String rootName;
+    private String rootNamespace;
+    private String[] namespacePrefixes;
+    private String[] namespaceUris;
+    private boolean closed;
+
+    /**
+     * Create a framer for a stream in the given encoding.
+     *
+     * @param encoding the encoding of the stream, null for UTF-8
+     */
+    public ElementFramer(String encoding) throws XmlPullParserException {
+        this(new MXParser(), encoding);
+    }
+
+    /**
+     * Create a framer using a configured parser.
+     *
+     * @param parser the parser used to tokenize the stream
+     * @param encoding the encoding of the stream, null for UTF-8
+     */
+    public ElementFramer(MXParser parser, String encoding) throws XmlPullParserException {
+        this.parser = parser;
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setFeedInput(encoding);
+    }
+
+    public void feed(byte[] data, int off, int len) {
+        parser.feed(data, off, len);
+    }
+
+    public void feed(ByteBuffer data) {
+        parser.feed(data);
+    }
+
+    public void endOfInput() {
+        parser.endOfInput();
+    }
+
+    /**
+     * Retrieve the next complete child element of the stream root.
+     * <p>
+     * The returned frame is reused and its characters are only valid until this method or one of the feed methods is
+     * called again.
+     * </p>
+     *
+     * @return the frame or null if the fed data does not contain another complete element or the stream is closed
+     */
+    public Frame nextFrame() throws XmlPullParserException, IOException {
+        while (!closed) {
+            final int eventType = parser.next();
+            if (eventType == MXParser.EVENT_INCOMPLETE) {
+                return null;
+            }
+            final int depth = parser.getDepth();
+            if (eventType == XmlPullParser.START_TAG) {
+                if (depth == 1) {
+                    startStream();
+                } else if (depth == 2) {
+                    frameStart = parser.getEventStart();
+                    frameByteStart = parser.getEventStartByteOffset();
+                    parser.retainInput(frameStart);
+                }
+            } else if (eventType == XmlPullParser.END_TAG) {
+                if (depth == 2) {
+                    frame.characters = parser.getInputCharacters(frameStart, parser.getEventEnd(), holder);
+                    frame.start = holder[0];
+                    frame.length = holder[1];
+                    frame.offset = frameStart;
+                    frame.byteOffset = frameByteStart;
+                    frame.byteLength = frameByteStart < 0 ? -1 : parser.getEventEndByteOffset() - frameByteStart;
+                    frame.name = parser.getName();
+                    frame.namespace = parser.getNamespace();
+                    // characters stay in the buffer until the parser is called again
+                    frameStart = -1;
+                    parser.retainInput(-1);
+                    return frame;
+                } else if (depth == 1) {
+                    closed = true;
+                }
+            } else if (eventType == XmlPullParser.END_DOCUMENT) {
+                closed = true;
+            }
+        }
+        return null;
+    }
+
+    private void startStream() throws XmlPullParserException {
+        rootName = parser.getName();
+        rootNamespace = parser.getNamespace();
+        final int count = parser.getNamespaceCount(1);
+        namespacePrefixes = new String[count];
+        namespaceUris = new String[count];
+        for (int i = 0; i < count; i++) {
+            namespacePrefixes[i] = parser.getNamespacePrefix(i);
+            namespaceUris[i] = parser.getNamespaceUri(i);
+        }
+    }
+
+    /**
+     * Local name of the stream root or null if the root element has not been started yet.
+     */
+    public String getRootName() {
+        return rootName;
+    }
+
+    /**
+     * Namespace of the stream root or null if the root element has not been started yet.
+     */
+    public String getRootNamespace() {
+        return rootNamespace;
+    }
+
+    /**
+     * Check whether the stream root has been closed and no more frames will follow.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * A complete child element of the stream root.
+     */
+    public final class Frame {
+        private char[] characters;
+        private int start;
+        private int length;
+        private long offset;
+        private long byteOffset;
+        private long byteLength;
+        private String name;
+        private String namespace;
+
+        private Frame() {
+        }
+
+        /**
+         * The buffer with the characters of the element. Use {@link #getStart()} and {@link #getLength()} to access
+         * them.
+         */
+        public char[] getCharacters() {
+            return characters;
+        }
+
+        /**
+         * Offset of the first character of the element in {@link #getCharacters()}.
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * Number of characters of the element.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Position of the first character of the element in the stream.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Byte offset of the element in the stream or -1 if byte offsets are not available for the encoding.
+         */
+        public long getByteOffset() {
+            return byteOffset;
+        }
+
+        /**
+         * Number of bytes of the element in the stream or -1 if byte offsets are not available for the encoding.
+         */
+        public long getByteLength() {
+            return byteLength;
+        }
+
+        /**
+         * Local name of the element.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Namespace of the element, the empty string for an element without namespace.
+         */
+        public String getNamespace() {
+            return namespace;
+        }
+
+        /**
+         * Number of the namespace declarations in scope at the stream root.
+         */
+        public int getNamespaceCount() {
+            return namespacePrefixes.length;
+        }
+
+        /**
+         * Prefix of a namespace declared at the stream root, null for the default namespace.
+         */
+        public String getNamespacePrefix(int index) {
+            return namespacePrefixes[index];
+        }
+
+        /**
+         * URI of a namespace declared at the stream root.
+         */
+        public String getNamespaceUri(int index) {
+            return namespaceUris[index];
+        }
+
+        public String toString() {
+            return new String(characters, start, length);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+
+/**
+ * Index of the byte ranges of selected elements in a large XML file.
+ * <p>
+ * The index is built in one pass over the file and can be stored next to it. It selects all elements with a given path
+ * of local names (e.g. <code>/catalog/item</code>) and maps the value of a key attribute (or the ordinal of the
+ * element, if no key attribute is given) to the byte range of the element and the namespace declarations in scope at
+ * that point. With {@link #seek(MXParser, File, String)} a parser is set up to parse only the indexed element of the
+ * file, which is memory-mapped for this purpose.
+ * </p>
+ */
+public class ElementIndex {
+
+    private static final int MAGIC = 0x4D58494E; // MXIN
+    private static final int VERSION = 1;
+    private static final String[] NO_STRINGS = new String[0];
+
+    private final String encoding;
+    private final String path;
+    private final String keyAttribute;
+    private final List entries = new ArrayList();
+    private final List contexts = new ArrayList();
+    private final Map entriesByKey = new HashMap();
+
+    private ElementIndex(String encoding, String path, String keyAttribute) {
+        this.encoding = encoding;
+        this.path = path;
+        this.keyAttribute = keyAttribute;
+    }
+
+    /**
+     * Build the index for an XML input stream.
+     *
+     * @param in the input stream of the XML file
+     * @param encoding the encoding of the file, null for UTF-8
+     * @param path the path of local names of the indexed elements starting with a slash
+     * @param keyAttribute the name of the key attribute without namespace or null to use the ordinal of the elements
+     */
+    public static ElementIndex build(InputStream in, String encoding, String path, String keyAttribute)
+            throws XmlPullParserException, IOException {
+        return build(new MXParser(), in, encoding, path, keyAttribute);
+    }
+
+    /**
+     * Build the index for an XML input stream using a configured parser.
+     *
+     * @param parser the parser
+     * @param in the input stream of the XML file
+     * @param encoding the encoding of the file, null for UTF-8
+     * @param path the path of local names of the indexed elements starting with a slash
+     * @param keyAttribute the name of the key attribute without namespace or null to use the ordinal of the elements
+     */
+    public static ElementIndex build(
+            MXParser parser, InputStream in, String encoding, String path, String keyAttribute)
+            throws XmlPullParserException, IOException {
+        final ElementIndex index = new ElementIndex(encoding != null ? encoding : "UTF-8", path, keyAttribute);
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(in, index.encoding);
+
+        final StringBuffer currentPath = new StringBuffer();
+        int[] pathLengths = new int[16];
+        Entry pending = null;
+        int pendingDepth = 0;
+        String[] context = NO_STRINGS;
+        int eventType;
+        while ((eventType = parser.next()) != XmlPullParser.END_DOCUMENT) {
+            final int depth = parser.getDepth();
+            if (eventType == XmlPullParser.START_TAG) {
+                if (depth >= pathLengths.length) {
+                    final int[] lengths = new int[2 * depth];
+                    System.arraycopy(pathLengths, 0, lengths, 0, pathLengths.length);
+                    pathLengths = lengths;
+                }
+                pathLengths[depth] = currentPath.length();
+                currentPath.append('/').append(parser.getName());
+                if (currentPath.length() == path.length() && currentPath.toString().equals(path)) {
+                    final String key = keyAttribute != null
+                        ? parser.getAttributeValue(null, keyAttribute)
+                        : String.valueOf(index.entries.size());
+                    final long start = parser.getEventStartByteOffset();
+                    if (start < 0) {
+                        throw new XmlPullParserException("byte offsets are not supported for encoding "
+                            + index.encoding, parser, null);
+                    }
+                    if (key != null) {
+                        context = index.context(parser, depth - 1, context);
+                        pending = new Entry(key, start, index.contexts.size() - 1);
+                        pendingDepth = depth;
+                    }
+                }
+            } else if (eventType == XmlPullParser.END_TAG) {
+                if (pending != null && depth == pendingDepth) {
+                    pending.end = parser.getEventEndByteOffset();
+                    index.add(pending);
+                    pending = null;
+                }
+                currentPath.setLength(pathLengths[depth]);
+            }
+        }
+        return index;
+    }
+
+    private String[] context(MXParser parser, int depth, String[] last) throws XmlPullParserException {
+        final int count = parser.getNamespaceCount(depth);
+        final String[] context = new String[2 * count];
+        for (int i = 0; i < count; i++) {
+            context[2 * i] = parser.getNamespacePrefix(i);
+            context[2 * i + 1] = parser.getNamespaceUri(i);
+        }
+        if (contexts.isEmpty() || !Arrays.equals(context, last)) {
+            contexts.add(context);
+            return context;
+        }
+        return last;
+    }
+
+    private void add(Entry entry) {
+        entries.add(entry);
+        if (!entriesByKey.containsKey(entry.key)) {
+            entriesByKey.put(entry.key, entry);
+        }
+    }
+
+    /**
+     * Write the index.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeUTF(encoding);
+        data.writeUTF(path);
+        data.writeBoolean(keyAttribute != null);
+        if (keyAttribute != null) {
+            data.writeUTF(keyAttribute);
+        }
+        data.writeInt(contexts.size());
+        for (int i = 0; i < contexts.size(); i++) {
+            final String[] context = (String[])contexts.get(i);
+            data.writeInt(context.length / 2);
+            for (int j = 0; j < context.length; j += 2) {
+                data.writeBoolean(context[j] != null);
+                if (context[j] != null) {
+                    data.writeUTF(context[j]);
+                }
+                data.writeUTF(context[j + 1]);
+            }
+        }
+        data.writeInt(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            final Entry entry = (Entry)entries.get(i);
+            data.writeUTF(entry.key);
+            data.writeLong(entry.start);
+            data.writeLong(entry.end);
+            data.writeInt(entry.context);
+        }
+        data.flush();
+    }
+
+    /**
+     * Read an index written with {@link #writeTo(OutputStream)}.
+     */
+    public static ElementIndex readFrom(InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("not an element index");
+        }
+        final int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported element index version " + version);
+        }
+        final String encoding = data.readUTF();
+        final String path = data.readUTF();
+        final String keyAttribute = data.readBoolean() ? data.readUTF() : null;
+        final ElementIndex index = new ElementIndex(encoding, path, keyAttribute);
+        final int contextCount = data.readInt();
+        for (int i = 0; i < contextCount; i++) {
+            final String[] context = new String[2 * data.readInt()];
+            for (int j = 0; j < context.length; j += 2) {
+                context[j] = data.readBoolean() ? data.readUTF() : null;
+                context[j + 1] = data.readUTF();
+            }
+            index.contexts.add(context);
+        }
+        final int entryCount = data.readInt();
+        for (int i = 0; i < entryCount; i++) {
+            final Entry entry = new Entry(data.readUTF(), data.readLong(), 0);
+            entry.end = data.readLong();
+            entry.context = data.readInt();
+            index.add(entry);
+        }
+        return index;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getKeyAttribute() {
+        return keyAttribute;
+    }
+
+    /**
+     * Number of indexed elements.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Key of an indexed element in document order.
+     */
+    public String getKey(int index) {
+        return ((Entry)entries.get(index)).key;
+    }
+
+    /**
+     * Byte offset of the first element with the given key or -1 if the key is not indexed.
+     */
+    public long getStartOffset(String key) {
+        final Entry entry = (Entry)entriesByKey.get(key);
+        return entry != null ? entry.start : -1;
+    }
+
+    /**
+     * Byte offset after the first element with the given key or -1 if the key is not indexed.
+     */
+    public long getEndOffset(String key) {
+        final Entry entry = (Entry)entriesByKey.get(key);
+        return entry != null ? entry.end : -1;
+    }
+
+    /**
+     * Create a namespace aware parser for the first element with the given key in the indexed file.
+     *
+     * @return the parser or null if the key is not indexed
+     * @see #seek(MXParser, File, String)
+     */
+    public MXParser seek(File file, String key) throws XmlPullParserException, IOException {
+        final MXParser parser = new MXParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        return seek(parser, file, key) ? parser : null;
+    }
+
+    /**
+     * Set the input of a parser to the first element with the given key in the indexed file.
+     * <p>
+     * The range of the element is memory-mapped and the namespaces in scope at the element are defined in the parser,
+     * so that the element is parsed as root of a complete document. The parser's features must be set before.
+     * </p>
+     *
+     * @return true if the key is indexed
+     */
+    public boolean seek(MXParser parser, File file, String key) throws XmlPullParserException, IOException {
+        final Entry entry = (Entry)entriesByKey.get(key);
+        if (entry == null) {
+            return false;
+        }
+        final ByteBuffer input;
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // mapping stays valid after the file has been closed
+            input = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, entry.start, entry.end - entry.start);
+        } finally {
+            raf.close();
+        }
+        final FeedReader reader = new FeedReader(Charset.forName(encoding), input);
+        reader.endOfInput();
+        parser.setInput(reader);
+        final String[] context = (String[])contexts.get(entry.context);
+        for (int i = 0; i < context.length; i += 2) {
+            parser.defineNamespace(context[i], context[i + 1]);
+        }
+        return true;
+    }
+
+    private static class Entry {
+        private final String key;
+        private final long start;
+        private long end;
+        private int context;
+
+        Entry(String key, long start, int context) {
+            this.key = key;
+            this.start = start;
+            this.context = context;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+/**
+ * Reusable batch of parser events in primitive arrays.
+ * <p>
+ * A batch is filled by {@link MXParser#nextBatch(EventBatch)} with up to {@link #getCapacity()} events. For each
+ * event it contains the type, the depth and a range in the shared character block of the batch with the local name of
+ * a start or end tag or the text of a text event. The attributes of a start tag are a range of the attribute arrays
+ * with name and value ranges in the same character block. Namespaces are references to the parser's namespace
+ * Strings. The batch is owned by the caller and can be refilled any number of times, it is not thread-safe.
+ * </p>
+ */
+public final class EventBatch {
+
+    private final int capacity;
+    private int size;
+    private final int[] types;
+    private final int[] depths;
+    private final int[] starts;
+    private final int[] lengths;
+    private final String[] namespaces;
+    private final int[] attributeStarts;
+    private final int[] attributeCounts;
+
+    private int attributeEnd;
+    private int[] attributeNameStarts;
+    private int[] attributeNameLengths;
+    private int[] attributeValueStarts;
+    private int[] attributeValueLengths;
+    private String[] attributeNamespaces;
+
+    private char[] chars;
+    private int charsEnd;
+
+    /**
+     * Create a batch.
+     *
+     * @param capacity the maximum number of events in the batch
+     */
+    public EventBatch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        types = new int[capacity];
+        depths = new int[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        namespaces = new String[capacity];
+        attributeStarts = new int[capacity];
+        attributeCounts = new int[capacity];
+        attributeNameStarts = new int[capacity];
+        attributeNameLengths = new int[capacity];
+        attributeValueStarts = new int[capacity];
+        attributeValueLengths = new int[capacity];
+        attributeNamespaces = new String[capacity];
+        chars = new char[Math.max(1024, 16 * capacity)];
+    }
+
+    void clear() {
+        size = 0;
+        attributeEnd = 0;
+        charsEnd = 0;
+    }
+
+    int addEvent(int type, int depth, String namespace, char[] cbuf, int off, int len) {
+        final int event = size++;
+        types[event] = type;
+        depths[event] = depth;
+        namespaces[event] = namespace;
+        starts[event] = append(cbuf, off, len);
+        lengths[event] = len;
+        attributeStarts[event] = attributeEnd;
+        attributeCounts[event] = 0;
+        return event;
+    }
+
+    int addEvent(int type, int depth, String namespace, String name) {
+        final int event = size++;
+        types[event] = type;
+        depths[event] = depth;
+        namespaces[event] = namespace;
+        starts[event] = append(name);
+        lengths[event] = name.length();
+        attributeStarts[event] = attributeEnd;
+        attributeCounts[event] = 0;
+        return event;
+    }
+
+    void addAttribute(int event, String namespace, String name, String value) {
+        if (attributeEnd == attributeNameStarts.length) {
+            final int newSize = 2 * attributeEnd;
+            attributeNameStarts = grow(attributeNameStarts, newSize);
+            attributeNameLengths = grow(attributeNameLengths, newSize);
+            attributeValueStarts = grow(attributeValueStarts, newSize);
+            attributeValueLengths = grow(attributeValueLengths, newSize);
+            final String[] newNamespaces = new String[newSize];
+            System.arraycopy(attributeNamespaces, 0, newNamespaces, 0, attributeEnd);
+            attributeNamespaces = newNamespaces;
+        }
+        final int attribute = attributeEnd++;
+        attributeNamespaces[attribute] = namespace;
+        attributeNameStarts[attribute] = append(name);
+        attributeNameLengths[attribute] = name.length();
+        attributeValueStarts[attribute] = append(value);
+        attributeValueLengths[attribute] = value.length();
+        ++attributeCounts[event];
+    }
+
+    private int append(char[] cbuf, int off, int len) {
+        final int start = charsEnd;
+        ensureChars(len);
+        System.arraycopy(cbuf, off, chars, start, len);
+        charsEnd += len;
+        return start;
+    }
+
+    private int append(String s) {
+        final int start = charsEnd;
+        final int len = s.length();
+        ensureChars(len);
+        s.getChars(0, len, chars, start);
+        charsEnd += len;
+        return start;
+    }
+
+    private void ensureChars(int len) {
+        if (charsEnd + len > chars.length) {
+            final char[] newChars = new char[Math.max(2 * chars.length, charsEnd + len)];
+            System.arraycopy(chars, 0, newChars, 0, charsEnd);
+            chars = newChars;
+        }
+    }
+
+    private static int[] grow(int[] array, int size) {
+        final int[] newArray = new int[size];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    /**
+     * Maximum number of events in the batch.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Number of events in the batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The shared character block with names, texts and attribute values of all events.
+     */
+    public char[] getCharacters() {
+        return chars;
+    }
+
+    /**
+     * Type of an event as defined by {@link org.xmlpull.v1.XmlPullParser}.
+     */
+    public int getType(int event) {
+        return types[event];
+    }
+
+    /**
+     * Element depth of an event as reported by the parser.
+     */
+    public int getDepth(int event) {
+        return depths[event];
+    }
+
+    /**
+     * Start of the local name or text of an event in the character block.
+     */
+    public int getStart(int event) {
+        return starts[event];
+    }
+
+    /**
+     * Length of the local name or text of an event, 0 for all other events.
+     */
+    public int getLength(int event) {
+        return lengths[event];
+    }
+
+    /**
+     * Namespace of a start or end tag, null for all other events.
+     */
+    public String getNamespace(int event) {
+        return namespaces[event];
+    }
+
+    /**
+     * Create a String of the local name or text of an event.
+     */
+    public String getString(int event) {
+        return new String(chars, starts[event], lengths[event]);
+    }
+
+    /**
+     * Compare the local name or text of an event without creating a String.
+     */
+    public boolean equals(int event, String s) {
+        return regionEquals(starts[event], lengths[event], s);
+    }
+
+    /**
+     * Index of the first attribute of a start tag.
+     */
+    public int getAttributeStart(int event) {
+        return attributeStarts[event];
+    }
+
+    /**
+     * Number of attributes of a start tag, 0 for all other events.
+     */
+    public int getAttributeCount(int event) {
+        return attributeCounts[event];
+    }
+
+    /**
+     * Namespace of an attribute, the empty string for an attribute without namespace.
+     */
+    public String getAttributeNamespace(int attribute) {
+        return attributeNamespaces[attribute];
+    }
+
+    /**
+     * Start of the local name of an attribute in the character block.
+     */
+    public int getAttributeNameStart(int attribute) {
+        return attributeNameStarts[attribute];
+    }
+
+    /**
+     * Length of the local name of an attribute.
+     */
+    public int getAttributeNameLength(int attribute) {
+        return attributeNameLengths[attribute];
+    }
+
+    /**
+     * Start of the value of an attribute in the character block.
+     */
+    public int getAttributeValueStart(int attribute) {
+        return attributeValueStarts[attribute];
+    }
+
+    /**
+     * Length of the value of an attribute.
+     */
+    public int getAttributeValueLength(int attribute) {
+        return attributeValueLengths[attribute];
+    }
+
+    /**
+     * Create a String of the local name of an attribute.
+     */
+    public String getAttributeName(int attribute) {
+        return new String(chars, attributeNameStarts[attribute], attributeNameLengths[attribute]);
+    }
+
+    /**
+     * Create a String of the value of an attribute.
+     */
+    public String getAttributeValue(int attribute) {
+        return new String(chars, attributeValueStarts[attribute], attributeValueLengths[attribute]);
+    }
+
+    /**
+     * Compare the local name of an attribute without creating a String.
+     */
+    public boolean attributeNameEquals(int attribute, String name) {
+        return regionEquals(attributeNameStarts[attribute], attributeNameLengths[attribute], name);
+    }
+
+    private boolean regionEquals(int start, int len, String s) {
+        if (len != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (chars[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
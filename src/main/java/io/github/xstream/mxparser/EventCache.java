@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+
+/**
+ * Cache of event recordings for documents that are parsed repeatedly.
+ * <p>
+ * Documents are identified by the SHA-1 hash of their content and encoding. On the first request a document is parsed
+ * with a {@link MXParser} and its events are recorded, every following request for the same content replays the
+ * recording without tokenizing the document again. The least recently used recordings are evicted when the total size
+ * of all recordings exceeds the limit. The cache is thread-safe, the returned parsers are not.
+ * </p>
+ */
+public class EventCache {
+
+    private final long maxSize;
+    private final MXParserConfig config;
+    private final boolean processNamespaces;
+    private final Map recordings = new LinkedHashMap(16, 0.75f, true);
+    private long size;
+    private long hits;
+    private long misses;
+
+    /**
+     * Create a cache.
+     *
+     * @param maxSize the maximum total size of the recordings in bytes
+     * @param processNamespaces true to parse the documents with namespace processing
+     */
+    public EventCache(long maxSize, boolean processNamespaces) {
+        this(maxSize, processNamespaces, MXParserConfig.DEFAULT);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param maxSize the maximum total size of the recordings in bytes
+     * @param processNamespaces true to parse the documents with namespace processing
+     * @param config the configuration of the parsers used for the documents that are not cached
+     */
+    public EventCache(long maxSize, boolean processNamespaces, MXParserConfig config) {
+        this.maxSize = maxSize;
+        this.processNamespaces = processNamespaces;
+        this.config = config;
+    }
+
+    /**
+     * Retrieve a parser for a document.
+     *
+     * @param content the document
+     * @param encoding the encoding of the document or null to detect it
+     * @return the parser positioned at the START_DOCUMENT
+     */
+    public XmlPullParser getParser(byte[] content, String encoding) throws XmlPullParserException, IOException {
+        return getRecording(content, encoding).newParser();
+    }
+
+    /**
+     * Retrieve a parser for a document.
+     *
+     * @param in the document, read completely but not closed
+     * @param encoding the encoding of the document or null to detect it
+     * @return the parser positioned at the START_DOCUMENT
+     */
+    public XmlPullParser getParser(InputStream in, String encoding) throws XmlPullParserException, IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return getParser(out.toByteArray(), encoding);
+    }
+
+    /**
+     * Retrieve the recording of a document, the document is parsed if it is not cached.
+     */
+    public EventRecording getRecording(byte[] content, String encoding) throws XmlPullParserException, IOException {
+        final Key key = new Key(digest(content, encoding));
+        synchronized (this) {
+            final EventRecording recording = (EventRecording)recordings.get(key);
+            if (recording != null) {
+                ++hits;
+                return recording;
+            }
+            ++misses;
+        }
+        // parse outside of the lock, concurrent requests for a new document may parse it more than once
+        final MXParser parser = new MXParser(config);
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, processNamespaces);
+        parser.setInput(new ByteArrayInputStream(content), encoding);
+        final EventRecording recording = EventRecording.record(parser);
+        final long recordingSize = recording.getSize();
+        synchronized (this) {
+            if (recordingSize <= maxSize) {
+                final EventRecording previous = (EventRecording)recordings.put(key, recording);
+                if (previous != null) {
+                    size -= previous.getSize();
+                }
+                size += recordingSize;
+                for (final Iterator iter = recordings.values().iterator(); size > maxSize && iter.hasNext();) {
+                    size -= ((EventRecording)iter.next()).getSize();
+                    iter.remove();
+                }
+            }
+        }
+        return recording;
+    }
+
+    private static byte[] digest(byte[] content, String encoding) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available: " + e.getMessage());
+        }
+        if (encoding != null) {
+            for (int i = 0; i < encoding.length(); i++) {
+                digest.update((byte)encoding.charAt(i));
+            }
+        }
+        digest.update((byte)0);
+        return digest.digest(content);
+    }
+
+    /**
+     * Remove all recordings.
+     */
+    public synchronized void clear() {
+        recordings.clear();
+        size = 0;
+    }
+
+    /**
+     * Number of cached recordings.
+     */
+    public synchronized int getCount() {
+        return recordings.size();
+    }
+
+    /**
+     * Total size of the cached recordings in bytes.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static final class Key {
+        private final byte[] digest;
+        private final int hash;
+
+        Key(byte[] digest) {
+            this.digest = digest;
+            this.hash = (digest[0] & 0xFF) << 24 | (digest[1] & 0xFF) << 16 | (digest[2] & 0xFF) << 8
+                | (digest[3] & 0xFF);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(digest, ((Key)obj).digest);
+        }
+    }
+}
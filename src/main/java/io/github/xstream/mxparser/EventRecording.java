@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+
+/**
+ * Immutable binary recording of the events of a document.
+ * <p>
+ * The recording contains the events as returned by {@link XmlPullParser#next()} in a compact form: an int stream with
+ * the namespaces defined at depth 0 and the event types, symbols for all names and namespaces, and ranges in one
+ * character store for text and attribute values. A recording is replayed by any number of parsers created with
+ * {@link #newParser()} without tokenizing the document again. Since the recording is immutable, it can be shared between threads.
+ * </p>
+ */
+public final class EventRecording {
+
+    private static final int MAGIC = 0x4D584552; // MXER
+    private static final int VERSION = 1;
+
+    final int[] events;
+    final String[] symbols;
+    final char[] chars;
+    final boolean processNamespaces;
+    final String inputEncoding;
+
+    private EventRecording(int[] events, String[] symbols, char[] chars, boolean processNamespaces,
+            String inputEncoding) {
+        this.events = events;
+        this.symbols = symbols;
+        this.chars = chars;
+        this.processNamespaces = processNamespaces;
+        this.inputEncoding = inputEncoding;
+    }
+
+    /**
+     * Record all remaining events of a parser up to the end of the document.
+     *
+     * @param parser the parser with its input set
+     * @return the recording
+     */
+    public static EventRecording record(XmlPullParser parser) throws XmlPullParserException, IOException {
+        final Recorder recorder = new Recorder();
+        final boolean processNamespaces = parser.getFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES);
+        final int[] holder = new int[2];
+        // namespaces defined before the root element, e.g. with MXParser.defineNamespace()
+        final int definedNamespaces = processNamespaces ? parser.getNamespaceCount(0) : 0;
+        recorder.add(definedNamespaces);
+        for (int i = 0; i < definedNamespaces; i++) {
+            recorder.add(recorder.symbol(parser.getNamespacePrefix(i)));
+            recorder.add(recorder.symbol(parser.getNamespaceUri(i)));
+        }
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            eventType = parser.next();
+            recorder.add(eventType);
+            if (eventType == XmlPullParser.START_TAG) {
+                recorder.add(recorder.symbol(parser.getName()));
+                recorder.add(recorder.symbol(parser.getNamespace()));
+                recorder.add(recorder.symbol(parser.getPrefix()));
+                recorder.add(parser.isEmptyElementTag() ? 1 : 0);
+                final int depth = parser.getDepth();
+                final int namespaceStart = processNamespaces ? parser.getNamespaceCount(depth - 1) : 0;
+                final int namespaceEnd = processNamespaces ? parser.getNamespaceCount(depth) : 0;
+                recorder.add(namespaceEnd - namespaceStart);
+                for (int i = namespaceStart; i < namespaceEnd; i++) {
+                    recorder.add(recorder.symbol(parser.getNamespacePrefix(i)));
+                    recorder.add(recorder.symbol(parser.getNamespaceUri(i)));
+                }
+                final int attributeCount = parser.getAttributeCount();
+                recorder.add(attributeCount);
+                for (int i = 0; i < attributeCount; i++) {
+                    recorder.add(recorder.symbol(parser.getAttributeName(i)));
+                    recorder.add(recorder.symbol(parser.getAttributeNamespace(i)));
+                    recorder.add(recorder.symbol(parser.getAttributePrefix(i)));
+                    final String value = parser.getAttributeValue(i);
+                    recorder.add(recorder.text(value));
+                    recorder.add(value.length());
+                }
+            } else if (eventType == XmlPullParser.TEXT) {
+                final char[] text = parser.getTextCharacters(holder);
+                recorder.add(recorder.text(text, holder[0], holder[1]));
+                recorder.add(holder[1]);
+                recorder.add(parser.isWhitespace() ? 1 : 0);
+            } else if (eventType != XmlPullParser.END_TAG && eventType != XmlPullParser.END_DOCUMENT) {
+                throw new XmlPullParserException("unexpected event " + XmlPullParser.TYPES[eventType], parser, null);
+            }
+        }
+        return recorder.toRecording(processNamespaces, parser.getInputEncoding());
+    }
+
+    /**
+     * Create a parser that replays the recording. The parser is positioned at the START_DOCUMENT.
+     */
+    public XmlPullParser newParser() {
+        return new ReplayParser(this);
+    }
+
+    /**
+     * Approximate number of bytes occupied by the recording.
+     */
+    public long getSize() {
+        long size = 4L * events.length + 2L * chars.length;
+        for (int i = 0; i < symbols.length; i++) {
+            size += 40 + 2 * symbols[i].length();
+        }
+        return size;
+    }
+
+    /**
+     * Write the recording.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeBoolean(processNamespaces);
+        out.writeBoolean(inputEncoding != null);
+        if (inputEncoding != null) {
+            out.writeUTF(inputEncoding);
+        }
+        out.writeInt(symbols.length);
+        for (int i = 0; i < symbols.length; i++) {
+            out.writeUTF(symbols[i]);
+        }
+        out.writeInt(events.length);
+        for (int i = 0; i < events.length; i++) {
+            out.writeInt(events[i]);
+        }
+        out.writeInt(chars.length);
+        for (int i = 0; i < chars.length; i++) {
+            out.writeChar(chars[i]);
+        }
+    }
+
+    /**
+     * Read a recording written with {@link #writeTo(DataOutput)}.
+     */
+    public static EventRecording readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not an event recording");
+        }
+        final int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported event recording version " + version);
+        }
+        final boolean processNamespaces = in.readBoolean();
+        final String inputEncoding = in.readBoolean() ? in.readUTF() : null;
+        final String[] symbols = new String[in.readInt()];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = in.readUTF().intern();
+        }
+        final int[] events = new int[in.readInt()];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = in.readInt();
+        }
+        final char[] chars = new char[in.readInt()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new EventRecording(events, symbols, chars, processNamespaces, inputEncoding);
+    }
+
+    private static final class Recorder {
+        private int[] events = new int[256];
+        private int eventsEnd;
+        private final Map symbolIds = new HashMap();
+        private String[] symbols = new String[32];
+        private int symbolCount;
+        private char[] chars = new char[1024];
+        private int charsEnd;
+
+        void add(int value) {
+            if (eventsEnd == events.length) {
+                final int[] newEvents = new int[2 * eventsEnd];
+                System.arraycopy(events, 0, newEvents, 0, eventsEnd);
+                events = newEvents;
+            }
+            events[eventsEnd++] = value;
+        }
+
+        int symbol(String s) {
+            if (s == null) {
+                return -1;
+            }
+            final Integer id = (Integer)symbolIds.get(s);
+            if (id != null) {
+                return id.intValue();
+            }
+            if (symbolCount == symbols.length) {
+                final String[] newSymbols = new String[2 * symbolCount];
+                System.arraycopy(symbols, 0, newSymbols, 0, symbolCount);
+                symbols = newSymbols;
+            }
+            symbols[symbolCount] = s.intern();
+            symbolIds.put(s, new Integer(symbolCount));
+            return symbolCount++;
+        }
+
+        int text(char[] cbuf, int off, int len) {
+            ensureChars(len);
+            System.arraycopy(cbuf, off, chars, charsEnd, len);
+            charsEnd += len;
+            return charsEnd - len;
+        }
+
+        int text(String s) {
+            final int len = s.length();
+            ensureChars(len);
+            s.getChars(0, len, chars, charsEnd);
+            charsEnd += len;
+            return charsEnd - len;
+        }
+
+        private void ensureChars(int len) {
+            if (charsEnd + len > chars.length) {
+                final char[] newChars = new char[Math.max(2 * chars.length, charsEnd + len)];
+                System.arraycopy(chars, 0, newChars, 0, charsEnd);
+                chars = newChars;
+            }
+        }
+
+        EventRecording toRecording(boolean processNamespaces, String inputEncoding) {
+            final int[] finalEvents = new int[eventsEnd];
+            System.arraycopy(events, 0, finalEvents, 0, eventsEnd);
+            final String[] finalSymbols = new String[symbolCount];
+            System.arraycopy(symbols, 0, finalSymbols, 0, symbolCount);
+            final char[] finalChars = new char[charsEnd];
+            System.arraycopy(chars, 0, finalChars, 0, charsEnd);
+            return new EventRecording(finalEvents, finalSymbols, finalChars, processNamespaces, inputEncoding);
+        }
+    }
+}
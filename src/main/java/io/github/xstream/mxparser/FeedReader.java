@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader decoding the bytes pushed into it.
+ * <p>
+ * In contrast to a normal reader, the reader never blocks. If all pushed bytes have been decoded, it returns 0 until
+ * more bytes are fed or the end of the input has been signaled. Incomplete byte sequences of a character are kept
+ * until the remaining bytes arrive.
+ * </p>
+ */
+final class FeedReader extends Reader {
+
+    private final CharsetDecoder decoder;
+    private final CharBuffer spill = CharBuffer.allocate(2);
+    private ByteBuffer bytes;
+    private boolean endOfInput;
+    private boolean flushed;
+
+    FeedReader(Charset charset) {
+        this(charset, ByteBuffer.allocate(256));
+        bytes.flip();
+    }
+
+    /**
+     * Create a reader for a complete input that is already available as buffer.
+     */
+    FeedReader(Charset charset, ByteBuffer input) {
+        decoder = charset
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        bytes = input;
+        spill.flip();
+    }
+
+    void feed(ByteBuffer input) {
+        if (endOfInput) {
+            throw new IllegalStateException("end of input has already been reached");
+        }
+        final int required = bytes.remaining() + input.remaining();
+        if (required > bytes.capacity()) {
+            final ByteBuffer grown = ByteBuffer.allocate(Math.max(required, 2 * bytes.capacity()));
+            grown.put(bytes);
+            bytes = grown;
+        } else {
+            bytes.compact();
+        }
+        bytes.put(input);
+        bytes.flip();
+    }
+
+    void endOfInput() {
+        endOfInput = true;
+    }
+
+    boolean isEndOfInput() {
+        return endOfInput;
+    }
+
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        while (spill.hasRemaining() && n < len) {
+            cbuf[off + n++] = spill.get();
+        }
+        if (n < len && !flushed) {
+            final CharBuffer out = CharBuffer.wrap(cbuf, off + n, len - n);
+            final CoderResult result = decoder.decode(bytes, out, endOfInput);
+            if (endOfInput && result.isUnderflow() && !flushed) {
+                flushed = decoder.flush(out).isUnderflow();
+            }
+            n = out.position() - off;
+            if (n == 0 && result.isOverflow()) {
+                // not even a single character fits, i.e. a surrogate pair with space for one char only
+                spill.clear();
+                decoder.decode(bytes, spill, endOfInput);
+                spill.flip();
+                cbuf[off + n++] = spill.get();
+            }
+        }
+        if (n == 0 && endOfInput && flushed) {
+            return -1;
+        }
+        return n;
+    }
+
+    public void close() {
+        bytes = ByteBuffer.allocate(0);
+        spill.clear().flip();
+        endOfInput = true;
+        flushed = true;
+    }
+}
@@ -11,8 +11,12 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -49,6 +53,57 @@ public class MXParser
     private final static String PROPERTY_LOCATION =
         "http://xmlpull.org/v1/doc/properties.html#location";
 
+    /**
+     * Returned by next() and nextToken() for input set with {@link #setFeedInput(String)}
+     * if the fed data does not contain the next complete event.
+     * Feed more data and call the same method again.
+     * Also returned in {@link #FEATURE_FOLLOW follow mode} if the input has no more data yet.
+     */
+    public static final int EVENT_INCOMPLETE = 257;
+
+    /**
+     * Feature to parse a stream of concatenated documents or top level fragments.
+     * If the feature is enabled, a start tag or an XML declaration in the epilog starts
+     * a new document: next() and nextToken() return END_DOCUMENT for the finished document
+     * followed by START_DOCUMENT for the new one. After the last document they keep
+     * returning END_DOCUMENT. Buffers and the input reader are kept at the document boundary.
+     */
+    public static final String FEATURE_MULTI_DOCUMENT =
+        "http://x-stream.github.io/mxparser/features#multi-document";
+
+    /**
+     * Feature to follow a growing input like an append-only log file.
+     * If the feature is enabled, the end of the input inside an open document (or anywhere
+     * with {@link #FEATURE_MULTI_DOCUMENT}) is not an error, but the parser waits for more
+     * input according to {@link #PROPERTY_FOLLOW_POLL_INTERVAL}. The reader must deliver the
+     * appended data after it has reported the end of the input, like a reader of a file does.
+     */
+    public static final String FEATURE_FOLLOW =
+        "http://x-stream.github.io/mxparser/features#follow";
+
+    /**
+     * Property with the milliseconds to wait before the input is polled again in follow mode
+     * as Number. With an interval of 0 (default) next() and nextToken() do not wait, but return
+     * {@link #EVENT_INCOMPLETE} and the same method can be called again later.
+     * If the waiting thread is interrupted, the methods throw an InterruptedIOException and
+     * can be called again as well.
+     */
+    public static final String PROPERTY_FOLLOW_POLL_INTERVAL =
+        "http://x-stream.github.io/mxparser/properties#follow-poll-interval";
+
+    /** Thrown by fillBuf() if fed or followed input has no more data yet */
+    private static final class InputStarvedException extends IOException {
+        private static final long serialVersionUID = 20261019L;
+
+        InputStarvedException() {
+            super("no more data available");
+        }
+
+        public synchronized Throwable fillInStackTrace() {
+            return this; // only used to unwind the scanning of the incomplete event
+        }
+    }
+
     /**
      * Implementation notice:
      * the is instance variable that controls if newString() is interning.
@@ -70,11 +125,26 @@ public class MXParser
         return (new String(cbuf, off, len)).intern();
     }
 
+    private NameVocabulary vocabulary;
+    // slot of the last name created with newName in the vocabulary
+    private int nameSlot = -1;
+
+    /**
+     * Create a string for an element or attribute name, names of the vocabulary are not created again.
+     */
+    private String newName(char[] cbuf, int off, int len) {
+        nameSlot = vocabulary != null ? vocabulary.lookup(cbuf, off, len) : -1;
+        return nameSlot >= 0 ? vocabulary.getSlotName(nameSlot) : newString(cbuf, off, len);
+    }
+
     private static final boolean TRACE_SIZING = false;
 
     // NOTE: features are not resettable and typically defaults to false ...
     private boolean processNamespaces;
     private boolean roundtripSupported;
+    private boolean multiDocument;
+    private boolean follow;
+    private long followPollInterval;
 
     // global parser state
     private String location;
@@ -82,15 +152,18 @@ public class MXParser
     private int columnNumber;
     private boolean seenRoot;
     private boolean reachedEnd;
+    private boolean nextDocument; // epilog ended with start of another document
+    private long documentStart;
     private int eventType;
     private boolean emptyElementTag;
     // element stack
     private int depth;
-    private char[] elRawName[];
+    private int elRawNameHash[];
     private int elRawNameEnd[];
     private int elRawNameLine[];
 
     private String elName[];
+    private int elNameSlot[];
     private String elPrefix[];
     private String elUri[];
     //private String elValue[];
@@ -106,7 +179,9 @@ public class MXParser
         final int elStackSize = elName != null ? elName.length : 0;
         if( (depth + 1) >= elStackSize) {
             // we add at least one extra slot ...
-            final int newSize = (depth >= 7 ? 2 * depth : 8) + 2; // = lucky 7 + 1 //25
+            final int newSize = (depth >= 7
+                ? config.grow(depth, config.getExpectedDepth())
+                : Math.max(8, config.getExpectedDepth())) + 2; // = lucky 7 + 1 //25
             if(TRACE_SIZING) {
                 System.err.println("TRACE_SIZING elStackSize "+elStackSize+" ==> "+newSize);
             }
@@ -132,7 +207,18 @@ public class MXParser
             }
             elNamespaceCount = iarr;
 
-            //TODO: avoid using element raw name ...
+            iarr = new int[newSize];
+            if(needsCopying) {
+                System.arraycopy(elNameSlot, 0, iarr, 0, elStackSize);
+            }
+            elNameSlot = iarr;
+
+            iarr = new int[newSize];
+            if(needsCopying) {
+                System.arraycopy(elRawNameHash, 0, iarr, 0, elStackSize);
+            }
+            elRawNameHash = iarr;
+
             iarr = new int[newSize];
             if(needsCopying) {
                 System.arraycopy(elRawNameEnd, 0, iarr, 0, elStackSize);
@@ -144,12 +230,6 @@ public class MXParser
                 System.arraycopy(elRawNameLine, 0, iarr, 0, elStackSize);
             }
             elRawNameLine = iarr;
-
-            final char[][] carr = new char[newSize][];
-            if(needsCopying) {
-                System.arraycopy(elRawName, 0, carr, 0, elStackSize);
-            }
-            elRawName = carr;
             //            arr = new String[newSize];
             //            if(needsCopying) System.arraycopy(elLocalName, 0, arr, 0, elStackSize);
             //            elLocalName = arr;
@@ -173,6 +253,7 @@ public class MXParser
     private int attributeCount;
     private String attributeName[];
     private int attributeNameHash[];
+    private int attributeNameSlot[];
     //private int attributeNameStart[];
     //private int attributeNameEnd[];
     private String attributePrefix[];
@@ -188,7 +269,9 @@ public class MXParser
     private  void ensureAttributesCapacity(int size) {
         final int attrPosSize = attributeName != null ? attributeName.length : 0;
         if(size >= attrPosSize) {
-            final int newSize = size > 7 ? 2 * size : 8; // = lucky 7 + 1 //25
+            final int newSize = size > 7
+                ? config.grow(size, config.getExpectedAttributes())
+                : Math.max(8, config.getExpectedAttributes()); // = lucky 7 + 1 //25
             if(TRACE_SIZING) {
                 System.err.println("TRACE_SIZING attrPosSize "+attrPosSize+" ==> "+newSize);
             }
@@ -199,6 +282,10 @@ public class MXParser
             if(needsCopying) System.arraycopy(attributeName, 0, arr, 0, attrPosSize);
             attributeName = arr;
 
+            int[] iarr = new int[newSize];
+            if(needsCopying) System.arraycopy(attributeNameSlot, 0, iarr, 0, attrPosSize);
+            attributeNameSlot = iarr;
+
             arr = new String[newSize];
             if(needsCopying) System.arraycopy(attributePrefix, 0, arr, 0, attrPosSize);
             attributePrefix = arr;
@@ -212,7 +299,7 @@ public class MXParser
             attributeValue = arr;
 
             if( ! allStringsInterned ) {
-                final int[] iarr = new int[newSize];
+                iarr = new int[newSize];
                 if(needsCopying) System.arraycopy(attributeNameHash, 0, iarr, 0, attrPosSize);
                 attributeNameHash = iarr;
             }
@@ -231,7 +318,9 @@ public class MXParser
     private void ensureNamespacesCapacity(int size) {
         final int namespaceSize = namespacePrefix != null ? namespacePrefix.length : 0;
         if(size >= namespaceSize) {
-            final int newSize = size > 7 ? 2 * size : 8; // = lucky 7 + 1 //25
+            final int newSize = size > 7
+                ? config.grow(size, config.getExpectedNamespaces())
+                : Math.max(8, config.getExpectedNamespaces()); // = lucky 7 + 1 //25
             if(TRACE_SIZING) {
                 System.err.println("TRACE_SIZING namespaceSize "+namespaceSize+" ==> "+newSize);
             }
@@ -326,37 +415,60 @@ public class MXParser
     }
 
     // input buffer management
-    private static final int READ_CHUNK_SIZE = 8*1024; //max data chars in one read() call
+    private final MXParserConfig config;
+    private final int readChunkSize; //max data chars in one read() call
+    private static final int MIN_BUF_SIZE = 64;
+    private static final int INITIAL_PC_SIZE = 64;
+    private static final char[] NO_CHARS = new char[0];
     private Reader reader;
     private String inputEncoding;
 
 
-    private int bufLoadFactor = 95;  // 99%
+    private final int bufLoadFactor;  // 99%
     //private int bufHardLimit;  // only matters when expanding
-    private float bufferLoadFactor = bufLoadFactor / 100f;
+    private final float bufferLoadFactor;
 
-    private char buf[] = new char[
-        Runtime.getRuntime().freeMemory() > 1000000L ? READ_CHUNK_SIZE : 256 ];
-    private int bufSoftLimit = (int)( bufferLoadFactor * buf.length ) /100; // desirable size of buffer
+    // allocated lazily by setInput() - see ensureBufCapacity()
+    private char buf[] = NO_CHARS;
+    private int bufSoftLimit; // desirable size of buffer
     private boolean preventBufferCompaction;
+    private long bufPinned = -1; // absolute position retained by compaction or -1
+    private long bufRetained = -1; // absolute position retained on behalf of a caller or -1
+    private long bufMarked = -1; // absolute position retained for mark() and peeking or -1
+
+    // byte offsets: bytes per char of the input encoding, UTF8_BYTES for UTF-8 or 0 if unknown
+    private static final int UTF8_BYTES = -1;
+    private int bytesPerChar;
+    private long byteAnchor; // absolute char position with known byte offset (UTF-8 only)
+    private long byteAnchorOffset;
 
-    private int bufAbsoluteStart; // this is buf
+    private long bufAbsoluteStart; // this is buf
     private int bufStart;
     private int bufEnd;
     private int pos;
     private int posStart;
     private int posEnd;
 
-    private char pc[] = new char[
-        Runtime.getRuntime().freeMemory() > 1000000L ? READ_CHUNK_SIZE : 64 ];
+    // allocated lazily on first use by ensurePC() - most input never needs it
+    private char pc[] = NO_CHARS;
     private int pcStart;
     private int pcEnd;
 
+    // pieces of the current text to be normalized into pc when the text is requested:
+    // absolute ranges of buf or negated ranges of segmentChars for entity replacement text
+    private int segmentCount;
+    private long segmentStart[];
+    private long segmentEnd[];
+    private char segmentChars[] = NO_CHARS;
+    private int segmentCharsEnd;
+
 
     // parsing state
     //private boolean needsMore;
     //private boolean seenMarkup;
     private boolean usePC;
+    // reused by nextBatch()
+    private BatchFiller batchFiller;
 
 
     private boolean seenStartTag;
@@ -368,6 +480,8 @@ public class MXParser
 
     // transient variable set during each call to next/Token()
     private boolean tokenize;
+    private boolean skipText; // TEXT is not reported by next(int)
+    private boolean whitespaceContent; // content of the TEXT or CDSECT event is whitespace only
     private String text;
     private String entityRefName;
 
@@ -375,15 +489,57 @@ public class MXParser
     private Boolean xmlDeclStandalone;
     private String xmlDeclContent;
 
+    // push and follow mode: state at the start of the current next() call to restart from if input is incomplete
+    private FeedReader feedReader;
+    private boolean incomplete;
+    // absolute position of the first fed character not yet checked for the end of the incomplete event
+    private long resumeScan;
+    private long savedPos;
+    private long savedPosStart;
+    private long savedPosEnd;
+    private int savedLineNumber;
+    private int savedColumnNumber;
+    private int savedDepth;
+    private int savedNamespaceEnd;
+    private int savedAttributeCount;
+    private int savedEventType;
+    private int savedFlags;
+    private String savedXmlDeclVersion;
+    private Boolean savedXmlDeclStandalone;
+    private String savedXmlDeclContent;
+
+    // mark() and peeking: state to rewind to
+    private Snapshot markSnapshot;
+    private boolean marked;
+    private Snapshot peekSnapshot;
+    private boolean peeking;
+    private int peekedEventType;
+    private String peekedName;
+
     private static boolean noUnicode4;
 
-    private void reset() {
-        //System.out.println("reset() called");
+    // text of a line break followed by up to INDENTATION_SIZE - 1 spaces or tabs
+    private static final int INDENTATION_SIZE = 65;
+    private static final String[] SPACE_INDENTATION = new String[INDENTATION_SIZE];
+    private static final String[] TAB_INDENTATION = new String[INDENTATION_SIZE];
+    static {
+        final char[] indentation = new char[INDENTATION_SIZE];
+        indentation[0] = '\n';
+        Arrays.fill(indentation, 1, INDENTATION_SIZE, ' ');
+        for (int i = 0; i < INDENTATION_SIZE; i++) SPACE_INDENTATION[i] = new String(indentation, 0, i + 1);
+        Arrays.fill(indentation, 1, INDENTATION_SIZE, '\t');
+        for (int i = 0; i < INDENTATION_SIZE; i++) TAB_INDENTATION[i] = new String(indentation, 0, i + 1);
+    }
+
+    private void resetState() {
+        //System.out.println("resetState() called");
         location = null;
         lineNumber = 1;
         columnNumber = 1;
         seenRoot = false;
         reachedEnd = false;
+        nextDocument = false;
+        documentStart = 0;
         eventType = START_DOCUMENT;
         emptyElementTag = false;
 
@@ -392,6 +548,7 @@ public class MXParser
         attributeCount = 0;
 
         namespaceEnd = 0;
+        if(elNamespaceCount != null) elNamespaceCount[ 0 ] = 0;
 
         entityEnd = 0;
 
@@ -399,11 +556,19 @@ public class MXParser
         inputEncoding = null;
 
         preventBufferCompaction = false;
+        bufPinned = -1;
+        bufRetained = -1;
+        bufMarked = -1;
+        marked = false;
+        bytesPerChar = 0;
+        byteAnchor = 0;
+        byteAnchorOffset = 0;
         bufAbsoluteStart = 0;
         bufEnd = bufStart = 0;
         pos = posStart = posEnd = 0;
 
         pcEnd = pcStart = 0;
+        segmentCount = segmentCharsEnd = 0;
 
         usePC = false;
 
@@ -418,10 +583,50 @@ public class MXParser
         xmlDeclStandalone = null;
         xmlDeclContent = null;
 
+        feedReader = null;
+        incomplete = false;
+
         resetStringCache();
     }
 
     public MXParser() {
+        this(MXParserConfig.DEFAULT);
+    }
+
+    /**
+     * Create a parser with a sizing configuration for known workload shapes.
+     *
+     * @param config the configuration, may be shared between parsers
+     */
+    public MXParser(MXParserConfig config) {
+        if(config == null) throw new IllegalArgumentException("configuration can not be null");
+        this.config = config;
+        readChunkSize = config.getReadChunkSize();
+        bufLoadFactor = config.getBufferLoadFactor();
+        bufferLoadFactor = bufLoadFactor / 100f;
+    }
+
+    /**
+     * The sizing configuration of this parser.
+     */
+    public MXParserConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Set the vocabulary of known element and attribute names. The vocabulary should be set before the input, it
+     * applies to all names parsed afterwards.
+     *
+     * @param vocabulary the vocabulary or null to remove it
+     * @see #getNameId()
+     * @see #getAttributeNameId(int)
+     */
+    public void setVocabulary(NameVocabulary vocabulary) {
+        this.vocabulary = vocabulary;
+    }
+
+    public NameVocabulary getVocabulary() {
+        return vocabulary;
     }
 
 
@@ -464,6 +669,14 @@ public class MXParser
             //        "roundtrip feature can not be switched off");
             //}
             roundtripSupported = state;
+        } else if(FEATURE_MULTI_DOCUMENT.equals(name)) {
+            if(eventType != START_DOCUMENT) throw new XmlPullParserException(
+                    "multi document feature can only be changed before parsing", this, null);
+            multiDocument = state;
+        } else if(FEATURE_FOLLOW.equals(name)) {
+            if(eventType != START_DOCUMENT) throw new XmlPullParserException(
+                    "follow feature can only be changed before parsing", this, null);
+            follow = state;
         } else {
             throw new XmlPullParserException("unsupported feature "+name);
         }
@@ -486,6 +699,10 @@ public class MXParser
         } else if(FEATURE_XML_ROUNDTRIP.equals(name)) {
             //return true;
             return roundtripSupported;
+        } else if(FEATURE_MULTI_DOCUMENT.equals(name)) {
+            return multiDocument;
+        } else if(FEATURE_FOLLOW.equals(name)) {
+            return follow;
         }
         return false;
     }
@@ -496,6 +713,12 @@ public class MXParser
     {
         if(PROPERTY_LOCATION.equals(name)) {
             location = (String) value;
+        } else if(PROPERTY_FOLLOW_POLL_INTERVAL.equals(name)) {
+            if(!(value instanceof Number) || ((Number)value).longValue() < 0) {
+                throw new XmlPullParserException(
+                    "follow poll interval must be a non-negative number and not "+value);
+            }
+            followPollInterval = ((Number)value).longValue();
         } else {
             throw new XmlPullParserException("unsupported property: '"+name+"'");
         }
@@ -513,6 +736,8 @@ public class MXParser
             return xmlDeclContent;
         } else if(PROPERTY_LOCATION.equals(name)) {
             return location;
+        } else if(PROPERTY_FOLLOW_POLL_INTERVAL.equals(name)) {
+            return new Long(followPollInterval);
         }
         return null;
     }
@@ -520,8 +745,50 @@ public class MXParser
 
     public void setInput(Reader in) throws XmlPullParserException
     {
-        reset();
+        setInput(in, 0);
+    }
+
+    /**
+     * Set the input with a hint for the number of characters to expect.
+     * The initial buffer is sized for the hint (up to the size of one read chunk),
+     * so that small documents are parsed without any buffer expansion.
+     *
+     * @param in the reader
+     * @param expectedLength the expected number of characters or 0 if unknown
+     */
+    public void setInput(Reader in, int expectedLength) throws XmlPullParserException
+    {
+        resetState();
         reader = in;
+        ensureBufCapacity(expectedLength > 0 ? expectedLength + 1 : config.getInitialBufferSize());
+    }
+
+    /**
+     * Make sure the input buffer can take the given number of characters, but never allocate
+     * more than one read chunk (or the configured initial size) in advance.
+     * An existing bigger buffer is kept for reuse.
+     */
+    private void ensureBufCapacity(int size) {
+        final int limit = Math.min(Math.max(readChunkSize, config.getInitialBufferSize()),
+            config.getMaxBufferSize());
+        if(size > limit) size = limit;
+        if(size < MIN_BUF_SIZE) size = Math.min(MIN_BUF_SIZE, config.getMaxBufferSize());
+        if(buf.length < size) {
+            if(TRACE_SIZING) System.out.println("TRACE_SIZING ensureBufCapacity() "+buf.length+" => "+size);
+            buf = new char[ size ];
+            updateBufSoftLimit();
+        }
+    }
+
+    private void updateBufSoftLimit() {
+        if(buf.length < readChunkSize) {
+            // small buffer is filled up completely before it is expanded
+            bufSoftLimit = buf.length - 1;
+        } else if(bufLoadFactor > 0) {
+            // Include a fix for
+            // https://web.archive.org/web/20070831191548/http://www.extreme.indiana.edu/bugzilla/show_bug.cgi?id=228
+            bufSoftLimit = (int)(bufferLoadFactor * buf.length);
+        }
     }
 
     public void setInput(InputStream inputStream, String inputEncoding)
@@ -547,14 +814,279 @@ public class MXParser
         //    reader = new InputStreamReader(inputStream);
         //}
         setInput(reader);
-        //must be here as reset() was called in setInput() and has set this.inputEncoding to null ...
+        //must be here as resetState() was called in setInput() and has set this.inputEncoding to null ...
         this.inputEncoding = inputEncoding;
+        try {
+            bytesPerChar = bytesPerChar(Charset.forName(inputEncoding != null ? inputEncoding : "UTF-8"));
+        } catch(IllegalArgumentException ex) {
+            // no byte offsets
+        }
+    }
+
+    /**
+     * Set the input to data that is pushed into the parser with the feed methods as it arrives.
+     * In this mode next() and nextToken() never block, but return {@link #EVENT_INCOMPLETE}
+     * if the fed data does not contain the next complete event yet. Partially fed events are
+     * kept and parsing is restarted at the beginning of such an event with the next call.
+     * Note, that the methods combining multiple events like nextText() or nextTag() require
+     * the complete events to be available already.
+     *
+     * @param inputEncoding the encoding of the fed bytes, null for UTF-8
+     */
+    public void setFeedInput(String inputEncoding) throws XmlPullParserException
+    {
+        final Charset charset;
+        try {
+            charset = Charset.forName(inputEncoding != null ? inputEncoding : "UTF-8");
+        } catch(IllegalArgumentException ex) {
+            throw new XmlPullParserException(
+                "could not create reader for encoding "+inputEncoding+" : "+ex, this, ex);
+        }
+        final FeedReader feedReader = new FeedReader(charset);
+        setInput(feedReader);
+        this.feedReader = feedReader;
+        this.inputEncoding = inputEncoding;
+        bytesPerChar = bytesPerChar(charset);
+    }
+
+    private static int bytesPerChar(Charset charset) {
+        final String name = charset.name();
+        if("UTF-8".equals(name)) {
+            return UTF8_BYTES;
+        } else if("UTF-16BE".equals(name) || "UTF-16LE".equals(name)) {
+            return 2;
+        } else if("UTF-32BE".equals(name) || "UTF-32LE".equals(name)) {
+            return 4;
+        } else if(charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1.0f) {
+            return 1;
+        }
+        // variable length or with byte order mark
+        return 0;
+    }
+
+    /**
+     * Push more data of the input set with {@link #setFeedInput(String)}.
+     * The data is copied, the array can be reused by the caller.
+     */
+    public void feed(byte[] data, int off, int len)
+    {
+        feed(ByteBuffer.wrap(data, off, len));
+    }
+
+    /**
+     * Push more data of the input set with {@link #setFeedInput(String)}.
+     * The remaining bytes of the buffer are copied, the buffer can be reused by the caller.
+     */
+    public void feed(ByteBuffer data)
+    {
+        if(feedReader == null) throw new IllegalStateException("no feed input set");
+        feedReader.feed(data);
+    }
+
+    /**
+     * Signal that no more data is fed to the input set with {@link #setFeedInput(String)}.
+     */
+    public void endOfInput()
+    {
+        if(feedReader == null) throw new IllegalStateException("no feed input set");
+        feedReader.endOfInput();
     }
 
     public String getInputEncoding() {
         return inputEncoding;
     }
 
+    /**
+     * Define a namespace that is in scope for the complete input, e.g. to parse an element
+     * that has been cut out of a document. The namespaces are reported at depth 0 and
+     * can be redeclared by the elements.
+     * <p><b>NOTE:</b> must be called after setInput() and before parsing is started.
+     *
+     * @param prefix the prefix or null for the default namespace
+     * @param uri the namespace URI
+     */
+    public void defineNamespace(String prefix, String uri) throws XmlPullParserException
+    {
+        if(eventType != START_DOCUMENT || seenRoot) throw new XmlPullParserException(
+                "namespaces can only be defined before parsing", this, null);
+        if(uri == null) throw new IllegalArgumentException("namespace URI can not be null");
+        ensureElementsCapacity();
+        ensureNamespacesCapacity(namespaceEnd);
+        if(prefix != null) prefix = prefix.intern();
+        namespacePrefix[ namespaceEnd ] = prefix;
+        if(!allStringsInterned) {
+            namespacePrefixHash[ namespaceEnd ] = prefix != null ? prefix.hashCode() : -1;
+        }
+        namespaceUri[ namespaceEnd ] = uri.intern();
+        elNamespaceCount[ 0 ] = ++namespaceEnd;
+    }
+
+    /**
+     * Set the absolute position of the first input character, if the input continues
+     * a larger stream. Must be called after setInput() and before parsing is started.
+     *
+     * @param offset the position in characters
+     * @param byteOffset the position in bytes of the input stream
+     */
+    void setInputOffset(long offset, long byteOffset) {
+        bufAbsoluteStart = offset;
+        documentStart = offset;
+        byteAnchor = offset;
+        byteAnchorOffset = byteOffset;
+    }
+
+    /** Absolute position of the first input character of the current event. */
+    long getEventStart() {
+        return posStart + bufAbsoluteStart;
+    }
+
+    /** Absolute position after the last input character of the current event. */
+    long getEventEnd() {
+        return posEnd + bufAbsoluteStart;
+    }
+
+    /**
+     * Keep the input from the given absolute position in the buffer until it is released.
+     *
+     * @param position the absolute position or -1 to release the retained input
+     */
+    void retainInput(long position) {
+        bufRetained = position;
+    }
+
+    /**
+     * Capture the state after the current event, so that parsing can be continued
+     * later with another parser and the reopened input using {@link #resume(MXParserCheckpoint, InputStream)}.
+     * The checkpoint contains the position after the event, the open elements and the
+     * namespaces in scope, but no entity replacement texts defined with defineEntityReplacementText().
+     */
+    public MXParserCheckpoint checkpoint()
+    {
+        // characters read ahead are parsed again after resume
+        final int readAhead = seenStartTag || seenEndTag ? 2 : seenMarkup || seenAmpersand ? 1 : 0;
+        final int resumePos = pos - readAhead;
+        final String[] rawName = new String[depth];
+        final int[] rawNameLine = new int[depth];
+        final String[] name = new String[depth];
+        final String[] prefix = new String[depth];
+        final String[] uri = new String[depth];
+        for(int i = 1; i <= depth; i++) {
+            rawName[i - 1] = getRawName(i);
+            rawNameLine[i - 1] = elRawNameLine[ i ];
+            name[i - 1] = elName[ i ];
+            prefix[i - 1] = elPrefix[ i ];
+            uri[i - 1] = elUri[ i ];
+        }
+        final int[] namespaceCount = new int[depth + 1];
+        if(elNamespaceCount != null) System.arraycopy(elNamespaceCount, 0, namespaceCount, 0, depth + 1);
+        final String[] nsPrefix = new String[namespaceEnd];
+        final String[] nsUri = new String[namespaceEnd];
+        if(namespaceEnd > 0) {
+            System.arraycopy(namespacePrefix, 0, nsPrefix, 0, namespaceEnd);
+            System.arraycopy(namespaceUri, 0, nsUri, 0, namespaceEnd);
+        }
+        final int flags = (seenRoot ? MXParserCheckpoint.SEEN_ROOT : 0)
+            | (seenDocdecl ? MXParserCheckpoint.SEEN_DOCDECL : 0)
+            | (pastEndTag ? MXParserCheckpoint.PAST_END_TAG : 0)
+            | (emptyElementTag ? MXParserCheckpoint.EMPTY_ELEMENT_TAG : 0)
+            | (nextDocument ? MXParserCheckpoint.NEXT_DOCUMENT : 0)
+            | (processNamespaces ? MXParserCheckpoint.PROCESS_NAMESPACES : 0);
+        return new MXParserCheckpoint(resumePos + bufAbsoluteStart, getByteOffset(resumePos),
+            inputEncoding, documentStart, lineNumber, columnNumber - readAhead, eventType, flags,
+            xmlDeclVersion, xmlDeclStandalone, xmlDeclContent,
+            rawName, rawNameLine, name, prefix, uri, namespaceCount, nsPrefix, nsUri);
+    }
+
+    /**
+     * Continue parsing from a checkpoint with an input stream that is positioned at
+     * the checkpoint's byte offset, e.g. a reopened file that has been skipped to it.
+     * Features other than namespace processing and entity replacement texts must be set before.
+     * The parser is positioned on the event of the checkpoint, but only its type, depth,
+     * name and namespaces are available.
+     */
+    public void resume(MXParserCheckpoint checkpoint, InputStream inputStream)
+        throws XmlPullParserException
+    {
+        if(checkpoint.byteOffset < 0) throw new XmlPullParserException(
+                "checkpoint has no byte offset, resume with a reader", this, null);
+        setInput(inputStream, checkpoint.encoding);
+        restoreCheckpoint(checkpoint, checkpoint.byteOffset);
+    }
+
+    /**
+     * Continue parsing from a checkpoint with a reader that is positioned at the checkpoint's
+     * character offset.
+     *
+     * @see #resume(MXParserCheckpoint, InputStream)
+     */
+    public void resume(MXParserCheckpoint checkpoint, Reader in)
+        throws XmlPullParserException
+    {
+        setInput(in);
+        restoreCheckpoint(checkpoint, 0);
+    }
+
+    private void restoreCheckpoint(MXParserCheckpoint checkpoint, long byteOffset)
+    {
+        setInputOffset(checkpoint.offset, byteOffset);
+        documentStart = checkpoint.documentStart;
+        lineNumber = checkpoint.lineNumber;
+        columnNumber = checkpoint.columnNumber;
+        eventType = checkpoint.eventType;
+        final int flags = checkpoint.flags;
+        seenRoot = (flags & MXParserCheckpoint.SEEN_ROOT) != 0;
+        seenDocdecl = (flags & MXParserCheckpoint.SEEN_DOCDECL) != 0;
+        pastEndTag = (flags & MXParserCheckpoint.PAST_END_TAG) != 0;
+        emptyElementTag = (flags & MXParserCheckpoint.EMPTY_ELEMENT_TAG) != 0;
+        nextDocument = (flags & MXParserCheckpoint.NEXT_DOCUMENT) != 0;
+        processNamespaces = (flags & MXParserCheckpoint.PROCESS_NAMESPACES) != 0;
+        xmlDeclVersion = checkpoint.xmlDeclVersion;
+        xmlDeclStandalone = checkpoint.xmlDeclStandalone;
+        xmlDeclContent = checkpoint.xmlDeclContent;
+
+        depth = checkpoint.elName.length;
+        ensureElementsCapacity();
+        for(int i = 1; i <= depth; i++) {
+            elRawNameHash[ i ] = checkpoint.elRawName[i - 1].hashCode();
+            elRawNameEnd[ i ] = checkpoint.elRawName[i - 1].length();
+            elRawNameLine[ i ] = checkpoint.elRawNameLine[i - 1];
+            elName[ i ] = intern(checkpoint.elName[i - 1]);
+            elNameSlot[ i ] = vocabulary != null ? vocabulary.lookup(elName[ i ]) : -1;
+            if(elNameSlot[ i ] >= 0) elName[ i ] = vocabulary.getSlotName(elNameSlot[ i ]);
+            elPrefix[ i ] = intern(checkpoint.elPrefix[i - 1]);
+            elUri[ i ] = intern(checkpoint.elUri[i - 1]);
+        }
+        System.arraycopy(checkpoint.elNamespaceCount, 0, elNamespaceCount, 0, depth + 1);
+        namespaceEnd = checkpoint.namespacePrefix.length;
+        ensureNamespacesCapacity(namespaceEnd);
+        for(int i = 0; i < namespaceEnd; i++) {
+            final String prefix = intern(checkpoint.namespacePrefix[i]);
+            namespacePrefix[ i ] = prefix;
+            if(!allStringsInterned) {
+                namespacePrefixHash[ i ] = prefix != null ? prefix.hashCode() : -1;
+            }
+            namespaceUri[ i ] = checkpoint.namespaceUri[i].intern();
+        }
+    }
+
+    private static String intern(String s) {
+        return s != null ? s.intern() : null;
+    }
+
+    /**
+     * Access retained input characters between two absolute positions.
+     * The returned buffer is only valid until the parser is called again.
+     */
+    char[] getInputCharacters(long start, long end, int [] holderForStartAndLength) {
+        if(start < bufAbsoluteStart || end > bufEnd + bufAbsoluteStart || start > end) {
+            throw new IllegalArgumentException(
+                "input from "+start+" to "+end+" is no longer available");
+        }
+        holderForStartAndLength[0] = (int)(start - bufAbsoluteStart);
+        holderForStartAndLength[1] = (int)(end - start);
+        return buf;
+    }
+
     public void defineEntityReplacementText(String entityName,
                                             String replacementText)
         throws XmlPullParserException
@@ -594,9 +1126,12 @@ public class MXParser
     public int getNamespaceCount(int depth)
         throws XmlPullParserException
     {
-        if(processNamespaces == false || depth == 0) {
+        if(processNamespaces == false) {
             return 0;
         }
+        if(depth == 0) {
+            return elNamespaceCount != null ? elNamespaceCount[ 0 ] : 0; // defined namespaces
+        }
         //int maxDepth = eventType == END_TAG ? this.depth + 1 : this.depth;
         //if(depth < 0 || depth > maxDepth) throw new IllegalArgumentException(
         if(depth < 0 || depth > this.depth) throw new IllegalArgumentException(
@@ -717,23 +1252,80 @@ public class MXParser
         return columnNumber;
     }
 
+    /**
+     * Position of the first input character of the current event.
+     * The position of an event starts with the characters returned by getTextCharacters(),
+     * i.e. tags include their markup, while other events may report their content only.
+     */
+    public long getEventStartOffset()
+    {
+        return (eventType == END_DOCUMENT ? pos : posStart) + bufAbsoluteStart;
+    }
+
+    /**
+     * Position after the last input character of the current event.
+     */
+    public long getEventEndOffset()
+    {
+        return (eventType == END_DOCUMENT ? pos : posEnd) + bufAbsoluteStart;
+    }
+
+    /**
+     * Byte offset in the input stream of the first input character of the current event.
+     * Byte offsets are available for input streams in UTF-8, UTF-16BE, UTF-16LE, UTF-32BE,
+     * UTF-32LE and single byte encodings, unless the input contained malformed characters.
+     *
+     * @return the offset or -1 if not available
+     */
+    public long getEventStartByteOffset()
+    {
+        return getByteOffset(eventType == END_DOCUMENT ? pos : posStart);
+    }
+
+    /**
+     * Byte offset in the input stream after the last input character of the current event.
+     *
+     * @return the offset or -1 if not available
+     */
+    public long getEventEndByteOffset()
+    {
+        return getByteOffset(eventType == END_DOCUMENT ? pos : posEnd);
+    }
+
+    private long getByteOffset(int position) {
+        if(bytesPerChar > 0) {
+            return byteAnchorOffset + (position + bufAbsoluteStart - byteAnchor) * bytesPerChar;
+        } else if(bytesPerChar == 0 || position < 0) {
+            return -1;
+        }
+        // UTF-8: count from the anchor and move the anchor, so that subsequent events are cheap
+        final int anchor = (int)(byteAnchor - bufAbsoluteStart);
+        if(position >= anchor) {
+            byteAnchorOffset += utf8Length(anchor, position);
+        } else {
+            byteAnchorOffset -= utf8Length(position, anchor);
+        }
+        byteAnchor = position + bufAbsoluteStart;
+        return byteAnchorOffset;
+    }
+
+    private int utf8Length(int start, int end) {
+        int length = 0;
+        for(int i = start; i < end; i++) {
+            final char ch = buf[i];
+            if(ch < 0x80) ++length;
+            else if(ch < 0x800 || (ch >= 0xD800 && ch <= 0xDFFF)) length += 2; // surrogate pair has 4 bytes
+            else length += 3;
+        }
+        return length;
+    }
+
 
     public boolean isWhitespace() throws XmlPullParserException
     {
         if(eventType == TEXT || eventType == CDSECT) {
-            if(usePC) {
-                for (int i = pcStart; i <pcEnd; i++)
-                {
-                    if(!isS(pc[ i ])) return false;
-                }
-                return true;
-            } else {
-                for (int i = posStart; i <posEnd; i++)
-                {
-                    if(!isS(buf[ i ])) return false;
-                }
-                return true;
-            }
+            // determined while the content was scanned
+            return whitespaceContent;
         } else if(eventType == IGNORABLE_WHITESPACE) {
             return true;
         }
@@ -753,17 +1345,36 @@ public class MXParser
             return text;
         }
         if(text == null) {
+            if(segmentCount > 0) joinSegments();
             if(!usePC || eventType == START_TAG || eventType == END_TAG) {
-                text = new String(buf, posStart, posEnd - posStart);
+                text = whitespaceText(buf, posStart, posEnd - posStart);
             } else {
-                text = new String(pc, pcStart, pcEnd - pcStart);
+                text = whitespaceText(pc, pcStart, pcEnd - pcStart);
             }
         }
         return text;
     }
 
+    private String whitespaceText(char[] cbuf, int off, int len)
+    {
+        if(len > 0 && len <= INDENTATION_SIZE && cbuf[ off ] == '\n'
+            && (eventType == TEXT && whitespaceContent || eventType == IGNORABLE_WHITESPACE))
+        {
+            // share the strings of typical indentation by a line break followed by spaces or tabs
+            final char ch = len > 1 ? cbuf[ off + 1 ] : ' ';
+            int i = off + 2;
+            while(i < off + len && cbuf[ i ] == ch) ++i;
+            if(i >= off + len) {
+                if(ch == ' ') return SPACE_INDENTATION[ len - 1 ];
+                if(ch == '\t') return TAB_INDENTATION[ len - 1 ];
+            }
+        }
+        return new String(cbuf, off, len);
+    }
+
     public char[] getTextCharacters(int [] holderForStartAndLength)
     {
+        if(segmentCount > 0) joinSegments();
         if( eventType == TEXT ) {
             if(usePC) {
                 holderForStartAndLength[0] = pcStart;
@@ -850,6 +1461,21 @@ public class MXParser
         }
     }
 
+    /**
+     * Retrieve the ID of the current element name in the vocabulary without comparing strings.
+     *
+     * @return the ID for START_TAG or END_TAG, {@link NameVocabulary#UNKNOWN} for unknown names, other events or
+     *         without vocabulary
+     * @see #setVocabulary(NameVocabulary)
+     */
+    public int getNameId()
+    {
+        if(vocabulary == null || (eventType != START_TAG && eventType != END_TAG)) {
+            return NameVocabulary.UNKNOWN;
+        }
+        return vocabulary.getId(elNameSlot[ depth ], processNamespaces ? elUri[ depth ] : NO_NAMESPACE);
+    }
+
     public String getPrefix()
     {
         if(eventType == START_TAG) {
@@ -897,6 +1523,22 @@ public class MXParser
         return attributeName[ index ];
     }
 
+    /**
+     * Retrieve the ID of an attribute name in the vocabulary without comparing strings.
+     *
+     * @return the ID or {@link NameVocabulary#UNKNOWN} for unknown names or without vocabulary
+     * @see #setVocabulary(NameVocabulary)
+     */
+    public int getAttributeNameId(int index)
+    {
+        if(eventType != START_TAG) throw new IndexOutOfBoundsException(
+                "only START_TAG can have attributes");
+        if(index < 0 || index >= attributeCount) throw new IndexOutOfBoundsException(
+                "attribute position must be 0.."+(attributeCount-1)+" and not "+index);
+        if(vocabulary == null) return NameVocabulary.UNKNOWN;
+        return vocabulary.getId(attributeNameSlot[ index ], processNamespaces ? attributeUri[ index ] : NO_NAMESPACE);
+    }
+
     public String getAttributePrefix(int index)
     {
         if(eventType != START_TAG) throw new IndexOutOfBoundsException(
@@ -976,7 +1618,7 @@ public class MXParser
     public int getEventType()
         throws XmlPullParserException
     {
-        return eventType;
+        return incomplete ? EVENT_INCOMPLETE : eventType;
     }
 
     public void require(int type, String namespace, String name)
@@ -1084,31 +1726,578 @@ public class MXParser
         }
     }
 
-    public int nextTag() throws XmlPullParserException, IOException
+    public int nextTag() throws XmlPullParserException, IOException
+    {
+        next();
+        if(eventType == TEXT && isWhitespace()) {  // skip whitespace
+            next();
+        }
+        if (eventType != START_TAG && eventType != END_TAG) {
+            throw new XmlPullParserException("expected START_TAG or END_TAG not "
+                                                 +TYPES[ getEventType() ], this, null);
+        }
+        return eventType;
+    }
+
+    public int next()
+        throws XmlPullParserException, IOException
+    {
+        tokenize = false;
+        return feedReader == null && !follow ? nextImpl() : nextResumable();
+    }
+
+    /**
+     * Advance to the next event of one of the given types, skipping all other events.
+     * Skipped text is only checked to be well-formed, but not normalized or merged,
+     * so element-only consumers save the processing of the content between the tags.
+     * Note that unlike nextTag() this method skips text that is not whitespace.
+     *
+     * @param eventMask the bits of the requested event types, e.g.
+     *   <code>1 &lt;&lt; START_TAG | 1 &lt;&lt; END_TAG</code>
+     * @return the type of the event, END_DOCUMENT and {@link #EVENT_INCOMPLETE} are always returned
+     */
+    public int next(int eventMask)
+        throws XmlPullParserException, IOException
+    {
+        skipText = (eventMask & 1 << TEXT) == 0;
+        try {
+            while(true) {
+                final int event = next();
+                if(event == END_DOCUMENT || event == EVENT_INCOMPLETE || (eventMask & 1 << event) != 0) {
+                    return event;
+                }
+            }
+        } finally {
+            skipText = false;
+        }
+    }
+
+    /**
+     * Fill a batch with the next events as returned by next(). The batch is cleared first and filled
+     * until it is full, the END_DOCUMENT is reached or no complete event is available in feed or follow mode.
+     * With {@link #FEATURE_MULTI_DOCUMENT} the next call continues with the START_DOCUMENT of the next document.
+     * Names and values are copied directly from the parser state without any getter calls.
+     *
+     * @param batch the reusable batch
+     * @return the number of events in the batch, 0 if no complete event was available or the
+     *   END_DOCUMENT of the last document has already been reached
+     */
+    public int nextBatch(EventBatch batch)
+        throws XmlPullParserException, IOException
+    {
+        batch.clear();
+        if(eventType == END_DOCUMENT && !nextDocument) return 0;
+        if(batchFiller == null) batchFiller = new BatchFiller();
+        batchFiller.batch = batch;
+        final int capacity = batch.getCapacity();
+        while(batch.size() < capacity) {
+            final int type = next();
+            if(type == EVENT_INCOMPLETE) break;
+            dispatch(type, batchFiller);
+            if(type == END_DOCUMENT) break;
+        }
+        return batch.size();
+    }
+
+    /**
+     * Push all remaining events of the document to a handler. The parser state is passed to the handler
+     * directly, without getter calls and without creating Strings for text.
+     * For input set with {@link #setFeedInput(String)} or in follow mode the method returns when no
+     * complete event is available, feed more data and call the method again to continue.
+     * With {@link #FEATURE_MULTI_DOCUMENT} all documents of the stream are pushed.
+     *
+     * @param handler the handler
+     * @return true if the END_DOCUMENT of the last document has been reached, false if more input is needed
+     */
+    public boolean parse(MXParserHandler handler)
+        throws XmlPullParserException, IOException
+    {
+        while(eventType != END_DOCUMENT || nextDocument) {
+            final int type = next();
+            if(type == EVENT_INCOMPLETE) return false;
+            dispatch(type, handler);
+        }
+        return true;
+    }
+
+    /**
+     * Pass the current event as returned by next() to the handler straight from the parser state.
+     */
+    private void dispatch(int type, MXParserHandler handler)
+        throws XmlPullParserException
+    {
+        if(type == START_TAG) {
+            handler.startElement(processNamespaces ? elUri[ depth ] : NO_NAMESPACE, elName[ depth ],
+                                 elPrefix[ depth ], depth);
+            for (int i = 0; i < attributeCount; i++) {
+                handler.attribute(processNamespaces ? attributeUri[ i ] : NO_NAMESPACE,
+                                  attributeName[ i ], attributePrefix[ i ], attributeValue[ i ]);
+            }
+        } else if(type == TEXT) {
+            if(segmentCount > 0) joinSegments();
+            if(usePC) {
+                handler.characters(pc, pcStart, pcEnd - pcStart);
+            } else {
+                handler.characters(buf, posStart, posEnd - posStart);
+            }
+        } else if(type == END_TAG) {
+            handler.endElement(processNamespaces ? elUri[ depth ] : NO_NAMESPACE, elName[ depth ],
+                               elPrefix[ depth ], depth);
+        } else if(type == START_DOCUMENT) {
+            handler.startDocument();
+        } else if(type == END_DOCUMENT) {
+            handler.endDocument();
+        }
+    }
+
+    /**
+     * Handler adding the dispatched events to the batch of nextBatch().
+     */
+    private final class BatchFiller implements MXParserHandler {
+        EventBatch batch;
+        private int event;
+
+        public void startElement(String namespace, String name, String prefix, int depth) {
+            event = batch.addEvent(START_TAG, depth, namespace, name);
+        }
+
+        public void attribute(String namespace, String name, String prefix, String value) {
+            batch.addAttribute(event, namespace, name, value);
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            batch.addEvent(TEXT, depth, null, ch, start, length);
+        }
+
+        public void endElement(String namespace, String name, String prefix, int depth) {
+            batch.addEvent(END_TAG, depth, namespace, name);
+        }
+
+        public void startDocument() {
+            batch.addEvent(START_DOCUMENT, depth, null, buf, 0, 0);
+        }
+
+        public void endDocument() {
+            batch.addEvent(END_DOCUMENT, depth, null, buf, 0, 0);
+        }
+    }
+
+    public int nextToken()
+        throws XmlPullParserException, IOException
+    {
+        tokenize = true;
+        return feedReader == null && !follow ? nextImpl() : nextResumable();
+    }
+
+    private int nextResumable()
+        throws XmlPullParserException, IOException
+    {
+        if(incomplete) {
+            if(!canCompleteEvent()) return EVENT_INCOMPLETE;
+        }
+        saveState();
+        try {
+            final int event = nextImpl();
+            incomplete = false;
+            bufPinned = -1;
+            return event;
+        } catch(InputStarvedException ex) {
+            restoreState();
+            incomplete = true;
+            resumeScan = bufEnd - 1 + bufAbsoluteStart;
+            return EVENT_INCOMPLETE;
+        } catch(InterruptedIOException ex) {
+            restoreState();
+            incomplete = true;
+            resumeScan = bufEnd - 1 + bufAbsoluteStart;
+            throw ex;
+        }
+    }
+
+    /**
+     * Read the fed data into the buffer and look for a character that can end the incomplete event,
+     * i.e. '&gt;' for markup and '&lt;' for text (or ';' and '&amp;' when tokenizing entity references).
+     * The start of the event may already have been consumed by the previous event, its '&lt;' or '&amp;'
+     * is then pending in the state flags. The event is only scanned again if such a character arrived,
+     * so that an event spanning many feeds is not scanned from its start after every feed. The last
+     * character of the previous attempt is checked again, since the event may have been incomplete
+     * only for the lack of a character following it, e.g. after the '&lt;' ending a text.
+     * In follow mode and at the end of the fed input the event is always scanned again.
+     *
+     * @return true if the incomplete event is scanned again
+     */
+    boolean canCompleteEvent()
+        throws XmlPullParserException, IOException
+    {
+        if(feedReader == null || feedReader.isEndOfInput() || pos >= bufEnd) return true;
+        final char first = buf[ pos ];
+        final char end;
+        final char alternativeEnd;
+        if(seenMarkup || seenStartTag || seenEndTag || first == '<') {
+            end = alternativeEnd = '>';
+        } else if(seenAmpersand || tokenize && first == '&') {
+            end = alternativeEnd = ';';
+        } else {
+            end = '<';
+            alternativeEnd = tokenize ? '&' : '<';
+        }
+        while(true) {
+            for(int i = Math.max(pos, (int)(resumeScan - bufAbsoluteStart)); i < bufEnd; i++) {
+                final char ch = buf[ i ];
+                if(ch == end || ch == alternativeEnd) return true;
+            }
+            resumeScan = bufEnd + bufAbsoluteStart;
+            try {
+                fillBuf();
+            } catch(InputStarvedException ex) {
+                return false;
+            }
+        }
+    }
+
+    private void saveState() {
+        if(incomplete) return; // keep the state of the first attempt
+        savedPos = pos + bufAbsoluteStart;
+        savedPosStart = posStart + bufAbsoluteStart;
+        savedPosEnd = posEnd + bufAbsoluteStart;
+        savedLineNumber = lineNumber;
+        savedColumnNumber = columnNumber;
+        savedDepth = depth;
+        savedNamespaceEnd = namespaceEnd;
+        savedAttributeCount = attributeCount;
+        savedEventType = eventType;
+        savedFlags = getStateFlags();
+        savedXmlDeclVersion = xmlDeclVersion;
+        savedXmlDeclStandalone = xmlDeclStandalone;
+        savedXmlDeclContent = xmlDeclContent;
+        bufPinned = Math.min(savedPos, savedPosEnd);
+    }
+
+    private void restoreState() {
+        pos = (int)(savedPos - bufAbsoluteStart);
+        posStart = (int)(savedPosStart - bufAbsoluteStart);
+        posEnd = (int)(savedPosEnd - bufAbsoluteStart);
+        bufStart = (int)(bufPinned - bufAbsoluteStart);
+        lineNumber = savedLineNumber;
+        columnNumber = savedColumnNumber;
+        depth = savedDepth;
+        namespaceEnd = savedNamespaceEnd;
+        attributeCount = savedAttributeCount;
+        eventType = savedEventType;
+        setStateFlags(savedFlags);
+        xmlDeclVersion = savedXmlDeclVersion;
+        xmlDeclStandalone = savedXmlDeclStandalone;
+        xmlDeclContent = savedXmlDeclContent;
+        text = null;
+        pcEnd = pcStart = 0;
+        usePC = false;
+        segmentCount = segmentCharsEnd = 0;
+    }
+
+    private int getStateFlags() {
+        return (seenRoot ? 1 : 0)
+            | (reachedEnd ? 1 << 1 : 0)
+            | (emptyElementTag ? 1 << 2 : 0)
+            | (preventBufferCompaction ? 1 << 3 : 0)
+            | (seenStartTag ? 1 << 4 : 0)
+            | (seenEndTag ? 1 << 5 : 0)
+            | (pastEndTag ? 1 << 6 : 0)
+            | (seenAmpersand ? 1 << 7 : 0)
+            | (seenMarkup ? 1 << 8 : 0)
+            | (seenDocdecl ? 1 << 9 : 0)
+            | (nextDocument ? 1 << 10 : 0);
+    }
+
+    private void setStateFlags(int flags) {
+        seenRoot = (flags & 1) != 0;
+        reachedEnd = (flags & 1 << 1) != 0;
+        emptyElementTag = (flags & 1 << 2) != 0;
+        preventBufferCompaction = (flags & 1 << 3) != 0;
+        seenStartTag = (flags & 1 << 4) != 0;
+        seenEndTag = (flags & 1 << 5) != 0;
+        pastEndTag = (flags & 1 << 6) != 0;
+        seenAmpersand = (flags & 1 << 7) != 0;
+        seenMarkup = (flags & 1 << 8) != 0;
+        seenDocdecl = (flags & 1 << 9) != 0;
+        nextDocument = (flags & 1 << 10) != 0;
+    }
+
+    /**
+     * Mark the current event, so that the parser can be rewound to it with {@link #reset()}.
+     * The input from the current event on is kept in the buffer until the mark is
+     * cleared, so the events after the mark are parsed again from the buffer after a reset.
+     * A new mark replaces the previous one.
+     */
+    public void mark()
     {
-        next();
-        if(eventType == TEXT && isWhitespace()) {  // skip whitespace
-            next();
-        }
-        if (eventType != START_TAG && eventType != END_TAG) {
-            throw new XmlPullParserException("expected START_TAG or END_TAG not "
-                                                 +TYPES[ getEventType() ], this, null);
-        }
-        return eventType;
+        if(markSnapshot == null) markSnapshot = new Snapshot();
+        markSnapshot.save(1);
+        marked = true;
+        updateMarkPin();
     }
 
-    public int next()
+    /**
+     * Rewind the parser to the event of the last mark. The mark stays valid, so the
+     * parser can be rewound repeatedly.
+     *
+     * @throws IllegalStateException if no mark is set
+     */
+    public void reset()
+    {
+        if(!marked) throw new IllegalStateException("no mark set");
+        markSnapshot.restore();
+    }
+
+    /**
+     * Clear the mark and release the input kept for it.
+     */
+    public void clearMark()
+    {
+        marked = false;
+        updateMarkPin();
+    }
+
+    /**
+     * Look at the type of the next event without consuming it.
+     * The event is parsed as by next() and the parser is rewound to the current event afterwards.
+     *
+     * @return the type of the next event or {@link #EVENT_INCOMPLETE} in push mode
+     */
+    public int peekNextEventType()
         throws XmlPullParserException, IOException
     {
-        tokenize = false;
-        return nextImpl();
+        if(eventType == END_DOCUMENT && !multiDocument) return END_DOCUMENT;
+        peek();
+        return peekedEventType;
     }
 
-    public int nextToken()
+    /**
+     * Look at the name of the next event without consuming it.
+     *
+     * @return the name if the next event is START_TAG or END_TAG, otherwise null
+     * @see #peekNextEventType()
+     */
+    public String peekName()
         throws XmlPullParserException, IOException
     {
-        tokenize = true;
-        return nextImpl();
+        if(eventType == END_DOCUMENT && !multiDocument) return null;
+        peek();
+        return peekedName;
+    }
+
+    private void peek()
+        throws XmlPullParserException, IOException
+    {
+        if(peekSnapshot == null) peekSnapshot = new Snapshot();
+        // the next event can overwrite only the current element if it has been closed already
+        peekSnapshot.save(pastEndTag ? depth : depth + 1);
+        peeking = true;
+        updateMarkPin();
+        try {
+            peekedEventType = next();
+            peekedName = peekedEventType == START_TAG || peekedEventType == END_TAG ? getName() : null;
+        } finally {
+            peekSnapshot.restore();
+            peeking = false;
+            updateMarkPin();
+        }
+    }
+
+    private void updateMarkPin() {
+        bufMarked = marked ? markSnapshot.pin : -1;
+        if(peeking && (bufMarked < 0 || peekSnapshot.pin < bufMarked)) bufMarked = peekSnapshot.pin;
+    }
+
+    /**
+     * State of the parser at an event to rewind to. Only the element levels and namespaces
+     * that can be overwritten by the following events are saved.
+     */
+    private final class Snapshot {
+        private long pin;
+        private long pos;
+        private long posStart;
+        private long posEnd;
+        private int lineNumber;
+        private int columnNumber;
+        private int eventType;
+        private int flags;
+        private long documentStart;
+        private String xmlDeclVersion;
+        private Boolean xmlDeclStandalone;
+        private String xmlDeclContent;
+        private String text;
+        private String entityRefName;
+        private boolean usePC;
+        private boolean whitespaceContent;
+        private char[] pc = NO_CHARS;
+        private int pcLength;
+
+        private int depth;
+        private int fromLevel;
+        private String[] elName;
+        private int[] elNameSlot;
+        private String[] elPrefix;
+        private String[] elUri;
+        private int[] elRawNameHash;
+        private int[] elRawNameEnd;
+        private int[] elRawNameLine;
+        private int[] elNamespaceCount;
+
+        private int namespaceStart;
+        private int namespaceEnd;
+        private String[] namespacePrefix;
+        private int[] namespacePrefixHash;
+        private String[] namespaceUri;
+
+        private int attributeCount;
+        private String[] attributeName;
+        private int[] attributeNameSlot;
+        private String[] attributePrefix;
+        private String[] attributeUri;
+        private String[] attributeValue;
+
+        void save(int fromLevel) {
+            final MXParser p = MXParser.this;
+            pos = p.pos + bufAbsoluteStart;
+            posStart = p.posStart + bufAbsoluteStart;
+            posEnd = p.posEnd + bufAbsoluteStart;
+            pin = Math.min(pos, Math.min(posStart, posEnd));
+            lineNumber = p.lineNumber;
+            columnNumber = p.columnNumber;
+            eventType = p.eventType;
+            flags = getStateFlags();
+            documentStart = p.documentStart;
+            xmlDeclVersion = p.xmlDeclVersion;
+            xmlDeclStandalone = p.xmlDeclStandalone;
+            xmlDeclContent = p.xmlDeclContent;
+            text = p.text;
+            entityRefName = p.entityRefName;
+            if(segmentCount > 0) joinSegments();
+            usePC = p.usePC;
+            whitespaceContent = p.whitespaceContent;
+            pcLength = usePC ? p.pcEnd - p.pcStart : 0;
+            if(pcLength > pc.length) pc = new char[pcLength];
+            if(usePC) System.arraycopy(p.pc, p.pcStart, pc, 0, pcLength);
+
+            depth = p.depth;
+            this.fromLevel = fromLevel;
+            final int levels = Math.max(0, depth - fromLevel + 1);
+            if(elName == null || elName.length < levels + 1) {
+                final int size = levels + 8;
+                elName = new String[size];
+                elNameSlot = new int[size];
+                elPrefix = new String[size];
+                elUri = new String[size];
+                elRawNameHash = new int[size];
+                elRawNameEnd = new int[size];
+                elRawNameLine = new int[size];
+                elNamespaceCount = new int[size];
+            }
+            for(int i = 0; i < levels; i++) {
+                final int level = fromLevel + i;
+                elName[i] = p.elName[ level ];
+                elNameSlot[i] = p.elNameSlot[ level ];
+                elPrefix[i] = p.elPrefix[ level ];
+                elUri[i] = p.elUri[ level ];
+                elRawNameHash[i] = p.elRawNameHash[ level ];
+                elRawNameEnd[i] = p.elRawNameEnd[ level ];
+                elRawNameLine[i] = p.elRawNameLine[ level ];
+                elNamespaceCount[i] = p.elNamespaceCount[ level ];
+            }
+
+            namespaceStart = p.elNamespaceCount != null ? p.elNamespaceCount[ fromLevel - 1 ] : 0;
+            namespaceEnd = p.namespaceEnd;
+            final int namespaces = namespaceEnd - namespaceStart;
+            if(namespacePrefix == null || namespacePrefix.length < namespaces) {
+                final int size = namespaces + 8;
+                namespacePrefix = new String[size];
+                namespacePrefixHash = new int[size];
+                namespaceUri = new String[size];
+            }
+            if(namespaces > 0) {
+                System.arraycopy(p.namespacePrefix, namespaceStart, namespacePrefix, 0, namespaces);
+                if(!allStringsInterned) {
+                    System.arraycopy(p.namespacePrefixHash, namespaceStart, namespacePrefixHash, 0, namespaces);
+                }
+                System.arraycopy(p.namespaceUri, namespaceStart, namespaceUri, 0, namespaces);
+            }
+
+            attributeCount = p.eventType == START_TAG ? p.attributeCount : 0;
+            if(attributeName == null || attributeName.length < attributeCount) {
+                final int size = attributeCount + 8;
+                attributeName = new String[size];
+                attributeNameSlot = new int[size];
+                attributePrefix = new String[size];
+                attributeUri = new String[size];
+                attributeValue = new String[size];
+            }
+            if(attributeCount > 0) {
+                System.arraycopy(p.attributeName, 0, attributeName, 0, attributeCount);
+                System.arraycopy(p.attributeNameSlot, 0, attributeNameSlot, 0, attributeCount);
+                System.arraycopy(p.attributePrefix, 0, attributePrefix, 0, attributeCount);
+                System.arraycopy(p.attributeUri, 0, attributeUri, 0, attributeCount);
+                System.arraycopy(p.attributeValue, 0, attributeValue, 0, attributeCount);
+            }
+        }
+
+        void restore() {
+            final MXParser p = MXParser.this;
+            p.pos = (int)(pos - bufAbsoluteStart);
+            p.posStart = (int)(posStart - bufAbsoluteStart);
+            p.posEnd = (int)(posEnd - bufAbsoluteStart);
+            bufStart = (int)(pin - bufAbsoluteStart);
+            p.lineNumber = lineNumber;
+            p.columnNumber = columnNumber;
+            p.eventType = eventType;
+            setStateFlags(flags);
+            p.documentStart = documentStart;
+            p.xmlDeclVersion = xmlDeclVersion;
+            p.xmlDeclStandalone = xmlDeclStandalone;
+            p.xmlDeclContent = xmlDeclContent;
+            p.text = text;
+            p.entityRefName = entityRefName;
+            p.usePC = usePC;
+            segmentCount = segmentCharsEnd = 0;
+            p.whitespaceContent = whitespaceContent;
+            p.pcStart = p.pcEnd = 0;
+            if(pcLength >= p.pc.length) ensurePC(pcLength);
+            System.arraycopy(pc, 0, p.pc, 0, pcLength);
+            p.pcEnd = pcLength;
+            incomplete = false;
+            bufPinned = -1;
+
+            p.depth = depth;
+            for(int i = 0; i <= depth - fromLevel; i++) {
+                final int level = fromLevel + i;
+                p.elName[ level ] = elName[i];
+                p.elNameSlot[ level ] = elNameSlot[i];
+                p.elPrefix[ level ] = elPrefix[i];
+                p.elUri[ level ] = elUri[i];
+                p.elRawNameHash[ level ] = elRawNameHash[i];
+                p.elRawNameEnd[ level ] = elRawNameEnd[i];
+                p.elRawNameLine[ level ] = elRawNameLine[i];
+                p.elNamespaceCount[ level ] = elNamespaceCount[i];
+            }
+
+            final int namespaces = namespaceEnd - namespaceStart;
+            if(namespaces > 0) {
+                System.arraycopy(namespacePrefix, 0, p.namespacePrefix, namespaceStart, namespaces);
+                if(!allStringsInterned) {
+                    System.arraycopy(namespacePrefixHash, 0, p.namespacePrefixHash, namespaceStart, namespaces);
+                }
+                System.arraycopy(namespaceUri, 0, p.namespaceUri, namespaceStart, namespaces);
+            }
+            p.namespaceEnd = namespaceEnd;
+
+            p.attributeCount = attributeCount;
+            if(attributeCount > 0) {
+                System.arraycopy(attributeName, 0, p.attributeName, 0, attributeCount);
+                System.arraycopy(attributeNameSlot, 0, p.attributeNameSlot, 0, attributeCount);
+                System.arraycopy(attributePrefix, 0, p.attributePrefix, 0, attributeCount);
+                System.arraycopy(attributeUri, 0, p.attributeUri, 0, attributeCount);
+                System.arraycopy(attributeValue, 0, p.attributeValue, 0, attributeCount);
+            }
+        }
     }
 
 
@@ -1118,7 +2307,20 @@ public class MXParser
         text = null;
         pcEnd = pcStart = 0;
         usePC = false;
+        segmentCount = segmentCharsEnd = 0;
         bufStart = posEnd;
+        if(nextDocument) {
+            // start next document in the stream, positioned on its first markup
+            nextDocument = false;
+            seenRoot = false;
+            seenDocdecl = false;
+            xmlDeclVersion = null;
+            xmlDeclStandalone = null;
+            xmlDeclContent = null;
+            documentStart = pos + bufAbsoluteStart;
+            bufStart = posStart = posEnd = pos;
+            return eventType = START_DOCUMENT;
+        }
         if(pastEndTag) {
             pastEndTag = false;
             --depth;
@@ -1155,13 +2357,11 @@ public class MXParser
                 ch = more();
             }
             posStart = pos - 1; // VERY IMPORTANT: this is correct start of event!!!
+            whitespaceContent = true;
 
             // when true there is some potential event TEXT to return - keep gathering
             boolean hadCharData = false;
 
-            // when true TEXT data is not continual (like <![CDATA[text]]>) and requires PC merging
-            boolean needsMerging = false;
-
             MAIN_LOOP:
             while(true) {
                 // work on MARKUP
@@ -1175,7 +2375,7 @@ public class MXParser
                     }
                     ch = more();
                     if(ch == '/') {
-                        if(!tokenize && hadCharData) {
+                        if(!tokenize && hadCharData && !skipText) {
                             seenEndTag = true;
                             //posEnd = pos - 2;
                             return eventType = TEXT;
@@ -1187,67 +2387,31 @@ public class MXParser
                             // note: if(tokenize == false) posStart/End is NOT changed!!!!
                             parseComment();
                             if(tokenize) return eventType = COMMENT;
-                            if( !usePC && hadCharData ) {
-                                needsMerging = true;
-                            } else {
-                                posStart = pos;  //completely ignore comment
+                            if( !hadCharData || skipText ) {
+                                posStart = posEnd = pos;  //completely ignore comment
+                                bufStart = pos;  // and release it from buffer, nothing before may be kept by posEnd
                             }
                         } else if(ch == '[') {
                             //posEnd = pos - 3;
                             // must remember previous posStart/End as it merges with content of CDATA
                             //int oldStart = posStart + bufAbsoluteStart;
                             //int oldEnd = posEnd + bufAbsoluteStart;
-                            parseCDSect(hadCharData);
-                            if(tokenize) return eventType = CDSECT;
+                            // must remember previous posStart/End as it merges with content of CDATA
+                            final long oldStart = posStart + bufAbsoluteStart;
+                            final long oldEnd = posEnd + bufAbsoluteStart;
+                            final boolean normalize = parseCDSect();
+                            if(tokenize) {
+                                if(normalize) addText(false, posStart, posEnd, true);
+                                return eventType = CDSECT;
+                            }
                             final int cdStart = posStart;
                             final int cdEnd = posEnd;
-                            final int cdLen = cdEnd - cdStart;
-
-
-                            if(cdLen > 0) { // was there anything inside CDATA section?
+                            posStart = (int)(oldStart - bufAbsoluteStart);
+                            posEnd = (int)(oldEnd - bufAbsoluteStart);
+                            if(cdEnd > cdStart) { // was there anything inside CDATA section?
+                                if(!skipText) addText(hadCharData, cdStart, cdEnd, normalize);
                                 hadCharData = true;
-                                if(!usePC) {
-                                    needsMerging = true;
-                                }
                             }
-
-                            //                          posStart = oldStart;
-                            //                          posEnd = oldEnd;
-                            //                          if(cdLen > 0) { // was there anything inside CDATA section?
-                            //                              if(hadCharData) {
-                            //                                  // do merging if there was anything in CDSect!!!!
-                            //                                  //                                    if(!usePC) {
-                            //                                  //                                        // posEnd is correct already!!!
-                            //                                  //                                        if(posEnd > posStart) {
-                            //                                  //                                            joinPC();
-                            //                                  //                                        } else {
-                            //                                  //                                            usePC = true;
-                            //                                  //                                            pcStart = pcEnd = 0;
-                            //                                  //                                        }
-                            //                                  //                                    }
-                            //                                  //                                    if(pcEnd + cdLen >= pc.length) ensurePC(pcEnd + cdLen);
-                            //                                  //                                    // copy [cdStart..cdEnd) into PC
-                            //                                  //                                    System.arraycopy(buf, cdStart, pc, pcEnd, cdLen);
-                            //                                  //                                    pcEnd += cdLen;
-                            //                                  if(!usePC) {
-                            //                                      needsMerging = true;
-                            //                                      posStart = cdStart;
-                            //                                      posEnd = cdEnd;
-                            //                                  }
-                            //                              } else {
-                            //                                  if(!usePC) {
-                            //                                      needsMerging = true;
-                            //                                      posStart = cdStart;
-                            //                                      posEnd = cdEnd;
-                            //                                      hadCharData = true;
-                            //                                  }
-                            //                              }
-                            //                              //hadCharData = true;
-                            //                          } else {
-                            //                              if( !usePC && hadCharData ) {
-                            //                                  needsMerging = true;
-                            //                              }
-                            //                          }
                         } else {
                             throw new XmlPullParserException(
                                 "unexpected character in markup "+printable(ch), this, null);
@@ -1255,14 +2419,13 @@ public class MXParser
                     } else if(ch == '?') {
                         parsePI();
                         if(tokenize) return eventType = PROCESSING_INSTRUCTION;
-                        if( !usePC && hadCharData ) {
-                            needsMerging = true;
-                        } else {
-                            posStart = pos;  //completely ignore PI
+                        if( !hadCharData || skipText ) {
+                            posStart = posEnd = pos;  //completely ignore PI
+                            bufStart = pos;  // and release it from buffer, nothing before may be kept by posEnd
                         }
 
                     } else if( isNameStartChar(ch) ) {
-                        if(!tokenize && hadCharData) {
+                        if(!tokenize && hadCharData && !skipText) {
                             seenStartTag = true;
                             //posEnd = pos - 2;
                             return eventType = TEXT;
@@ -1281,8 +2444,8 @@ public class MXParser
                         seenAmpersand = true;
                         return eventType = TEXT;
                     }
-                    final int oldStart = posStart + bufAbsoluteStart;
-                    final int oldEnd = posEnd + bufAbsoluteStart;
+                    final long oldStart = posStart + bufAbsoluteStart;
+                    final long oldEnd = posEnd + bufAbsoluteStart;
                     final char[] resolvedEntity = parseEntityRef();
                     if(tokenize) return eventType = ENTITY_REF;
                     // check if replacement text can be resolved !!!
@@ -1296,37 +2459,18 @@ public class MXParser
                     }
                     //int entStart = posStart;
                     //int entEnd = posEnd;
-                    posStart = oldStart - bufAbsoluteStart;
-                    posEnd = oldEnd - bufAbsoluteStart;
-                    if(!usePC) {
-                        if(hadCharData) {
-                            joinPC(); // posEnd is already set correctly!!!
-                            needsMerging = false;
-                        } else {
-                            usePC = true;
-                            pcStart = pcEnd = 0;
+                    posStart = (int)(oldStart - bufAbsoluteStart);
+                    posEnd = (int)(oldEnd - bufAbsoluteStart);
+                    if(!skipText) {
+                        for (int i = 0; whitespaceContent && i < resolvedEntity.length; i++)
+                        {
+                            if(!isS(resolvedEntity[ i ])) whitespaceContent = false;
                         }
-                    }
-                    //assert usePC == true;
-                    // write into PC replacement text - do merge for replacement text!!!!
-                    for (int i = 0; i < resolvedEntity.length; i++)
-                    {
-                        if(pcEnd >= pc.length) ensurePC(pcEnd);
-                        pc[pcEnd++] = resolvedEntity[ i ];
-
+                        addReplacementText(hadCharData, resolvedEntity);
                     }
                     hadCharData = true;
-                    //assert needsMerging == false;
                 } else {
 
-                    if(needsMerging) {
-                        //assert usePC == false;
-                        joinPC();  // posEnd is already set correctly!!!
-                        //posStart = pos  -  1;
-                        needsMerging = false;
-                    }
-
-
                     //no MARKUP nor ENTITIES so work on character data ...
 
 
@@ -1334,15 +2478,17 @@ public class MXParser
                     // [14] CharData ::=   [^<&]* - ([^<&]* ']]>' [^<&]*)
 
 
+                    final boolean hadText = hadCharData;
                     hadCharData = true;
 
-                    boolean normalizedCR = false;
-                    final boolean normalizeInput = !tokenize || !roundtripSupported;
+                    final long absTextStart = pos - 1 + bufAbsoluteStart;
+                    boolean seenCR = false;
                     // use loop locality here!!!!
                     boolean seenBracket = false;
                     boolean seenBracketBracket = false;
                     do {
 
+                        if(whitespaceContent && !isS(ch)) whitespaceContent = false;
                         // check that ]]> does not show in
                         if(ch == ']') {
                             if(seenBracket) {
@@ -1358,43 +2504,18 @@ public class MXParser
                                 seenBracketBracket = seenBracket = false;
                             }
                             // assert seenTwoBrackets == seenBracket == false;
-                        }
-                        if(normalizeInput) {
-                            // deal with normalization issues ...
-                            if(ch == '\r') {
-                                normalizedCR = true;
-                                posEnd = pos -1;
-                                // posEnd is already set
-                                if(!usePC) {
-                                    if(posEnd > posStart) {
-                                        joinPC();
-                                    } else {
-                                        usePC = true;
-                                        pcStart = pcEnd = 0;
-                                    }
-                                }
-                                //assert usePC == true;
-                                if(pcEnd >= pc.length) ensurePC(pcEnd);
-                                pc[pcEnd++] = '\n';
-                            } else if(ch == '\n') {
-                                //   if(!usePC) {  joinPC(); } else { if(pcEnd >= pc.length) ensurePC(); }
-                                if(!normalizedCR && usePC) {
-                                    if(pcEnd >= pc.length) ensurePC(pcEnd);
-                                    pc[pcEnd++] = '\n';
-                                }
-                                normalizedCR = false;
-                            } else {
-                                if(usePC) {
-                                    if(pcEnd >= pc.length) ensurePC(pcEnd);
-                                    pc[pcEnd++] = ch;
-                                }
-                                normalizedCR = false;
-                            }
+                            if(ch == '\r') seenCR = true;
                         }
 
                         ch = more();
                     } while(ch != '<' && ch != '&');
-                    posEnd = pos - 1;
+                    if(skipText) {
+                        posEnd = pos - 1;
+                    } else {
+                        // line breaks are normalized when the text is requested
+                        addText(hadText, (int)(absTextStart - bufAbsoluteStart), pos - 1,
+                            seenCR && (!tokenize || !roundtripSupported));
+                    }
                     continue MAIN_LOOP;  // skip ch = more() from below - we are already ahead ...
                 }
                 ch = more();
@@ -1439,7 +2560,7 @@ public class MXParser
         boolean gotS = false;
         posStart = pos - 1;
         final boolean normalizeIgnorableWS = tokenize && !roundtripSupported;
-        boolean normalizedCR = false;
+        boolean seenCR = false;
         while(true) {
             // deal with Misc
             // [27] Misc ::= Comment | PI | S
@@ -1448,9 +2569,11 @@ public class MXParser
             if(ch == '<') {
                 if(gotS && tokenize) {
                     posEnd = pos - 1;
+                    if(normalizeIgnorableWS && seenCR) addText(false, posStart, posEnd, true); // normalized when requested
                     seenMarkup = true;
                     return eventType = IGNORABLE_WHITESPACE;
                 }
+                if(!tokenize) bufStart = posStart = posEnd = pos - 1; // skipped Misc is no longer required
                 ch = more();
                 if(ch == '?') {
                     // check if it is 'xml'
@@ -1491,38 +2614,7 @@ public class MXParser
                 }
             } else if(isS(ch)) {
                 gotS = true;
-                if(normalizeIgnorableWS) {
-                    if(ch == '\r') {
-                        normalizedCR = true;
-                        //posEnd = pos -1;
-                        //joinPC();
-                        // posEnd is already set
-                        if(!usePC) {
-                            posEnd = pos -1;
-                            if(posEnd > posStart) {
-                                joinPC();
-                            } else {
-                                usePC = true;
-                                pcStart = pcEnd = 0;
-                            }
-                        }
-                        //assert usePC == true;
-                        if(pcEnd >= pc.length) ensurePC(pcEnd);
-                        pc[pcEnd++] = '\n';
-                    } else if(ch == '\n') {
-                        if(!normalizedCR && usePC) {
-                            if(pcEnd >= pc.length) ensurePC(pcEnd);
-                            pc[pcEnd++] = '\n';
-                        }
-                        normalizedCR = false;
-                    } else {
-                        if(usePC) {
-                            if(pcEnd >= pc.length) ensurePC(pcEnd);
-                            pc[pcEnd++] = ch;
-                        }
-                        normalizedCR = false;
-                    }
-                }
+                if(ch == '\r') seenCR = true;
             } else {
                 throw new XmlPullParserException(
                     "only whitespace content allowed before start tag and not "+printable(ch),
@@ -1536,6 +2628,7 @@ public class MXParser
         throws XmlPullParserException, IOException
     {
         if(eventType == END_DOCUMENT) {
+            if(multiDocument) return eventType; // no further document
             throw new XmlPullParserException("already reached end of XML input", this, null);
         }
         if(reachedEnd) {
@@ -1543,7 +2636,7 @@ public class MXParser
         }
         boolean gotS = false;
         final boolean normalizeIgnorableWS = tokenize && !roundtripSupported;
-        boolean normalizedCR = false;
+        boolean seenCR = false;
         try {
             // epilog: Misc*
             char ch;
@@ -1561,14 +2654,19 @@ public class MXParser
                     if(ch == '<') {
                         if(gotS && tokenize) {
                             posEnd = pos - 1;
+                            if(normalizeIgnorableWS && seenCR) addText(false, posStart, posEnd, true); // normalized when requested
                             seenMarkup = true;
                             return eventType = IGNORABLE_WHITESPACE;
                         }
+                        if(!tokenize) bufStart = posStart = posEnd = pos - 1; // skipped Misc is no longer required
                         ch = more();
                         if(reachedEnd) {
                             break;
                         }
                         if(ch == '?') {
+                            if(multiDocument && isXmlDeclAhead()) {
+                                return endDocumentBeforeNext();
+                            }
                             // check if it is 'xml'
                             // deal with XMLDecl
                             parsePI();
@@ -1593,6 +2691,9 @@ public class MXParser
                             throw new XmlPullParserException(
                                 "end tag not allowed in epilog but got "+printable(ch), this, null);
                         } else if(isNameStartChar(ch)) {
+                            if(multiDocument) {
+                                return endDocumentBeforeNext();
+                            }
                             throw new XmlPullParserException(
                                 "start tag not allowed in epilog but got "+printable(ch), this, null);
                         } else {
@@ -1602,38 +2703,7 @@ public class MXParser
                         }
                     } else if(isS(ch)) {
                         gotS = true;
-                        if(normalizeIgnorableWS) {
-                            if(ch == '\r') {
-                                normalizedCR = true;
-                                //posEnd = pos -1;
-                                //joinPC();
-                                // posEnd is already set
-                                if(!usePC) {
-                                    posEnd = pos -1;
-                                    if(posEnd > posStart) {
-                                        joinPC();
-                                    } else {
-                                        usePC = true;
-                                        pcStart = pcEnd = 0;
-                                    }
-                                }
-                                //assert usePC == true;
-                                if(pcEnd >= pc.length) ensurePC(pcEnd);
-                                pc[pcEnd++] = '\n';
-                            } else if(ch == '\n') {
-                                if(!normalizedCR && usePC) {
-                                    if(pcEnd >= pc.length) ensurePC(pcEnd);
-                                    pc[pcEnd++] = '\n';
-                                }
-                                normalizedCR = false;
-                            } else {
-                                if(usePC) {
-                                    if(pcEnd >= pc.length) ensurePC(pcEnd);
-                                    pc[pcEnd++] = ch;
-                                }
-                                normalizedCR = false;
-                            }
-                        }
+                        if(ch == '\r') seenCR = true;
                     } else {
                         throw new XmlPullParserException(
                             "in epilog non whitespace content is not allowed but got "+printable(ch),
@@ -1655,11 +2725,31 @@ public class MXParser
         }
         if(tokenize && gotS) {
             posEnd = pos; // well - this is LAST available character pos
+            if(normalizeIgnorableWS && seenCR) addText(false, posStart, posEnd, true); // normalized when requested
             return eventType = IGNORABLE_WHITESPACE;
         }
         return eventType = END_DOCUMENT;
     }
 
+    /** Check for XML declaration of next document after &lt;? in epilog without consuming input */
+    private boolean isXmlDeclAhead()
+        throws XmlPullParserException, IOException
+    {
+        while(bufEnd - pos < 4) {
+            fillBuf();
+            if(reachedEnd) return false;
+        }
+        return buf[pos] == 'x' && buf[pos + 1] == 'm' && buf[pos + 2] == 'l' && isS(buf[pos + 3]);
+    }
+
+    /** Finish current document, input is positioned after the first two characters of the next one */
+    private int endDocumentBeforeNext() {
+        pos -= 2;
+        columnNumber -= 2;
+        nextDocument = true;
+        return eventType = END_DOCUMENT;
+    }
+
 
     public int parseEndTag() throws XmlPullParserException, IOException {
         //ASSUMPTION ch is past "</"
@@ -1670,7 +2760,7 @@ public class MXParser
                 "expected name start and not "+printable(ch), this, null);
         }
         posStart = pos - 3;
-        final int nameStart = pos - 1 + bufAbsoluteStart;
+        final long nameStart = pos - 1 + bufAbsoluteStart;
         do {
             ch = more();
         } while(isNameChar(ch));
@@ -1682,28 +2772,24 @@ public class MXParser
         //String name = new String(buf, nameStart - bufAbsoluteStart,
         //                           (pos - 1) - (nameStart - bufAbsoluteStart));
         //int last = pos - 1;
-        int off = nameStart - bufAbsoluteStart;
+        int off = (int)(nameStart - bufAbsoluteStart);
         //final int len = last - off;
         final int len = (pos - 1) - off;
-        final char[] cbuf = elRawName[depth];
         if(elRawNameEnd[depth] != len) {
             // construct strings for exception
-            final String startname = new String(cbuf, 0, elRawNameEnd[depth]);
+            final String startname = getRawName(depth);
             final String endname = new String(buf, off, len);
             throw new XmlPullParserException(
                 "end tag name </"+endname+"> must match start tag name <"+startname+">"
                     +" from line "+elRawNameLine[depth], this, null);
         }
-        for (int i = 0; i < len; i++)
-        {
-            if(buf[off++] != cbuf[i]) {
-                // construct strings for exception
-                final String startname = new String(cbuf, 0, len);
-                final String endname = new String(buf, off - i - 1, len);
-                throw new XmlPullParserException(
-                    "end tag name </"+endname+"> must be the same as start tag <"+startname+">"
-                        +" from line "+elRawNameLine[depth], this, null);
-            }
+        if(elRawNameHash[depth] != rawNameHash(buf, off, len) || !matchesRawName(depth, buf, off)) {
+            // construct strings for exception
+            final String startname = getRawName(depth);
+            final String endname = new String(buf, off, len);
+            throw new XmlPullParserException(
+                "end tag name </"+endname+"> must be the same as start tag <"+startname+">"
+                    +" from line "+elRawNameLine[depth], this, null);
         }
 
         while(isS(ch)) { ch = more(); } // skip additional white spaces
@@ -1721,6 +2807,38 @@ public class MXParser
         return eventType = END_TAG;
     }
 
+    private static int rawNameHash(char[] cbuf, int off, int len) {
+        int hash = 0;
+        for (int i = off; i < off + len; i++) {
+            hash = 31 * hash + cbuf[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Compare the raw name of the element at the given level with the characters in cbuf, the length must match.
+     */
+    private boolean matchesRawName(int level, char[] cbuf, int off) {
+        final String prefix = elPrefix[ level ];
+        if(prefix != null) {
+            final int prefixLen = prefix.length();
+            for (int i = 0; i < prefixLen; i++) {
+                if(cbuf[off++] != prefix.charAt(i)) return false;
+            }
+            if(cbuf[off++] != ':') return false;
+        }
+        final String name = elName[ level ];
+        final int nameLen = name.length();
+        for (int i = 0; i < nameLen; i++) {
+            if(cbuf[off++] != name.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private String getRawName(int level) {
+        return elPrefix[ level ] != null ? elPrefix[ level ] + ':' + elName[ level ] : elName[ level ];
+    }
+
     public int parseStartTag() throws XmlPullParserException, IOException {
         //ASSUMPTION ch is past <T
         // [40] STag ::=  '<' Name (S Attribute)* S? '>'
@@ -1732,8 +2850,8 @@ public class MXParser
         emptyElementTag = false;
         attributeCount = 0;
         // retrieve name
-        final int nameStart = pos - 1 + bufAbsoluteStart;
-        int colonPos = -1;
+        final long nameStart = pos - 1 + bufAbsoluteStart;
+        long colonPos = -1;
         char ch = buf[ pos - 1];
         if(ch == ':' && processNamespaces) throw new XmlPullParserException(
                 "when namespaces processing enabled colon can not be at element name start",
@@ -1753,13 +2871,9 @@ public class MXParser
         ensureElementsCapacity();
 
 
-        //TODO check for efficient interning and then use elRawNameInterned!!!!
-
-        int elLen = (pos - 1) - (nameStart - bufAbsoluteStart);
-        if(elRawName[ depth ] == null || elRawName[ depth ].length < elLen) {
-            elRawName[ depth ] = new char[ 2 * elLen ];
-        }
-        System.arraycopy(buf, nameStart - bufAbsoluteStart, elRawName[ depth ], 0, elLen);
+        // the raw name is not copied, the end tag is matched against its hash and the name strings
+        int elLen = (pos - 1) - ((int)(nameStart - bufAbsoluteStart));
+        elRawNameHash[ depth ] = rawNameHash(buf, (int)(nameStart - bufAbsoluteStart), elLen);
         elRawNameEnd[ depth ] = elLen;
         elRawNameLine[ depth ] = lineNumber;
 
@@ -1769,20 +2883,22 @@ public class MXParser
         String prefix = null;
         if(processNamespaces) {
             if(colonPos != -1) {
-                prefix = elPrefix[ depth ] = newString(buf, nameStart - bufAbsoluteStart,
-                                                       colonPos - nameStart);
-                name = elName[ depth ] = newString(buf, colonPos + 1 - bufAbsoluteStart,
-                                                   //(pos -1) - (colonPos + 1));
-                                                   pos - 2 - (colonPos - bufAbsoluteStart));
+                prefix = elPrefix[ depth ] = newString(buf, (int)(nameStart - bufAbsoluteStart),
+                                                       (int)(colonPos - nameStart));
+                name = elName[ depth ] = newName(buf, (int)(colonPos + 1 - bufAbsoluteStart),
+                                                 //(pos -1) - (colonPos + 1));
+                                                 pos - 2 - ((int)(colonPos - bufAbsoluteStart)));
             } else {
                 prefix = elPrefix[ depth ] = null;
-                name = elName[ depth ] = newString(buf, nameStart - bufAbsoluteStart, elLen);
+                name = elName[ depth ] = newName(buf, (int)(nameStart - bufAbsoluteStart), elLen);
             }
         } else {
 
-            name = elName[ depth ] = newString(buf, nameStart - bufAbsoluteStart, elLen);
+            elPrefix[ depth ] = null;
+            name = elName[ depth ] = newName(buf, (int)(nameStart - bufAbsoluteStart), elLen);
 
         }
+        elNameSlot[ depth ] = nameSlot;
 
 
         while(true) {
@@ -1909,9 +3025,9 @@ public class MXParser
         // [41] Attribute ::= Name Eq AttValue
         // [WFC: No External Entity References]
         // [WFC: No < in Attribute Values]
-        final int prevPosStart = posStart + bufAbsoluteStart;
-        final int nameStart = pos - 1 + bufAbsoluteStart;
-        int colonPos = -1;
+        final long prevPosStart = posStart + bufAbsoluteStart;
+        final long nameStart = pos - 1 + bufAbsoluteStart;
+        long colonPos = -1;
         char ch = buf[ pos - 1 ];
         if(ch == ':' && processNamespaces) throw new XmlPullParserException(
                 "when namespaces processing enabled colon can not be at attribute name start",
@@ -1958,34 +3074,35 @@ public class MXParser
             if(startsWithXmlns) {
                 if(colonPos != -1) {
                     //prefix = attributePrefix[ attributeCount ] = null;
-                    final int nameLen = pos - 2 - (colonPos - bufAbsoluteStart);
+                    final int nameLen = pos - 2 - ((int)(colonPos - bufAbsoluteStart));
                     if(nameLen == 0) {
                         throw new XmlPullParserException(
                             "namespace prefix is required after xmlns: "
                                 +" when namespaces are enabled", this, null);
                     }
                     name = //attributeName[ attributeCount ] =
-                        newString(buf, colonPos - bufAbsoluteStart + 1, nameLen);
+                        newString(buf, (int)(colonPos - bufAbsoluteStart) + 1, nameLen);
                     //pos - 1 - (colonPos + 1 - bufAbsoluteStart)
                 }
             } else {
                 if(colonPos != -1) {
-                    int prefixLen = colonPos - nameStart;
+                    final int prefixLen = (int)(colonPos - nameStart);
                     prefix = attributePrefix[ attributeCount ] =
-                        newString(buf, nameStart - bufAbsoluteStart,prefixLen);
+                        newString(buf, (int)(nameStart - bufAbsoluteStart),prefixLen);
                     //colonPos - (nameStart - bufAbsoluteStart));
-                    int nameLen = pos - 2 - (colonPos - bufAbsoluteStart);
+                    int nameLen = pos - 2 - ((int)(colonPos - bufAbsoluteStart));
                     name = attributeName[ attributeCount ] =
-                        newString(buf, colonPos - bufAbsoluteStart + 1, nameLen);
+                        newName(buf, (int)(colonPos - bufAbsoluteStart) + 1, nameLen);
                     //pos - 1 - (colonPos + 1 - bufAbsoluteStart));
 
                     //name.substring(0, colonPos-nameStart);
                 } else {
                     prefix = attributePrefix[ attributeCount ]  = null;
                     name = attributeName[ attributeCount ] =
-                        newString(buf, nameStart - bufAbsoluteStart,
-                                  pos - 1 - (nameStart - bufAbsoluteStart));
+                        newName(buf, (int)(nameStart - bufAbsoluteStart),
+                                pos - 1 - ((int)(nameStart - bufAbsoluteStart)));
                 }
+                attributeNameSlot[ attributeCount ] = nameSlot;
                 if(!allStringsInterned) {
                     attributeNameHash[ attributeCount ] = name.hashCode();
                 }
@@ -1994,8 +3111,9 @@ public class MXParser
         } else {
             // retrieve name
             name = attributeName[ attributeCount ] =
-                newString(buf, nameStart - bufAbsoluteStart,
-                          pos - 1 - (nameStart - bufAbsoluteStart));
+                newName(buf, (int)(nameStart - bufAbsoluteStart),
+                        pos - 1 - ((int)(nameStart - bufAbsoluteStart)));
+            attributeNameSlot[ attributeCount ] = nameSlot;
             ////assert name != null;
             if(!allStringsInterned) {
                 attributeNameHash[ attributeCount ] = name.hashCode();
@@ -2024,6 +3142,8 @@ public class MXParser
         usePC = false;
         pcStart = pcEnd;
         posStart = pos;
+        // once the value is merged into pc, the run of plain characters from here is copied in one block
+        long runStart = pos + bufAbsoluteStart;
 
         while(true) {
             ch = more();
@@ -2035,17 +3155,7 @@ public class MXParser
             } if(ch == '&') {
                 // extractEntityRef
                 posEnd = pos - 1;
-                if(!usePC) {
-                    final boolean hadCharData = posEnd > posStart;
-                    if(hadCharData) {
-                        // posEnd is already set correctly!!!
-                        joinPC();
-                    } else {
-                        usePC = true;
-                        pcStart = pcEnd = 0;
-                    }
-                }
-                //assert usePC == true;
+                appendPC((int)(runStart - bufAbsoluteStart), posEnd);
 
                 final char[] resolvedEntity = parseEntityRef();
                 // check if replacement text can be resolved !!!
@@ -2058,39 +3168,23 @@ public class MXParser
                         this, null);
                 }
                 // write into PC replacement text - do merge for replacement text!!!!
-                for (int i = 0; i < resolvedEntity.length; i++)
-                {
-                    if(pcEnd >= pc.length) ensurePC(pcEnd);
-                    pc[pcEnd++] = resolvedEntity[ i ];
-                }
+                appendPC(resolvedEntity, 0, resolvedEntity.length);
+                runStart = pos + bufAbsoluteStart;
             } else if(ch == '\t' || ch == '\n' || ch == '\r') {
                 // do attribute value normalization
                 // as described in http://www.w3.org/TR/REC-xml#AVNormalize
                 // TODO add test for it form spec ...
                 // handle EOL normalization ...
-                if(!usePC) {
-                    posEnd = pos - 1;
-                    if(posEnd > posStart) {
-                        joinPC();
-                    } else {
-                        usePC = true;
-                        pcEnd = pcStart = 0;
-                    }
-                }
-                //assert usePC == true;
-                if(pcEnd >= pc.length) ensurePC(pcEnd);
+                appendPC((int)(runStart - bufAbsoluteStart), pos - 1);
                 if(ch != '\n' || !normalizedCR) {
-                    pc[pcEnd++] = ' '; //'\n';
-                }
-
-            } else {
-                if(usePC) {
                     if(pcEnd >= pc.length) ensurePC(pcEnd);
-                    pc[pcEnd++] = ch;
+                    pc[pcEnd++] = ' '; //'\n';
                 }
+                runStart = pos + bufAbsoluteStart;
             }
             normalizedCR = ch == '\r';
         }
+        if(usePC) appendPC((int)(runStart - bufAbsoluteStart), pos - 1);
 
 
         if(processNamespaces && startsWithXmlns) {
@@ -2149,12 +3243,20 @@ public class MXParser
             }
             ++attributeCount;
         }
-        posStart = prevPosStart - bufAbsoluteStart;
+        posStart = (int)(prevPosStart - bufAbsoluteStart);
         return ch;
     }
 
     private char[] charRefOneCharBuf = new char[1];
 
+    private char[] predefinedEntity(char ch)
+    {
+        // a preceding supplementary character reference left a surrogate pair in the buffer
+        if(charRefOneCharBuf.length != 1) charRefOneCharBuf = new char[1];
+        charRefOneCharBuf[0] = ch;
+        return charRefOneCharBuf;
+    }
+
     private char[] parseEntityRef()
         throws XmlPullParserException, IOException
     {
@@ -2264,8 +3366,7 @@ public class MXParser
                 if(tokenize) {
                     text = "<";
                 }
-                charRefOneCharBuf[0] = '<';
-                return charRefOneCharBuf;
+                return predefinedEntity('<');
                 //if(paramPC || isParserTokenizing) {
                 //    if(pcEnd >= pc.length) ensurePC();
                 //   pc[pcEnd++] = '<';
@@ -2275,30 +3376,26 @@ public class MXParser
                 if(tokenize) {
                     text = "&";
                 }
-                charRefOneCharBuf[0] = '&';
-                return charRefOneCharBuf;
+                return predefinedEntity('&');
             } else if(len == 2 && buf[posStart] == 'g' && buf[posStart+1] == 't') {
                 if(tokenize) {
                     text = ">";
                 }
-                charRefOneCharBuf[0] = '>';
-                return charRefOneCharBuf;
+                return predefinedEntity('>');
             } else if(len == 4 && buf[posStart] == 'a' && buf[posStart+1] == 'p'
                           && buf[posStart+2] == 'o' && buf[posStart+3] == 's')
             {
                 if(tokenize) {
                     text = "'";
                 }
-                charRefOneCharBuf[0] = '\'';
-                return charRefOneCharBuf;
+                return predefinedEntity('\'');
             } else if(len == 4 && buf[posStart] == 'q' && buf[posStart+1] == 'u'
                           && buf[posStart+2] == 'o' && buf[posStart+3] == 't')
             {
                 if(tokenize) {
                     text = "\"";
                 }
-                charRefOneCharBuf[0] = '"';
-                return charRefOneCharBuf;
+                return predefinedEntity('"');
             } else {
                 final char[] result = lookupEntityReplacement(len);
                 if(result != null) {
@@ -2355,9 +3452,9 @@ public class MXParser
 
         final int curLine = lineNumber;
         final int curColumn = columnNumber - 4;
+        final boolean normalizeIgnorableWS = tokenize && !roundtripSupported;
+        boolean seenCR = false;
         try {
-            final boolean normalizeIgnorableWS = tokenize && !roundtripSupported;
-            boolean normalizedCR = false;
 
             boolean seenDash = false;
             boolean seenDashDash = false;
@@ -2386,38 +3483,7 @@ public class MXParser
                 } else {
                     seenDash = false;
                 }
-                if(normalizeIgnorableWS) {
-                    if(ch == '\r') {
-                        normalizedCR = true;
-                        //posEnd = pos -1;
-                        //joinPC();
-                        // posEnd is already set
-                        if(!usePC) {
-                            posEnd = pos -1;
-                            if(posEnd > posStart) {
-                                joinPC();
-                            } else {
-                                usePC = true;
-                                pcStart = pcEnd = 0;
-                            }
-                        }
-                        //assert usePC == true;
-                        if(pcEnd >= pc.length) ensurePC(pcEnd);
-                        pc[pcEnd++] = '\n';
-                    } else if(ch == '\n') {
-                        if(!normalizedCR && usePC) {
-                            if(pcEnd >= pc.length) ensurePC(pcEnd);
-                            pc[pcEnd++] = '\n';
-                        }
-                        normalizedCR = false;
-                    } else {
-                        if(usePC) {
-                            if(pcEnd >= pc.length) ensurePC(pcEnd);
-                            pc[pcEnd++] = ch;
-                        }
-                        normalizedCR = false;
-                    }
-                }
+                if(ch == '\r') seenCR = true;
             }
 
         } catch(EOFException ex) {
@@ -2428,9 +3494,7 @@ public class MXParser
         }
         if(tokenize) {
             posEnd = pos - 3;
-            if(usePC) {
-                pcEnd -= 2;
-            }
+            if(normalizeIgnorableWS && seenCR) addText(false, posStart, posEnd, true); // normalized when requested
         }
     }
 
@@ -2445,10 +3509,10 @@ public class MXParser
         if(tokenize) posStart = pos;
         final int curLine = lineNumber;
         final int curColumn = columnNumber - 2;
-        int piTargetStart = pos;
+        final long piTargetAbsStart = pos + bufAbsoluteStart; // buffer may be compacted while scanning
         int piTargetEnd = -1;
         final boolean normalizeIgnorableWS = tokenize && !roundtripSupported;
-        boolean normalizedCR = false;
+        boolean seenCR = false;
 
         try {
             boolean seenPITarget = false;
@@ -2481,6 +3545,7 @@ public class MXParser
                 } else {
                     if(piTargetEnd == -1 && isS(ch)) {
                         piTargetEnd = pos - 1;
+                        final int piTargetStart = (int)(piTargetAbsStart - bufAbsoluteStart);
 
                         // [17] PITarget ::= Name - (('X' | 'x') ('M' | 'm') ('L' | 'l'))
                         if((piTargetEnd - piTargetStart) == 3) {
@@ -2489,7 +3554,7 @@ public class MXParser
                                    && (buf[piTargetStart+2] == 'l' || buf[piTargetStart+2] == 'L')
                               )
                             {
-                                if(piTargetStart > 3) {  //<?xml is allowed as first characters in input ...
+                                if(piTargetAbsStart - documentStart > 3) {  //<?xml is allowed as first characters in input ...
                                     throw new XmlPullParserException(
                                         "processing instruction can not have PITarget with reserved xml name",
                                         this, null);
@@ -2514,38 +3579,7 @@ public class MXParser
                     }
                     seenQ = false;
                 }
-                if(normalizeIgnorableWS) {
-                    if(ch == '\r') {
-                        normalizedCR = true;
-                        //posEnd = pos -1;
-                        //joinPC();
-                        // posEnd is already set
-                        if(!usePC) {
-                            posEnd = pos -1;
-                            if(posEnd > posStart) {
-                                joinPC();
-                            } else {
-                                usePC = true;
-                                pcStart = pcEnd = 0;
-                            }
-                        }
-                        //assert usePC == true;
-                        if(pcEnd >= pc.length) ensurePC(pcEnd);
-                        pc[pcEnd++] = '\n';
-                    } else if(ch == '\n') {
-                        if(!normalizedCR && usePC) {
-                            if(pcEnd >= pc.length) ensurePC(pcEnd);
-                            pc[pcEnd++] = '\n';
-                        }
-                        normalizedCR = false;
-                    } else {
-                        if(usePC) {
-                            if(pcEnd >= pc.length) ensurePC(pcEnd);
-                            pc[pcEnd++] = ch;
-                        }
-                        normalizedCR = false;
-                    }
-                }
+                if(ch == '\r') seenCR = true;
                 seenPITarget = true;
                 ch = more();
             }
@@ -2557,15 +3591,13 @@ public class MXParser
                 this, ex);
         }
         if(piTargetEnd == -1) {
-            piTargetEnd = pos - 2 + bufAbsoluteStart;
+            piTargetEnd = pos - 2;
             //throw new XmlPullParserException(
             //    "processing instruction must have PITarget name", this, null);
         }
         if(tokenize) {
             posEnd = pos - 2;
-            if(normalizeIgnorableWS) {
-                --pcEnd;
-            }
+            if(normalizeIgnorableWS && seenCR) addText(false, posStart, posEnd, true); // normalized when requested
         }
         return false;
     }
@@ -2801,50 +3833,20 @@ public class MXParser
         //                      (markupdecl | DeclSep)* ']' S?)? '>'
         int bracketLevel = 0;
         final boolean normalizeIgnorableWS = tokenize && !roundtripSupported;
-        boolean normalizedCR = false;
+        boolean seenCR = false;
         while(true) {
             ch = more();
             if(ch == '[') ++bracketLevel;
             if(ch == ']') --bracketLevel;
             if(ch == '>' && bracketLevel == 0) break;
-            if(normalizeIgnorableWS) {
-                if(ch == '\r') {
-                    normalizedCR = true;
-                    //posEnd = pos -1;
-                    //joinPC();
-                    // posEnd is already set
-                    if(!usePC) {
-                        posEnd = pos -1;
-                        if(posEnd > posStart) {
-                            joinPC();
-                        } else {
-                            usePC = true;
-                            pcStart = pcEnd = 0;
-                        }
-                    }
-                    //assert usePC == true;
-                    if(pcEnd >= pc.length) ensurePC(pcEnd);
-                    pc[pcEnd++] = '\n';
-                } else if(ch == '\n') {
-                    if(!normalizedCR && usePC) {
-                        if(pcEnd >= pc.length) ensurePC(pcEnd);
-                        pc[pcEnd++] = '\n';
-                    }
-                    normalizedCR = false;
-                } else {
-                    if(usePC) {
-                        if(pcEnd >= pc.length) ensurePC(pcEnd);
-                        pc[pcEnd++] = ch;
-                    }
-                    normalizedCR = false;
-                }
-            }
+            if(ch == '\r') seenCR = true;
 
         }
         posEnd = pos - 1;
+        if(normalizeIgnorableWS && seenCR) addText(false, posStart, posEnd, true); // normalized when requested
     }
 
-    private void parseCDSect(boolean hadCharData)
+    private boolean parseCDSect()
         throws XmlPullParserException, IOException
     {
         // implements XML 1.0 Section 2.7 CDATA Sections
@@ -2875,27 +3877,14 @@ public class MXParser
                 "expected <![CDATA[ for comment start", this, null);
 
         //if(tokenize) {
-        final int cdStart = pos + bufAbsoluteStart;
+        final long cdStart = pos + bufAbsoluteStart;
         final int curLine = lineNumber;
         final int curColumn = columnNumber;
-        final boolean normalizeInput = !tokenize || !roundtripSupported;
+        final boolean normalizeInput = (!tokenize || !roundtripSupported) && !skipText;
+        boolean seenCR = false;
         try {
-            if(normalizeInput) {
-                if(hadCharData) {
-                    if(!usePC) {
-                        // posEnd is correct already!!!
-                        if(posEnd > posStart) {
-                            joinPC();
-                        } else {
-                            usePC = true;
-                            pcStart = pcEnd = 0;
-                        }
-                    }
-                }
-            }
             boolean seenBracket = false;
             boolean seenBracketBracket = false;
-            boolean normalizedCR = false;
             while(true) {
                 // scan until it hits "]]>"
                 ch = more();
@@ -2917,37 +3906,7 @@ public class MXParser
                     if(seenBracket) {
                         seenBracketBracket = seenBracket = false;
                     }
-                }
-                if(normalizeInput) {
-                    // deal with normalization issues ...
-                    if(ch == '\r') {
-                        normalizedCR = true;
-                        posStart = cdStart - bufAbsoluteStart;
-                        posEnd = pos - 1; // posEnd is already set
-                        if(!usePC) {
-                            if(posEnd > posStart) {
-                                joinPC();
-                            } else {
-                                usePC = true;
-                                pcStart = pcEnd = 0;
-                            }
-                        }
-                        //assert usePC == true;
-                        if(pcEnd >= pc.length) ensurePC(pcEnd);
-                        pc[pcEnd++] = '\n';
-                    } else if(ch == '\n') {
-                        if(!normalizedCR && usePC) {
-                            if(pcEnd >= pc.length) ensurePC(pcEnd);
-                            pc[pcEnd++] = '\n';
-                        }
-                        normalizedCR = false;
-                    } else {
-                        if(usePC) {
-                            if(pcEnd >= pc.length) ensurePC(pcEnd);
-                            pc[pcEnd++] = ch;
-                        }
-                        normalizedCR = false;
-                    }
+                    if(ch == '\r') seenCR = true;
                 }
             }
         } catch(EOFException ex) {
@@ -2956,13 +3915,14 @@ public class MXParser
                 "CDATA section started on line "+curLine+" and column "+curColumn+" was not closed",
                 this, ex);
         }
-        if(normalizeInput) {
-            if(usePC) {
-                pcEnd = pcEnd - 2;
-            }
-        }
-        posStart = cdStart - bufAbsoluteStart;
+        posStart = (int)(cdStart - bufAbsoluteStart);
         posEnd = pos - 3;
+        for (int i = posStart; whitespaceContent && i < posEnd; i++)
+        {
+            if(!isS(buf[ i ])) whitespaceContent = false;
+        }
+        // line breaks are normalized when the text is requested
+        return normalizeInput && seenCR;
     }
 
     private void fillBuf() throws IOException, XmlPullParserException {
@@ -2974,46 +3934,74 @@ public class MXParser
 
             // expand buffer it makes sense!!!!
             // check if we need to compact or expand the buffer
-            boolean compact = !preventBufferCompaction && (bufStart > bufSoftLimit || bufStart >= buf.length / 2);
+            // only the range from bufStart is pinned by the current event and has to be retained;
+            // compaction is only done if it frees at least as much space as it has to copy, so the
+            // copying cost per read character does not depend on the length of the pinned event
+            // a small buffer is rather expanded to grow it up to the size of a read chunk
+            int keep = bufStart;
+            if(bufPinned >= 0 && bufPinned - bufAbsoluteStart < keep) keep = (int)(bufPinned - bufAbsoluteStart);
+            if(bufRetained >= 0 && bufRetained - bufAbsoluteStart < keep) keep = (int)(bufRetained - bufAbsoluteStart);
+            if(bufMarked >= 0 && bufMarked - bufAbsoluteStart < keep) keep = (int)(bufMarked - bufAbsoluteStart);
+            if(bytesPerChar == UTF8_BYTES && byteAnchor - bufAbsoluteStart < keep) {
+                // count bytes of characters that are dropped from the buffer
+                byteAnchorOffset += utf8Length((int)(byteAnchor - bufAbsoluteStart), keep);
+                byteAnchor = keep + bufAbsoluteStart;
+            }
+            final int retained = bufEnd - keep;
+            final int maxBufSize = config.getMaxBufferSize();
+            boolean compact = !preventBufferCompaction && keep > 0
+                && (buf.length >= readChunkSize && retained <= buf.length / 2
+                    || buf.length >= maxBufSize);
 
             // if buffer almost full then compact it
             if(compact) {
-                //TODO: look on trashing
-                // //assert bufStart > 0
-                System.arraycopy(buf, bufStart, buf, 0, bufEnd - bufStart);
+                if(retained > 0) System.arraycopy(buf, keep, buf, 0, retained);
                 if(TRACE_SIZING) System.out.println(
-                        "TRACE_SIZING fillBuf() compacting "+bufStart
+                        "TRACE_SIZING fillBuf() compacting "+keep
                             +" bufEnd="+bufEnd
                             +" pos="+pos+" posStart="+posStart+" posEnd="+posEnd
                             +" buf first 100 chars:"
                             + new String(buf, 0, Math.min(bufEnd, 100)));;
 
             } else {
-                final int newSize = 2 * buf.length;
+                // make sure the expanded buffer can be compacted afterwards
+                final int newSize = Math.min(
+                    config.grow(buf.length, retained > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : 2 * retained),
+                    maxBufSize);
+                if(newSize <= buf.length) throw new XmlPullParserException(
+                        "input buffer can not be expanded beyond maximum size of "+maxBufSize
+                            +" characters", this, null);
                 final char newBuf[] = new char[ newSize ];
                 if(TRACE_SIZING) System.out.println("TRACE_SIZING fillBuf() "+buf.length+" => "+newSize);
-                System.arraycopy(buf, bufStart, newBuf, 0, bufEnd - bufStart);
+                System.arraycopy(buf, keep, newBuf, 0, retained);
                 buf = newBuf;
-                if(bufLoadFactor > 0) {
-                    // Include a fix for
-                    // https://web.archive.org/web/20070831191548/http://www.extreme.indiana.edu/bugzilla/show_bug.cgi?id=228
-                    bufSoftLimit = (int)(bufferLoadFactor * buf.length);
-                }
+                updateBufSoftLimit();
             }
-            bufEnd -= bufStart;
-            pos -= bufStart;
-            posStart -= bufStart;
-            posEnd -= bufStart;
-            bufAbsoluteStart += bufStart;
-            bufStart = 0;
+            bufEnd -= keep;
+            pos -= keep;
+            posStart -= keep;
+            posEnd -= keep;
+            bufAbsoluteStart += keep;
+            bufStart -= keep;
             if(TRACE_SIZING) System.out.println(
                     "TRACE_SIZING fillBuf() after bufEnd="+bufEnd
                         +" pos="+pos+" posStart="+posStart+" posEnd="+posEnd
                         +" buf first 100 chars:"+new String(buf, 0, Math.min(bufEnd, 100)));
         }
         // at least one character must be read or error
-        final int len = Math.min(buf.length - bufEnd, READ_CHUNK_SIZE);
-        final int ret = reader.read(buf, bufEnd, len);
+        final int len = Math.min(buf.length - bufEnd, readChunkSize);
+        int ret;
+        while((ret = reader.read(buf, bufEnd, len)) == -1
+                  && follow && (multiDocument || !seenRoot || depth > 0)) {
+            // follow mode: wait for the input to grow
+            if(followPollInterval == 0) throw new InputStarvedException();
+            try {
+                Thread.sleep(followPollInterval);
+            } catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for more input");
+            }
+        }
         if(ret > 0) {
             bufEnd += ret;
             if(TRACE_SIZING) System.out.println(
@@ -3022,8 +4010,11 @@ public class MXParser
 
             return;
         }
+        if(ret == 0 && feedReader != null) {
+            throw new InputStarvedException();
+        }
         if(ret == -1) {
-            if(bufAbsoluteStart == 0 && pos == 0) {
+            if(bufAbsoluteStart == documentStart && pos == 0) {
                 throw new EOFException("input contained no data");
             } else {
                 if(seenRoot && depth == 0) { // inside parsing epilog!!!
@@ -3032,12 +4023,10 @@ public class MXParser
                 } else {
                     StringBuffer expectedTagStack = new StringBuffer();
                     if(depth > 0) {
-                        if (elRawName == null || elRawName[depth] == null) {
+                        if (elName == null || elName[depth] == null) {
                             String tagName = new String(buf, posStart + 1, pos - posStart - 1);
                             expectedTagStack.append(" - expected the opening tag <").append(tagName).append("...>");
                         } else {
-                            //final char[] cbuf = elRawName[depth];
-                            //final String startname = new String(cbuf, 0, elRawNameEnd[depth]);
                             expectedTagStack.append(" - expected end tag");
                             if(depth > 1) {
                                 expectedTagStack.append("s"); //more than one end tag
@@ -3045,14 +4034,14 @@ public class MXParser
                             expectedTagStack.append(" ");
                             for (int i = depth; i > 0; i--)
                             {
-                                if (elRawName == null || elRawName[i] == null) {
+                                if (elName[i] == null) {
                                     String tagName = new String(buf, posStart + 1, pos - posStart - 1);
                                     expectedTagStack
                                         .append(" - expected the opening tag <")
                                         .append(tagName)
                                         .append("...>");
                                 } else {
-                                    String tagName = new String(elRawName[i], 0, elRawNameEnd[i]);
+                                    String tagName = getRawName(i);
                                     expectedTagStack.append("</").append(tagName).append('>');
                                 }
                             }
@@ -3062,15 +4051,9 @@ public class MXParser
                                 if(i != depth) {
                                     expectedTagStack.append(" and"); //more than one end tag
                                 }
-                                if (elRawName == null || elRawName[i] == null) {
-                                    String tagName = new String(elRawName[i], 0, elRawNameEnd[i]);
-                                    expectedTagStack.append(" start tag <"+tagName+">");
-                                    expectedTagStack.append(" from line "+elRawNameLine[i]);
-                                } else {
-                                    String tagName = new String(elRawName[i], 0, elRawNameEnd[i]);
-                                    expectedTagStack.append(" start tag <").append(tagName).append(">");
-                                    expectedTagStack.append(" from line ").append(elRawNameLine[i]);
-                                }
+                                String tagName = getRawName(i);
+                                expectedTagStack.append(" start tag <").append(tagName).append(">");
+                                expectedTagStack.append(" from line ").append(elRawNameLine[i]);
                             }
                             expectedTagStack.append(", parser stopped on");
                         }
@@ -3110,7 +4093,7 @@ public class MXParser
 
     private void ensurePC(int end) {
         //assert end >= pc.length;
-        final int newSize = end > READ_CHUNK_SIZE ? 2 * end : 2 * READ_CHUNK_SIZE;
+        final int newSize = end >= INITIAL_PC_SIZE / 2 ? 2 * end : INITIAL_PC_SIZE;
         final char[] newPC = new char[ newSize ];
         if(TRACE_SIZING) System.out.println("TRACE_SIZING ensurePC() "+pc.length+" ==> "+newSize+" end="+end);
         System.arraycopy(pc, 0, newPC, 0, pcEnd);
@@ -3118,6 +4101,96 @@ public class MXParser
         //assert end < pc.length;
     }
 
+    /**
+     * Add a piece of text in buf to the current event.
+     *
+     * @param hadText true if the event has text already
+     * @param normalize true if the line breaks of the piece must be normalized
+     */
+    private void addText(boolean hadText, int start, int end, boolean normalize) {
+        if(hadText || normalize) {
+            if(hadText && segmentCount == 0) addSegment(posStart + bufAbsoluteStart, posEnd + bufAbsoluteStart);
+            addSegment(start + bufAbsoluteStart, end + bufAbsoluteStart);
+        }
+        if(!hadText) posStart = start;
+        posEnd = end;
+    }
+
+    private void addReplacementText(boolean hadText, char[] replacement) {
+        if(hadText && segmentCount == 0) addSegment(posStart + bufAbsoluteStart, posEnd + bufAbsoluteStart);
+        final int end = segmentCharsEnd + replacement.length;
+        if(end > segmentChars.length) {
+            final char[] newChars = new char[Math.max(INITIAL_PC_SIZE, 2 * end)];
+            System.arraycopy(segmentChars, 0, newChars, 0, segmentCharsEnd);
+            segmentChars = newChars;
+        }
+        System.arraycopy(replacement, 0, segmentChars, segmentCharsEnd, replacement.length);
+        addSegment(-1 - segmentCharsEnd, -1 - end);
+        segmentCharsEnd = end;
+    }
+
+    private void addSegment(long start, long end) {
+        if(segmentStart == null || segmentCount == segmentStart.length) {
+            final int newSize = segmentCount > 0 ? 2 * segmentCount : 8;
+            final long[] newStart = new long[newSize];
+            final long[] newEnd = new long[newSize];
+            if(segmentCount > 0) {
+                System.arraycopy(segmentStart, 0, newStart, 0, segmentCount);
+                System.arraycopy(segmentEnd, 0, newEnd, 0, segmentCount);
+            }
+            segmentStart = newStart;
+            segmentEnd = newEnd;
+        }
+        segmentStart[ segmentCount ] = start;
+        segmentEnd[ segmentCount ] = end;
+        ++segmentCount;
+    }
+
+    /**
+     * Normalize the recorded pieces of the current text into pc.
+     */
+    private void joinSegments() {
+        pcStart = pcEnd = 0;
+        for (int i = 0; i < segmentCount; i++) {
+            final long start = segmentStart[ i ];
+            if(start < 0) {
+                final int off = (int)(-1 - start);
+                appendPC(segmentChars, off, (int)(-1 - segmentEnd[ i ]) - off);
+                continue;
+            }
+            int from = (int)(start - bufAbsoluteStart);
+            final int to = (int)(segmentEnd[ i ] - bufAbsoluteStart);
+            // the normalized text is not longer than the input
+            if(pcEnd + to - from >= pc.length) ensurePC(pcEnd + to - from);
+            for (int j = from; j < to; j++) {
+                if(buf[ j ] == '\r') {
+                    // CR LF and single CR are normalized to LF
+                    appendPC(buf, from, j - from);
+                    pc[ pcEnd++ ] = '\n';
+                    if(j + 1 < to && buf[ j + 1 ] == '\n') ++j;
+                    from = j + 1;
+                }
+            }
+            appendPC(buf, from, to - from);
+        }
+        segmentCount = segmentCharsEnd = 0;
+        usePC = true;
+    }
+
+    /**
+     * Append a block of buf to pc and switch to pc.
+     */
+    private void appendPC(int start, int end) {
+        usePC = true;
+        appendPC(buf, start, end - start);
+    }
+
+    private void appendPC(char[] chars, int off, int len) {
+        if(pcEnd + len >= pc.length) ensurePC(pcEnd + len);
+        System.arraycopy(chars, off, pc, pcEnd, len);
+        pcEnd += len;
+    }
+
     private void joinPC() {
         //assert usePC == false;
         //assert posEnd > posStart;
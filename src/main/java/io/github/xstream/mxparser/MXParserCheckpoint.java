@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+
+/**
+ * Immutable state of a {@link MXParser} after an event.
+ * <p>
+ * A checkpoint is created with {@link MXParser#checkpoint()} and contains everything that is necessary to continue
+ * parsing after the event with another parser instance: the position in the input, the open elements, the namespace
+ * bindings in scope and the document state. Use {@link MXParser#resume(MXParserCheckpoint, java.io.InputStream)} with
+ * an input stream positioned at {@link #getByteOffset()} to continue. Defined entity replacement texts are not part of
+ * the checkpoint.
+ * </p>
+ */
+public final class MXParserCheckpoint {
+
+    private static final int MAGIC = 0x4D584350; // MXCP
+    private static final int VERSION = 1;
+
+    static final int SEEN_ROOT = 1;
+    static final int SEEN_DOCDECL = 1 << 1;
+    static final int PAST_END_TAG = 1 << 2;
+    static final int EMPTY_ELEMENT_TAG = 1 << 3;
+    static final int NEXT_DOCUMENT = 1 << 4;
+    static final int PROCESS_NAMESPACES = 1 << 5;
+
+    final long offset;
+    final long byteOffset;
+    final String encoding;
+    final long documentStart;
+    final int lineNumber;
+    final int columnNumber;
+    final int eventType;
+    final int flags;
+    final String xmlDeclVersion;
+    final Boolean xmlDeclStandalone;
+    final String xmlDeclContent;
+    // element stack from depth 1
+    final String[] elRawName;
+    final int[] elRawNameLine;
+    final String[] elName;
+    final String[] elPrefix;
+    final String[] elUri;
+    // namespace count from depth 0
+    final int[] elNamespaceCount;
+    final String[] namespacePrefix;
+    final String[] namespaceUri;
+
+    MXParserCheckpoint(
+            long offset, long byteOffset, String encoding, long documentStart, int lineNumber, int columnNumber,
+            int eventType, int flags, String xmlDeclVersion, Boolean xmlDeclStandalone, String xmlDeclContent,
+            String[] elRawName, int[] elRawNameLine, String[] elName, String[] elPrefix, String[] elUri,
+            int[] elNamespaceCount, String[] namespacePrefix, String[] namespaceUri) {
+        this.offset = offset;
+        this.byteOffset = byteOffset;
+        this.encoding = encoding;
+        this.documentStart = documentStart;
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+        this.eventType = eventType;
+        this.flags = flags;
+        this.xmlDeclVersion = xmlDeclVersion;
+        this.xmlDeclStandalone = xmlDeclStandalone;
+        this.xmlDeclContent = xmlDeclContent;
+        this.elRawName = elRawName;
+        this.elRawNameLine = elRawNameLine;
+        this.elName = elName;
+        this.elPrefix = elPrefix;
+        this.elUri = elUri;
+        this.elNamespaceCount = elNamespaceCount;
+        this.namespacePrefix = namespacePrefix;
+        this.namespaceUri = namespaceUri;
+    }
+
+    /**
+     * Position in characters where parsing continues.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Position in bytes where parsing continues or -1 if byte offsets are not available for the input.
+     */
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    /**
+     * Encoding of the input stream or null if the input was set as reader.
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Type of the event after which the checkpoint was created.
+     */
+    public int getEventType() {
+        return eventType;
+    }
+
+    /**
+     * Number of open elements.
+     */
+    public int getDepth() {
+        return elName.length;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
+    /**
+     * Write the checkpoint.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(offset);
+        out.writeLong(byteOffset);
+        writeString(out, encoding);
+        out.writeLong(documentStart);
+        out.writeInt(lineNumber);
+        out.writeInt(columnNumber);
+        out.writeInt(eventType);
+        out.writeInt(flags);
+        writeString(out, xmlDeclVersion);
+        out.writeByte(xmlDeclStandalone == null ? -1 : xmlDeclStandalone.booleanValue() ? 1 : 0);
+        writeString(out, xmlDeclContent);
+        out.writeInt(elName.length);
+        for (int i = 0; i < elName.length; i++) {
+            out.writeUTF(elRawName[i]);
+            out.writeInt(elRawNameLine[i]);
+            writeString(out, elName[i]);
+            writeString(out, elPrefix[i]);
+            writeString(out, elUri[i]);
+        }
+        for (int i = 0; i < elNamespaceCount.length; i++) {
+            out.writeInt(elNamespaceCount[i]);
+        }
+        out.writeInt(namespacePrefix.length);
+        for (int i = 0; i < namespacePrefix.length; i++) {
+            writeString(out, namespacePrefix[i]);
+            out.writeUTF(namespaceUri[i]);
+        }
+    }
+
+    /**
+     * Read a checkpoint written with {@link #writeTo(DataOutput)}.
+     */
+    public static MXParserCheckpoint readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a parser checkpoint");
+        }
+        final int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported parser checkpoint version " + version);
+        }
+        final long offset = in.readLong();
+        final long byteOffset = in.readLong();
+        final String encoding = readString(in);
+        final long documentStart = in.readLong();
+        final int lineNumber = in.readInt();
+        final int columnNumber = in.readInt();
+        final int eventType = in.readInt();
+        final int flags = in.readInt();
+        final String xmlDeclVersion = readString(in);
+        final byte standalone = in.readByte();
+        final Boolean xmlDeclStandalone = standalone < 0 ? null : standalone == 1 ? Boolean.TRUE : Boolean.FALSE;
+        final String xmlDeclContent = readString(in);
+        final int depth = in.readInt();
+        final String[] elRawName = new String[depth];
+        final int[] elRawNameLine = new int[depth];
+        final String[] elName = new String[depth];
+        final String[] elPrefix = new String[depth];
+        final String[] elUri = new String[depth];
+        for (int i = 0; i < depth; i++) {
+            elRawName[i] = in.readUTF();
+            elRawNameLine[i] = in.readInt();
+            elName[i] = readString(in);
+            elPrefix[i] = readString(in);
+            elUri[i] = readString(in);
+        }
+        final int[] elNamespaceCount = new int[depth + 1];
+        for (int i = 0; i <= depth; i++) {
+            elNamespaceCount[i] = in.readInt();
+        }
+        final int namespaceEnd = in.readInt();
+        final String[] namespacePrefix = new String[namespaceEnd];
+        final String[] namespaceUri = new String[namespaceEnd];
+        for (int i = 0; i < namespaceEnd; i++) {
+            namespacePrefix[i] = readString(in);
+            namespaceUri[i] = in.readUTF();
+        }
+        return new MXParserCheckpoint(offset, byteOffset, encoding, documentStart, lineNumber, columnNumber,
+            eventType, flags, xmlDeclVersion, xmlDeclStandalone, xmlDeclContent, elRawName, elRawNameLine, elName,
+            elPrefix, elUri, elNamespaceCount, namespacePrefix, namespaceUri);
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
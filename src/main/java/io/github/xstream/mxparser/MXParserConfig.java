@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+/**
+ * Immutable sizing configuration of a {@link MXParser}.
+ * <p>
+ * The configuration describes the expected shape of the parsed documents, so that a parser can allocate its internal
+ * buffers and stacks once instead of growing them incrementally. Since the instance is immutable, it can be shared by
+ * any number of (pooled) parsers. Use the <code>with</code> methods to derive a modified configuration from
+ * {@link #DEFAULT}.
+ * </p>
+ */
+public final class MXParserConfig {
+
+    /** The default configuration matching the sizing of the parser without configuration. */
+    public static final MXParserConfig DEFAULT = new MXParserConfig(8 * 1024, 1024, Integer.MAX_VALUE, 95, 0, 0, 0,
+        2.0f);
+
+    private final int readChunkSize;
+    private final int initialBufferSize;
+    private final int maxBufferSize;
+    private final int bufferLoadFactor;
+    private final int expectedDepth;
+    private final int expectedAttributes;
+    private final int expectedNamespaces;
+    private final float growthFactor;
+
+    private MXParserConfig(
+            int readChunkSize, int initialBufferSize, int maxBufferSize, int bufferLoadFactor, int expectedDepth,
+            int expectedAttributes, int expectedNamespaces, float growthFactor) {
+        if (readChunkSize < 1) {
+            throw new IllegalArgumentException("read chunk size must be positive and not " + readChunkSize);
+        }
+        if (initialBufferSize < 1) {
+            throw new IllegalArgumentException("initial buffer size must be positive and not " + initialBufferSize);
+        }
+        if (maxBufferSize < 1) {
+            throw new IllegalArgumentException("maximum buffer size must be positive and not " + maxBufferSize);
+        }
+        if (bufferLoadFactor < 1 || bufferLoadFactor > 100) {
+            throw new IllegalArgumentException("buffer load factor must be in 1..100 and not " + bufferLoadFactor);
+        }
+        if (expectedDepth < 0 || expectedAttributes < 0 || expectedNamespaces < 0) {
+            throw new IllegalArgumentException("expected depth, attributes and namespaces must not be negative");
+        }
+        if (!(growthFactor > 1.0f)) {
+            throw new IllegalArgumentException("growth factor must be greater than 1 and not " + growthFactor);
+        }
+        this.readChunkSize = readChunkSize;
+        this.initialBufferSize = initialBufferSize;
+        this.maxBufferSize = maxBufferSize;
+        this.bufferLoadFactor = bufferLoadFactor;
+        this.expectedDepth = expectedDepth;
+        this.expectedAttributes = expectedAttributes;
+        this.expectedNamespaces = expectedNamespaces;
+        this.growthFactor = growthFactor;
+    }
+
+    /**
+     * Maximum number of characters requested from the input in one read call.
+     */
+    public int getReadChunkSize() {
+        return readChunkSize;
+    }
+
+    /**
+     * Initial size of the input buffer if no length hint is given for the input. The size is limited by the maximum
+     * buffer size, the configured initial size takes effect again if the maximum is raised later.
+     */
+    public int getInitialBufferSize() {
+        return initialBufferSize < maxBufferSize ? initialBufferSize : maxBufferSize;
+    }
+
+    /**
+     * Maximum size of the input buffer. A single event that does not fit into a buffer of this size is reported as
+     * error.
+     */
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * Percentage of the input buffer that is filled before it is compacted or expanded.
+     */
+    public int getBufferLoadFactor() {
+        return bufferLoadFactor;
+    }
+
+    /**
+     * Expected maximum element depth. The element stack is allocated at once for this depth.
+     */
+    public int getExpectedDepth() {
+        return expectedDepth;
+    }
+
+    /**
+     * Expected maximum number of attributes of an element. The attribute stack is allocated at once for this number.
+     */
+    public int getExpectedAttributes() {
+        return expectedAttributes;
+    }
+
+    /**
+     * Expected maximum number of namespace declarations in scope. The namespace stack is allocated at once for this
+     * number.
+     */
+    public int getExpectedNamespaces() {
+        return expectedNamespaces;
+    }
+
+    /**
+     * Factor used to grow any buffer or stack that is exhausted.
+     */
+    public float getGrowthFactor() {
+        return growthFactor;
+    }
+
+    /**
+     * Derive a configuration with the maximum number of characters read at once, must be positive.
+     */
+    public MXParserConfig withReadChunkSize(int readChunkSize) {
+        return new MXParserConfig(readChunkSize, initialBufferSize, maxBufferSize, bufferLoadFactor, expectedDepth,
+            expectedAttributes, expectedNamespaces, growthFactor);
+    }
+
+    /**
+     * Derive a configuration with the initial input buffer size in characters, must be positive. It is limited by the
+     * maximum buffer size.
+     */
+    public MXParserConfig withInitialBufferSize(int initialBufferSize) {
+        return new MXParserConfig(readChunkSize, initialBufferSize, maxBufferSize, bufferLoadFactor, expectedDepth,
+            expectedAttributes, expectedNamespaces, growthFactor);
+    }
+
+    /**
+     * Derive a configuration with the maximum input buffer size in characters, must be positive. It limits the initial
+     * buffer size.
+     */
+    public MXParserConfig withMaxBufferSize(int maxBufferSize) {
+        return new MXParserConfig(readChunkSize, initialBufferSize, maxBufferSize, bufferLoadFactor, expectedDepth,
+            expectedAttributes, expectedNamespaces, growthFactor);
+    }
+
+    /**
+     * Derive a configuration with the percentage of the input buffer filled before compaction, must be in 1..100.
+     */
+    public MXParserConfig withBufferLoadFactor(int bufferLoadFactor) {
+        return new MXParserConfig(readChunkSize, initialBufferSize, maxBufferSize, bufferLoadFactor, expectedDepth,
+            expectedAttributes, expectedNamespaces, growthFactor);
+    }
+
+    /**
+     * Derive a configuration with the expected maximum element depth, 0 or more, values below 8 keep the default.
+     */
+    public MXParserConfig withExpectedDepth(int expectedDepth) {
+        return new MXParserConfig(readChunkSize, initialBufferSize, maxBufferSize, bufferLoadFactor, expectedDepth,
+            expectedAttributes, expectedNamespaces, growthFactor);
+    }
+
+    /**
+     * Derive a configuration with the expected attributes per element, 0 or more, values below 8 keep the default.
+     */
+    public MXParserConfig withExpectedAttributes(int expectedAttributes) {
+        return new MXParserConfig(readChunkSize, initialBufferSize, maxBufferSize, bufferLoadFactor, expectedDepth,
+            expectedAttributes, expectedNamespaces, growthFactor);
+    }
+
+    /**
+     * Derive a configuration with the expected namespaces in scope, 0 or more, values below 8 keep the default.
+     */
+    public MXParserConfig withExpectedNamespaces(int expectedNamespaces) {
+        return new MXParserConfig(readChunkSize, initialBufferSize, maxBufferSize, bufferLoadFactor, expectedDepth,
+            expectedAttributes, expectedNamespaces, growthFactor);
+    }
+
+    /**
+     * Derive a configuration with the factor used to grow exhausted buffers and stacks, must be greater than 1.
+     */
+    public MXParserConfig withGrowthFactor(float growthFactor) {
+        return new MXParserConfig(readChunkSize, initialBufferSize, maxBufferSize, bufferLoadFactor, expectedDepth,
+            expectedAttributes, expectedNamespaces, growthFactor);
+    }
+
+    /**
+     * Calculate the new size of an exhausted buffer or stack.
+     *
+     * @param size the current size
+     * @param minimum the minimum for the new size
+     * @return the new size, always greater than <code>size</code>
+     */
+    int grow(int size, int minimum) {
+        final long grown = (long)(growthFactor * size);
+        int newSize = grown > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)grown;
+        if (newSize <= size) {
+            newSize = size + 1;
+        }
+        return newSize < minimum ? minimum : newSize;
+    }
+
+    public String toString() {
+        return "MXParserConfig[readChunkSize="
+            + readChunkSize
+            + ", initialBufferSize="
+            + getInitialBufferSize()
+            + ", maxBufferSize="
+            + maxBufferSize
+            + ", bufferLoadFactor="
+            + bufferLoadFactor
+            + ", expectedDepth="
+            + expectedDepth
+            + ", expectedAttributes="
+            + expectedAttributes
+            + ", expectedNamespaces="
+            + expectedNamespaces
+            + ", growthFactor="
+            + growthFactor
+            + "]";
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+
+/**
+ * Handler for the events of a document pushed by {@link MXParser#parse(MXParserHandler)}.
+ * <p>
+ * The events are the ones returned by {@link org.xmlpull.v1.XmlPullParser#next()}. The attributes of an element are
+ * reported one by one directly after {@link #startElement(String, String, String, int)} and before any other call.
+ * Names and namespaces are the Strings of the parser, text is reported as range of the parser's internal buffer that
+ * is only valid during the call. Without namespace processing the namespace is the empty string and the name is the
+ * raw name of the element or attribute. Any method may throw a {@link XmlPullParserException} to stop parsing.
+ * </p>
+ */
+public interface MXParserHandler {
+
+    void startElement(String namespace, String name, String prefix, int depth) throws XmlPullParserException;
+
+    void attribute(String namespace, String name, String prefix, String value) throws XmlPullParserException;
+
+    /**
+     * Receive the text of the current element, adjacent text, entity references and CDATA sections are merged.
+     */
+    void characters(char[] ch, int start, int length) throws XmlPullParserException;
+
+    void endElement(String namespace, String name, String prefix, int depth) throws XmlPullParserException;
+
+    /**
+     * Receive the start of a further document of a stream parsed with {@link MXParser#FEATURE_MULTI_DOCUMENT}.
+     */
+    void startDocument() throws XmlPullParserException;
+
+    void endDocument() throws XmlPullParserException;
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+/**
+ * Immutable vocabulary of known element and attribute names with their integer IDs.
+ * <p>
+ * The names are given as pairs of namespace and local name, the ID of a name is its index in the arrays. The local
+ * names are kept in an open addressing hash table filled to at most one half, so that a {@link MXParser} with this
+ * vocabulary can identify a name directly from the characters in its input buffer, use the local name of the vocabulary instead of creating a new
+ * String and report the ID with {@link MXParser#getNameId()} and {@link MXParser#getAttributeNameId(int)}. Names
+ * that are not part of the vocabulary have the ID {@link #UNKNOWN}. Without namespace processing the local name is
+ * the raw name of the element or attribute in the empty namespace. Since the instance is immutable, it can be shared
+ * by any number of parsers.
+ * </p>
+ */
+public final class NameVocabulary {
+
+    /** The ID of a name that is not part of the vocabulary. */
+    public static final int UNKNOWN = -1;
+
+    private final String[] namespaces;
+    private final String[] localNames;
+    // hash table of the distinct local names with linear probing
+    private final String[] slotName;
+    private final char[][] slotChars;
+    private final int[] slotHash;
+    private final int[][] slotIds;
+    private final int mask;
+
+    /**
+     * Create a vocabulary.
+     *
+     * @param namespaces the namespace of each name, null for no namespace
+     * @param localNames the local name of each name
+     * @throws IllegalArgumentException if the arrays differ in length or a name is registered twice
+     */
+    public NameVocabulary(String[] namespaces, String[] localNames) {
+        if (namespaces.length != localNames.length) {
+            throw new IllegalArgumentException("namespaces and local names must have the same length");
+        }
+        final int size = localNames.length;
+        this.namespaces = new String[size];
+        this.localNames = new String[size];
+
+        // collect distinct local names with the IDs of their namespaces
+        final String[] distinct = new String[size];
+        final int[][] ids = new int[size][];
+        int distinctCount = 0;
+        for (int id = 0; id < size; id++) {
+            final String namespace = namespaces[id] == null ? "" : namespaces[id];
+            final String localName = localNames[id];
+            if (localName == null || localName.length() == 0) {
+                throw new IllegalArgumentException("local name of ID " + id + " must not be empty");
+            }
+            int i = 0;
+            while (i < distinctCount && !distinct[i].equals(localName)) {
+                i++;
+            }
+            if (i == distinctCount) {
+                distinct[distinctCount++] = localName;
+                ids[i] = new int[]{id};
+            } else {
+                final int[] known = ids[i];
+                for (int j = 0; j < known.length; j++) {
+                    if (this.namespaces[known[j]].equals(namespace)) {
+                        throw new IllegalArgumentException("name {" + namespace + "}" + localName
+                            + " is registered with ID " + known[j] + " and " + id);
+                    }
+                }
+                ids[i] = new int[known.length + 1];
+                System.arraycopy(known, 0, ids[i], 0, known.length);
+                ids[i][known.length] = id;
+            }
+            this.namespaces[id] = namespace;
+            // the vocabulary's local name is handed out by the parser, ensure all IDs share one instance
+            this.localNames[id] = distinct[i];
+        }
+
+        // a load factor of at most 0.5 keeps the probe sequences short
+        int tableSize = 2;
+        while (tableSize < 2 * distinctCount) {
+            tableSize <<= 1;
+        }
+        mask = tableSize - 1;
+        slotName = new String[tableSize];
+        slotChars = new char[tableSize][];
+        slotHash = new int[tableSize];
+        slotIds = new int[tableSize][];
+        for (int i = 0; i < distinctCount; i++) {
+            final int hash = distinct[i].hashCode();
+            int slot = slot(hash, mask);
+            while (slotName[slot] != null) {
+                slot = slot + 1 & mask;
+            }
+            slotName[slot] = distinct[i];
+            slotChars[slot] = distinct[i].toCharArray();
+            slotHash[slot] = hash;
+            slotIds[slot] = ids[i];
+        }
+    }
+
+    private static int slot(int hash, int mask) {
+        return (hash ^ hash >>> 16) & mask;
+    }
+
+    /**
+     * Number of names in the vocabulary.
+     */
+    public int size() {
+        return localNames.length;
+    }
+
+    public String getNamespace(int id) {
+        return namespaces[id];
+    }
+
+    public String getLocalName(int id) {
+        return localNames[id];
+    }
+
+    /**
+     * Retrieve the ID of a name.
+     *
+     * @param namespace the namespace, null for no namespace
+     * @param localName the local name
+     * @return the ID or {@link #UNKNOWN}
+     */
+    public int getId(String namespace, String localName) {
+        return getId(lookup(localName), namespace);
+    }
+
+    /**
+     * Look up a local name in the hash table.
+     *
+     * @return the slot of the local name or -1
+     */
+    int lookup(char[] cbuf, int off, int len) {
+        // same hash as String.hashCode()
+        int hash = 0;
+        for (int i = off; i < off + len; i++) {
+            hash = 31 * hash + cbuf[i];
+        }
+        for (int slot = slot(hash, mask);; slot = slot + 1 & mask) {
+            final char[] chars = slotChars[slot];
+            if (chars == null) {
+                return -1;
+            }
+            if (slotHash[slot] == hash && chars.length == len && equals(chars, cbuf, off)) {
+                return slot;
+            }
+        }
+    }
+
+    private static boolean equals(char[] chars, char[] cbuf, int off) {
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] != cbuf[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int lookup(String localName) {
+        final int hash = localName.hashCode();
+        for (int slot = slot(hash, mask);; slot = slot + 1 & mask) {
+            final String name = slotName[slot];
+            if (name == null) {
+                return -1;
+            }
+            if (slotHash[slot] == hash && name.equals(localName)) {
+                return slot;
+            }
+        }
+    }
+
+    String getSlotName(int slot) {
+        return slotName[slot];
+    }
+
+    /**
+     * Retrieve the ID of the name with the local name in the slot.
+     *
+     * @param slot the slot or -1
+     * @param namespace the resolved namespace, null for no namespace
+     * @return the ID or {@link #UNKNOWN}
+     */
+    int getId(int slot, String namespace) {
+        if (slot < 0) {
+            return UNKNOWN;
+        }
+        final int[] ids = slotIds[slot];
+        if (namespace == null) {
+            namespace = "";
+        }
+        for (int i = 0; i < ids.length; i++) {
+            final String candidate = namespaces[ids[i]];
+            if (candidate == namespace || candidate.equals(namespace)) {
+                return ids[i];
+            }
+        }
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+
+/**
+ * Parser replaying the events of an {@link EventRecording}.
+ * <p>
+ * The events are the ones recorded with {@link XmlPullParser#next()}, therefore {@link #nextToken()} behaves like
+ * {@link #next()}. Text is returned directly from the character store of the recording. Line and column numbers are
+ * not available.
+ * </p>
+ */
+final class ReplayParser implements XmlPullParser {
+
+    private static final String XML_URI = "http://www.w3.org/XML/1998/namespace";
+    private static final String XMLNS_URI = "http://www.w3.org/2000/xmlns/";
+
+    private final EventRecording recording;
+    private final int[] events;
+    private final String[] symbols;
+    private int pos;
+    private int eventType = START_DOCUMENT;
+    private int depth;
+    private boolean emptyElementTag;
+    private int textStart;
+    private int textLength;
+    private boolean whitespace;
+    private int attributeStart;
+    private int attributeCount;
+
+    // element stack as symbols
+    private int[] elName = new int[16];
+    private int[] elNamespace = new int[16];
+    private int[] elPrefix = new int[16];
+    private int[] elNamespaceCount = new int[16];
+
+    private int namespaceEnd;
+    private String[] namespacePrefix = new String[8];
+    private String[] namespaceUri = new String[8];
+
+    ReplayParser(EventRecording recording) {
+        this.recording = recording;
+        this.events = recording.events;
+        this.symbols = recording.symbols;
+        final int definedNamespaces = events[pos++];
+        ensureNamespaceCapacity(definedNamespaces);
+        for (int i = 0; i < definedNamespaces; i++) {
+            namespacePrefix[namespaceEnd] = symbol(events[pos++]);
+            namespaceUri[namespaceEnd++] = symbol(events[pos++]);
+        }
+        elNamespaceCount[0] = namespaceEnd;
+    }
+
+    private String symbol(int id) {
+        return id < 0 ? null : symbols[id];
+    }
+
+    public void setFeature(String name, boolean state) throws XmlPullParserException {
+        if (!FEATURE_PROCESS_NAMESPACES.equals(name) || state != recording.processNamespaces) {
+            throw new XmlPullParserException("features of a replayed recording can not be changed");
+        }
+    }
+
+    public boolean getFeature(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("feature name should not be null");
+        }
+        return FEATURE_PROCESS_NAMESPACES.equals(name) && recording.processNamespaces;
+    }
+
+    public void setProperty(String name, Object value) throws XmlPullParserException {
+        throw new XmlPullParserException("unsupported property: '" + name + "'");
+    }
+
+    public Object getProperty(String name) {
+        return null;
+    }
+
+    public void setInput(Reader in) throws XmlPullParserException {
+        throw new XmlPullParserException("input of a replayed recording can not be changed");
+    }
+
+    public void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException {
+        throw new XmlPullParserException("input of a replayed recording can not be changed");
+    }
+
+    public String getInputEncoding() {
+        return recording.inputEncoding;
+    }
+
+    public void defineEntityReplacementText(String entityName, String replacementText)
+        throws XmlPullParserException {
+        throw new XmlPullParserException("entities of a replayed recording are already replaced");
+    }
+
+    public int getNamespaceCount(int depth) throws XmlPullParserException {
+        if (!recording.processNamespaces) {
+            return 0;
+        }
+        if (depth < 0 || depth > this.depth) {
+            throw new IllegalArgumentException("namespace count may be only for depth 0.." + this.depth
+                + " not " + depth);
+        }
+        return elNamespaceCount[depth];
+    }
+
+    public String getNamespacePrefix(int pos) throws XmlPullParserException {
+        if (pos < namespaceEnd) {
+            return namespacePrefix[pos];
+        }
+        throw new XmlPullParserException("position " + pos + " exceeded number of available namespaces "
+            + namespaceEnd);
+    }
+
+    public String getNamespaceUri(int pos) throws XmlPullParserException {
+        if (pos < namespaceEnd) {
+            return namespaceUri[pos];
+        }
+        throw new XmlPullParserException("position " + pos + " exceeded number of available namespaces "
+            + namespaceEnd);
+    }
+
+    public String getNamespace(String prefix) {
+        if (prefix != null) {
+            for (int i = namespaceEnd - 1; i >= 0; i--) {
+                if (prefix.equals(namespacePrefix[i])) {
+                    return namespaceUri[i];
+                }
+            }
+            if ("xml".equals(prefix)) {
+                return XML_URI;
+            } else if ("xmlns".equals(prefix)) {
+                return XMLNS_URI;
+            }
+        } else {
+            for (int i = namespaceEnd - 1; i >= 0; i--) {
+                if (namespacePrefix[i] == null) {
+                    return namespaceUri[i];
+                }
+            }
+        }
+        return null;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public String getPositionDescription() {
+        return " " + TYPES[eventType] + " replayed at depth " + depth;
+    }
+
+    public int getLineNumber() {
+        return -1;
+    }
+
+    public int getColumnNumber() {
+        return -1;
+    }
+
+    public boolean isWhitespace() throws XmlPullParserException {
+        if (eventType == TEXT) {
+            return whitespace;
+        }
+        throw new XmlPullParserException("no content available to check for white spaces");
+    }
+
+    public String getText() {
+        return eventType == TEXT ? new String(recording.chars, textStart, textLength) : null;
+    }
+
+    public char[] getTextCharacters(int[] holderForStartAndLength) {
+        if (eventType == TEXT) {
+            holderForStartAndLength[0] = textStart;
+            holderForStartAndLength[1] = textLength;
+            return recording.chars;
+        }
+        holderForStartAndLength[0] = holderForStartAndLength[1] = -1;
+        return null;
+    }
+
+    public String getNamespace() {
+        if (eventType == START_TAG || eventType == END_TAG) {
+            return symbol(elNamespace[depth]);
+        }
+        return null;
+    }
+
+    public String getName() {
+        if (eventType == START_TAG || eventType == END_TAG) {
+            return symbol(elName[depth]);
+        }
+        return null;
+    }
+
+    public String getPrefix() {
+        if (eventType == START_TAG || eventType == END_TAG) {
+            return symbol(elPrefix[depth]);
+        }
+        return null;
+    }
+
+    public boolean isEmptyElementTag() throws XmlPullParserException {
+        if (eventType != START_TAG) {
+            throw new XmlPullParserException("parser must be on START_TAG to check for empty element", this, null);
+        }
+        return emptyElementTag;
+    }
+
+    public int getAttributeCount() {
+        return eventType == START_TAG ? attributeCount : -1;
+    }
+
+    private int attribute(int index) {
+        if (eventType != START_TAG) {
+            throw new IndexOutOfBoundsException("only START_TAG can have attributes");
+        }
+        if (index < 0 || index >= attributeCount) {
+            throw new IndexOutOfBoundsException("attribute position must be 0.." + (attributeCount - 1)
+                + " and not " + index);
+        }
+        return attributeStart + 5 * index;
+    }
+
+    public String getAttributeNamespace(int index) {
+        return symbol(events[attribute(index) + 1]);
+    }
+
+    public String getAttributeName(int index) {
+        return symbol(events[attribute(index)]);
+    }
+
+    public String getAttributePrefix(int index) {
+        return symbol(events[attribute(index) + 2]);
+    }
+
+    public String getAttributeType(int index) {
+        attribute(index);
+        return "CDATA";
+    }
+
+    public boolean isAttributeDefault(int index) {
+        attribute(index);
+        return false;
+    }
+
+    public String getAttributeValue(int index) {
+        final int attribute = attribute(index);
+        return new String(recording.chars, events[attribute + 3], events[attribute + 4]);
+    }
+
+    public String getAttributeValue(String namespace, String name) {
+        if (eventType != START_TAG) {
+            throw new IndexOutOfBoundsException("only START_TAG can have attributes" + getPositionDescription());
+        }
+        if (name == null) {
+            throw new IllegalArgumentException("attribute name can not be null");
+        }
+        if (recording.processNamespaces) {
+            if (namespace == null) {
+                namespace = "";
+            }
+        } else if (namespace != null && namespace.length() > 0) {
+            throw new IllegalArgumentException(
+                "when namespaces processing is disabled attribute namespace must be null");
+        }
+        for (int i = 0; i < attributeCount; i++) {
+            final int attribute = attributeStart + 5 * i;
+            if (name.equals(symbol(events[attribute]))
+                && (!recording.processNamespaces || namespace.equals(symbol(events[attribute + 1])))) {
+                return new String(recording.chars, events[attribute + 3], events[attribute + 4]);
+            }
+        }
+        return null;
+    }
+
+    public int getEventType() {
+        return eventType;
+    }
+
+    public int next() throws XmlPullParserException {
+        if (eventType == END_DOCUMENT) {
+            throw new XmlPullParserException("already reached end of XML input", this, null);
+        }
+        if (eventType == END_TAG) {
+            namespaceEnd = elNamespaceCount[--depth];
+        }
+        eventType = events[pos++];
+        if (eventType == START_TAG) {
+            if (++depth == elName.length) {
+                elName = grow(elName);
+                elNamespace = grow(elNamespace);
+                elPrefix = grow(elPrefix);
+                elNamespaceCount = grow(elNamespaceCount);
+            }
+            elName[depth] = events[pos++];
+            elNamespace[depth] = events[pos++];
+            elPrefix[depth] = events[pos++];
+            emptyElementTag = events[pos++] == 1;
+            final int namespaces = events[pos++];
+            ensureNamespaceCapacity(namespaces);
+            for (int i = 0; i < namespaces; i++) {
+                namespacePrefix[namespaceEnd] = symbol(events[pos++]);
+                namespaceUri[namespaceEnd++] = symbol(events[pos++]);
+            }
+            elNamespaceCount[depth] = namespaceEnd;
+            attributeCount = events[pos++];
+            attributeStart = pos;
+            pos += 5 * attributeCount;
+        } else if (eventType == TEXT) {
+            textStart = events[pos++];
+            textLength = events[pos++];
+            whitespace = events[pos++] == 1;
+        }
+        return eventType;
+    }
+
+    private void ensureNamespaceCapacity(int namespaces) {
+        if (namespaceEnd + namespaces > namespacePrefix.length) {
+            final int size = 2 * (namespaceEnd + namespaces);
+            final String[] newPrefix = new String[size];
+            final String[] newUri = new String[size];
+            System.arraycopy(namespacePrefix, 0, newPrefix, 0, namespaceEnd);
+            System.arraycopy(namespaceUri, 0, newUri, 0, namespaceEnd);
+            namespacePrefix = newPrefix;
+            namespaceUri = newUri;
+        }
+    }
+
+    private static int[] grow(int[] array) {
+        final int[] newArray = new int[2 * array.length];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    public int nextToken() throws XmlPullParserException {
+        return next();
+    }
+
+    public void require(int type, String namespace, String name) throws XmlPullParserException {
+        if (type != eventType
+            || (namespace != null && !namespace.equals(getNamespace()))
+            || (name != null && !name.equals(getName()))) {
+            throw new XmlPullParserException("expected event " + TYPES[type]
+                + (name != null ? " with name '" + name + "'" : "")
+                + (namespace != null && name != null ? " and" : "")
+                + (namespace != null ? " with namespace '" + namespace + "'" : "")
+                + " but got"
+                + (type != eventType ? " " + TYPES[eventType] : "")
+                + (name != null && getName() != null && !name.equals(getName()) ? " name '" + getName() + "'" : "")
+                + (namespace != null && getNamespace() != null && !namespace.equals(getNamespace())
+                    ? " namespace '" + getNamespace() + "'"
+                    : "")
+                + " (position:" + getPositionDescription() + ")");
+        }
+    }
+
+    public String nextText() throws XmlPullParserException {
+        if (eventType != START_TAG) {
+            throw new XmlPullParserException("parser must be on START_TAG to read next text", this, null);
+        }
+        if (next() == TEXT) {
+            final String result = getText();
+            if (next() != END_TAG) {
+                throw new XmlPullParserException("TEXT must be immediately followed by END_TAG and not "
+                    + TYPES[eventType], this, null);
+            }
+            return result;
+        } else if (eventType == END_TAG) {
+            return "";
+        }
+        throw new XmlPullParserException("parser must be on START_TAG or TEXT to read text", this, null);
+    }
+
+    public int nextTag() throws XmlPullParserException {
+        next();
+        if (eventType == TEXT && whitespace) {
+            next();
+        }
+        if (eventType != START_TAG && eventType != END_TAG) {
+            throw new XmlPullParserException("expected START_TAG or END_TAG not " + TYPES[eventType], this, null);
+        }
+        return eventType;
+    }
+}
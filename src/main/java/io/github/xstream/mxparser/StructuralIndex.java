@@ -0,0 +1,636 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+
+/**
+ * Structural index of a complete XML document for two-phase parsing.
+ * <p>
+ * The document is scanned once in a tight loop that records only the structure on a tape of ints: for every start
+ * tag, attribute, end tag, text and CDATA section its kind and character offsets. No Strings are created while
+ * scanning. A {@link Cursor} navigates the tape afterwards, can skip complete elements in constant time and decodes
+ * names, attribute values and text only when they are requested. This pays off for documents of which only a small,
+ * data dependent part is actually used.
+ * </p>
+ * <p>
+ * The scan checks that tags are balanced and that the end tags match their start tags, other well-formedness
+ * constraints are not verified. Namespaces are not processed, names are the raw names of the document. Comments,
+ * processing instructions and the document type declaration are skipped, entity references in text and attribute
+ * values are resolved for the predefined entities and character references when the value is decoded.
+ * </p>
+ */
+public final class StructuralIndex {
+
+    private static final int ATTRIBUTE = 16;
+    // flags of text entries
+    private static final int HAS_REFERENCE = 1;
+    private static final int HAS_CR = 2;
+
+    // entry: type, start, end, extra
+    private static final int STRIDE = 4;
+
+    private final char[] buf;
+    private final int bufStart;
+    private final int bufEnd;
+    private int[] tape = new int[256];
+    private int tapeEnd;
+
+    private StructuralIndex(char[] buf, int off, int len) {
+        this.buf = buf;
+        this.bufStart = off;
+        this.bufEnd = off + len;
+    }
+
+    /**
+     * Build the index of a document.
+     *
+     * @param in the document, read completely but not closed
+     */
+    public static StructuralIndex build(Reader in) throws XmlPullParserException, IOException {
+        char[] cbuf = new char[8 * 1024];
+        int len = 0;
+        int read;
+        while ((read = in.read(cbuf, len, cbuf.length - len)) != -1) {
+            len += read;
+            if (len == cbuf.length) {
+                final char[] newBuf = new char[2 * cbuf.length];
+                System.arraycopy(cbuf, 0, newBuf, 0, len);
+                cbuf = newBuf;
+            }
+        }
+        return build(cbuf, 0, len);
+    }
+
+    /**
+     * Build the index of a document in a character array. The array is referenced by the index and must not be
+     * modified.
+     */
+    public static StructuralIndex build(char[] cbuf, int off, int len) throws XmlPullParserException {
+        final StructuralIndex index = new StructuralIndex(cbuf, off, len);
+        index.scan();
+        return index;
+    }
+
+    private void scan() throws XmlPullParserException {
+        final char[] buf = this.buf;
+        final int end = bufEnd;
+        int[] open = new int[16];
+        int depth = 0;
+        boolean seenRoot = false;
+        int pos = bufStart;
+        while (pos < end) {
+            // text up to the next markup
+            final int textStart = pos;
+            int flags = 0;
+            char ch = buf[pos];
+            while (ch != '<') {
+                if (ch == '&') {
+                    flags |= HAS_REFERENCE;
+                } else if (ch == '\r') {
+                    flags |= HAS_CR;
+                }
+                if (++pos == end) {
+                    break;
+                }
+                ch = buf[pos];
+            }
+            if (pos > textStart && depth > 0) {
+                add(XmlPullParser.TEXT, textStart, pos, flags);
+            }
+            if (pos == end) {
+                break;
+            }
+            if (++pos == end) {
+                throw error("unexpected end of document in markup", pos);
+            }
+            ch = buf[pos];
+            if (ch == '/') {
+                final int nameStart = ++pos;
+                pos = scanName(pos);
+                final int nameEnd = pos;
+                if (depth == 0) {
+                    throw error("end tag without start tag", nameStart);
+                }
+                final int startEntry = open[--depth];
+                if (!regionEquals(tape[startEntry + 1], tape[startEntry + 2], nameStart, nameEnd)) {
+                    throw error("end tag name </" + new String(buf, nameStart, nameEnd - nameStart)
+                        + "> must match start tag name <"
+                        + new String(buf, tape[startEntry + 1], tape[startEntry + 2] - tape[startEntry + 1])
+                        + ">", nameStart);
+                }
+                pos = skipSpace(pos);
+                if (pos == end || buf[pos] != '>') {
+                    throw error("expected > to finish end tag", pos);
+                }
+                ++pos;
+                tape[startEntry + 3] = tapeEnd;
+                add(XmlPullParser.END_TAG, nameStart, nameEnd, startEntry);
+            } else if (ch == '?') {
+                pos = skipPast(pos, "?>");
+            } else if (ch == '!') {
+                if (startsWith(pos, "!--")) {
+                    pos = skipPast(pos + 3, "-->");
+                } else if (startsWith(pos, "![CDATA[")) {
+                    final int cdataStart = pos + 8;
+                    pos = skipPast(cdataStart, "]]>");
+                    if (depth == 0) {
+                        throw error("CDATA section outside of root element", cdataStart);
+                    }
+                    add(XmlPullParser.CDSECT, cdataStart, pos - 3,
+                        indexOf('\r', cdataStart, pos - 3) >= 0 ? HAS_CR : 0);
+                } else {
+                    pos = skipDeclaration(pos);
+                }
+            } else {
+                if (depth == 0 && seenRoot) {
+                    throw error("only one root element is allowed", pos);
+                }
+                seenRoot = true;
+                final int nameStart = pos;
+                pos = scanName(pos);
+                final int startEntry = tapeEnd;
+                add(XmlPullParser.START_TAG, nameStart, pos, -1);
+                while (true) {
+                    pos = skipSpace(pos);
+                    if (pos == end) {
+                        throw error("unexpected end of document in start tag", pos);
+                    }
+                    ch = buf[pos];
+                    if (ch == '>') {
+                        ++pos;
+                        if (depth == open.length) {
+                            final int[] newOpen = new int[2 * depth];
+                            System.arraycopy(open, 0, newOpen, 0, depth);
+                            open = newOpen;
+                        }
+                        open[depth++] = startEntry;
+                        break;
+                    } else if (ch == '/') {
+                        if (++pos == end || buf[pos] != '>') {
+                            throw error("expected > to end empty tag", pos);
+                        }
+                        ++pos;
+                        tape[startEntry + 3] = tapeEnd;
+                        add(XmlPullParser.END_TAG, nameStart, tape[startEntry + 2], startEntry);
+                        break;
+                    }
+                    final int attributeStart = pos;
+                    pos = scanName(pos);
+                    final int attributeEnd = pos;
+                    pos = skipSpace(pos);
+                    if (pos == end || buf[pos] != '=') {
+                        throw error("expected = after attribute name", pos);
+                    }
+                    pos = skipSpace(pos + 1);
+                    if (pos == end || (buf[pos] != '"' && buf[pos] != '\'')) {
+                        throw error("attribute value must start with quotation or apostrophe", pos);
+                    }
+                    final char delimiter = buf[pos++];
+                    final int valueStart = pos;
+                    while (pos < end && buf[pos] != delimiter) {
+                        if (buf[pos] == '<') {
+                            throw error("markup not allowed inside attribute value", pos);
+                        }
+                        ++pos;
+                    }
+                    if (pos++ == end) {
+                        throw error("unexpected end of document in attribute value", valueStart);
+                    }
+                    add(ATTRIBUTE, attributeStart, attributeEnd, valueStart);
+                }
+            }
+        }
+        if (depth > 0) {
+            final int startEntry = open[depth - 1];
+            throw error("no more data available - expected end tag </"
+                + new String(buf, tape[startEntry + 1], tape[startEntry + 2] - tape[startEntry + 1]) + ">", pos);
+        }
+        if (!seenRoot) {
+            throw error("document contains no root element", pos);
+        }
+    }
+
+    private void add(int type, int start, int end, int extra) {
+        if (tapeEnd + STRIDE > tape.length) {
+            final int[] newTape = new int[2 * tape.length];
+            System.arraycopy(tape, 0, newTape, 0, tapeEnd);
+            tape = newTape;
+        }
+        tape[tapeEnd++] = type;
+        tape[tapeEnd++] = start;
+        tape[tapeEnd++] = end;
+        tape[tapeEnd++] = extra;
+    }
+
+    private int scanName(int pos) throws XmlPullParserException {
+        final int start = pos;
+        while (pos < bufEnd) {
+            final char ch = buf[pos];
+            if (ch <= ' ' || ch == '>' || ch == '/' || ch == '=' || ch == '<' || ch == '"' || ch == '\'') {
+                break;
+            }
+            ++pos;
+        }
+        if (pos == start) {
+            throw error("expected name", pos);
+        }
+        return pos;
+    }
+
+    private int skipSpace(int pos) {
+        while (pos < bufEnd && buf[pos] <= ' ' && (buf[pos] == ' ' || buf[pos] == '\n' || buf[pos] == '\t'
+            || buf[pos] == '\r')) {
+            ++pos;
+        }
+        return pos;
+    }
+
+    private boolean startsWith(int pos, String s) {
+        if (pos + s.length() > bufEnd) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (buf[pos + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int skipPast(int pos, String terminator) throws XmlPullParserException {
+        final char first = terminator.charAt(0);
+        final int start = pos;
+        while (pos < bufEnd) {
+            if (buf[pos] == first && startsWith(pos, terminator)) {
+                return pos + terminator.length();
+            }
+            ++pos;
+        }
+        throw error("unexpected end of document, expected " + terminator, start);
+    }
+
+    private int skipDeclaration(int pos) throws XmlPullParserException {
+        final int start = pos;
+        int brackets = 0;
+        char quote = 0;
+        while (pos < bufEnd) {
+            final char ch = buf[pos++];
+            if (quote != 0) {
+                if (ch == quote) {
+                    quote = 0;
+                }
+            } else if (ch == '"' || ch == '\'') {
+                quote = ch;
+            } else if (ch == '[') {
+                ++brackets;
+            } else if (ch == ']') {
+                --brackets;
+            } else if (ch == '>' && brackets == 0) {
+                return pos;
+            }
+        }
+        throw error("unexpected end of document in declaration", start);
+    }
+
+    private boolean regionEquals(int start1, int end1, int start2, int end2) {
+        if (end1 - start1 != end2 - start2) {
+            return false;
+        }
+        for (int i = 0; i < end1 - start1; i++) {
+            if (buf[start1 + i] != buf[start2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private XmlPullParserException error(String message, int pos) {
+        return new XmlPullParserException(message + " (offset: " + (pos - bufStart) + ")");
+    }
+
+    /**
+     * Number of entries on the tape.
+     */
+    public int size() {
+        return tapeEnd / STRIDE;
+    }
+
+    /**
+     * The indexed document.
+     */
+    public char[] getCharacters() {
+        return buf;
+    }
+
+    /**
+     * Create a cursor positioned before the root element.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Decode text or an attribute value, the content of a CDATA section has only its line breaks normalized.
+     */
+    private String decode(int start, int end, boolean attribute, boolean cdata) throws XmlPullParserException {
+        final StringBuffer sb = new StringBuffer(end - start);
+        int runStart = start;
+        for (int pos = start; pos < end; pos++) {
+            final char ch = buf[pos];
+            if (ch == '&' && !cdata) {
+                sb.append(buf, runStart, pos - runStart);
+                final int refEnd = indexOf(';', pos, end);
+                if (refEnd < 0) {
+                    throw error("entity reference must end with semicolon", pos);
+                }
+                appendReference(sb, pos + 1, refEnd);
+                pos = refEnd;
+                runStart = pos + 1;
+            } else if (ch == '\r' || (attribute && (ch == '\n' || ch == '\t'))) {
+                sb.append(buf, runStart, pos - runStart);
+                sb.append(attribute ? ' ' : '\n');
+                if (ch == '\r' && pos + 1 < end && buf[pos + 1] == '\n') {
+                    ++pos;
+                }
+                runStart = pos + 1;
+            }
+        }
+        sb.append(buf, runStart, end - runStart);
+        return sb.toString();
+    }
+
+    private void appendReference(StringBuffer sb, int start, int end) throws XmlPullParserException {
+        final int len = end - start;
+        if (len > 1 && buf[start] == '#') {
+            int codePoint = 0;
+            try {
+                codePoint = buf[start + 1] == 'x'
+                    ? Integer.parseInt(new String(buf, start + 2, len - 2), 16)
+                    : Integer.parseInt(new String(buf, start + 1, len - 1));
+            } catch (final NumberFormatException e) {
+                throw error("invalid character reference", start);
+            }
+            if (codePoint < 0 || codePoint > 0x10FFFF) {
+                throw error("invalid character reference", start);
+            }
+            if (codePoint < 0x10000) {
+                sb.append((char)codePoint);
+            } else {
+                codePoint -= 0x10000;
+                sb.append((char)(0xD800 + (codePoint >> 10)));
+                sb.append((char)(0xDC00 + (codePoint & 0x3FF)));
+            }
+        } else if (len == 2 && buf[start] == 'l' && buf[start + 1] == 't') {
+            sb.append('<');
+        } else if (len == 2 && buf[start] == 'g' && buf[start + 1] == 't') {
+            sb.append('>');
+        } else if (len == 3 && startsWith(start, "amp")) {
+            sb.append('&');
+        } else if (len == 4 && startsWith(start, "apos")) {
+            sb.append('\'');
+        } else if (len == 4 && startsWith(start, "quot")) {
+            sb.append('"');
+        } else {
+            throw error("could not resolve entity named '" + new String(buf, start, len) + "'", start);
+        }
+    }
+
+    private int indexOf(char ch, int start, int end) {
+        for (int pos = start; pos < end; pos++) {
+            if (buf[pos] == ch) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Navigates the events of the index.
+     * <p>
+     * The event types are the ones of {@link XmlPullParser}: {@link XmlPullParser#START_TAG},
+     * {@link XmlPullParser#END_TAG}, {@link XmlPullParser#TEXT}, {@link XmlPullParser#CDSECT} and
+     * {@link XmlPullParser#END_DOCUMENT}. Attributes are accessed on the start tag. A cursor is cheap, any number of
+     * cursors may navigate the same index.
+     * </p>
+     */
+    public final class Cursor {
+        private int entry = -STRIDE;
+        private int depth;
+
+        private Cursor() {
+        }
+
+        /**
+         * Move to the next event.
+         *
+         * @return the event type
+         */
+        public int next() {
+            if (entry >= tapeEnd) {
+                return XmlPullParser.END_DOCUMENT;
+            }
+            if (entry >= 0 && tape[entry] == XmlPullParser.END_TAG) {
+                --depth;
+            }
+            entry += STRIDE;
+            while (entry < tapeEnd && tape[entry] == ATTRIBUTE) {
+                entry += STRIDE;
+            }
+            if (entry < tapeEnd && tape[entry] == XmlPullParser.START_TAG) {
+                ++depth;
+            }
+            return getType();
+        }
+
+        /**
+         * Skip the content of the current element in constant time.
+         *
+         * @return {@link XmlPullParser#END_TAG} of the element
+         * @throws IllegalStateException if the cursor is not on a start tag
+         */
+        public int skip() {
+            checkType(XmlPullParser.START_TAG);
+            entry = tape[entry + 3];
+            return XmlPullParser.END_TAG;
+        }
+
+        /**
+         * Move to the next start or end tag, skipping any text.
+         *
+         * @return the event type
+         */
+        public int nextTag() {
+            int type;
+            do {
+                type = next();
+            } while (type == XmlPullParser.TEXT || type == XmlPullParser.CDSECT);
+            return type;
+        }
+
+        /**
+         * Type of the current event, START_DOCUMENT before the first and END_DOCUMENT after the last event.
+         */
+        public int getType() {
+            if (entry < 0) {
+                return XmlPullParser.START_DOCUMENT;
+            }
+            return entry < tapeEnd ? tape[entry] : XmlPullParser.END_DOCUMENT;
+        }
+
+        /**
+         * Element depth of the current event, the depth of the element itself for its start and end tag.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Offset of the first character of the name or text of the current event in {@link #getCharacters()}.
+         */
+        public int getStart() {
+            checkEntry();
+            return tape[entry + 1];
+        }
+
+        /**
+         * Offset after the last character of the name or text of the current event.
+         */
+        public int getEnd() {
+            checkEntry();
+            return tape[entry + 2];
+        }
+
+        /**
+         * The raw name of the current start or end tag.
+         */
+        public String getName() {
+            checkTag();
+            return new String(buf, tape[entry + 1], tape[entry + 2] - tape[entry + 1]);
+        }
+
+        /**
+         * Compare the raw name of the current start or end tag without creating a String.
+         */
+        public boolean isName(String name) {
+            checkTag();
+            return equals(tape[entry + 1], tape[entry + 2], name);
+        }
+
+        /**
+         * The decoded text of the current text or CDATA section.
+         */
+        public String getText() throws XmlPullParserException {
+            final int type = getType();
+            if (type != XmlPullParser.CDSECT) {
+                checkType(XmlPullParser.TEXT);
+            }
+            if (tape[entry + 3] == 0) {
+                return new String(buf, tape[entry + 1], tape[entry + 2] - tape[entry + 1]);
+            }
+            return decode(tape[entry + 1], tape[entry + 2], false, type == XmlPullParser.CDSECT);
+        }
+
+        /**
+         * Number of attributes of the current start tag.
+         */
+        public int getAttributeCount() {
+            checkType(XmlPullParser.START_TAG);
+            int count = 0;
+            for (int i = entry + STRIDE; i < tapeEnd && tape[i] == ATTRIBUTE; i += STRIDE) {
+                ++count;
+            }
+            return count;
+        }
+
+        /**
+         * The raw name of an attribute of the current start tag.
+         */
+        public String getAttributeName(int index) {
+            final int attribute = attribute(index);
+            return new String(buf, tape[attribute + 1], tape[attribute + 2] - tape[attribute + 1]);
+        }
+
+        /**
+         * The decoded value of an attribute of the current start tag.
+         */
+        public String getAttributeValue(int index) throws XmlPullParserException {
+            return value(attribute(index));
+        }
+
+        /**
+         * Retrieve the decoded value of an attribute by its raw name.
+         *
+         * @return the value or null if the start tag has no such attribute
+         */
+        public String getAttributeValue(String name) throws XmlPullParserException {
+            checkType(XmlPullParser.START_TAG);
+            for (int i = entry + STRIDE; i < tapeEnd && tape[i] == ATTRIBUTE; i += STRIDE) {
+                if (equals(tape[i + 1], tape[i + 2], name)) {
+                    return value(i);
+                }
+            }
+            return null;
+        }
+
+        private String value(int attribute) throws XmlPullParserException {
+            final int start = tape[attribute + 3];
+            final int end = indexOf(buf[start - 1], start, bufEnd);
+            return decode(start, end, true, false);
+        }
+
+        private int attribute(int index) {
+            final int count = getAttributeCount();
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("attribute position must be 0.."
+                    + (count - 1) + " and not " + index);
+            }
+            return entry + STRIDE * (index + 1);
+        }
+
+        private boolean equals(int start, int end, String name) {
+            if (end - start != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < end - start; i++) {
+                if (buf[start + i] != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void checkEntry() {
+            if (entry < 0 || entry >= tapeEnd) {
+                throw new IllegalStateException("cursor is not on an event");
+            }
+        }
+
+        private void checkTag() {
+            final int type = getType();
+            if (type != XmlPullParser.START_TAG && type != XmlPullParser.END_TAG) {
+                throw new IllegalStateException("cursor is on " + XmlPullParser.TYPES[type] + " and not on a tag");
+            }
+        }
+
+        private void checkType(int type) {
+            if (getType() != type) {
+                throw new IllegalStateException("cursor is on " + XmlPullParser.TYPES[getType()]
+                    + " and not on " + XmlPullParser.TYPES[type]);
+            }
+        }
+    }
+}
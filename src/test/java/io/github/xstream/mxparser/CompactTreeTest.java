@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static io.github.xstream.mxparser.ParserEvents.newParser;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import org.junit.Test;
+
+public class CompactTreeTest
+{
+    @Test
+    public void testBuildTree()
+        throws Exception
+    {
+        MXParser parser = newParser( "<?xml version='1.0'?><!-- c --><lib xmlns='urn:lib' xmlns:x='urn:x'>"
+            + "<book id='1' x:lang='de'>Faust &amp; more</book>"
+            + "<book id='2'><title>Emil</title></book><x:note/></lib>", true );
+        CompactTree tree = CompactTree.build( parser );
+        assertEquals( XmlPullParser.END_TAG, parser.getEventType() );
+        assertEquals( "lib", parser.getName() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+
+        assertEquals( 7, tree.getNodeCount() );
+        assertEquals( CompactTree.ELEMENT, tree.getKind( 0 ) );
+        assertEquals( "lib", tree.getName( 0 ) );
+        assertEquals( "urn:lib", tree.getNamespace( 0 ) );
+        assertEquals( CompactTree.NONE, tree.getParent( 0 ) );
+
+        int book = tree.getFirstChild( 0 );
+        assertEquals( 1, book );
+        assertEquals( 2, tree.getAttributeCount( book ) );
+        assertEquals( "id", tree.getAttributeName( book, 0 ) );
+        assertEquals( "1", tree.getAttributeValue( book, 0 ) );
+        assertEquals( "urn:x", tree.getAttributeNamespace( book, 1 ) );
+        assertEquals( "x", tree.getAttributePrefix( book, 1 ) );
+        assertEquals( "de", tree.getAttributeValue( book, "urn:x", "lang" ) );
+        assertNull( tree.getAttributeValue( book, null, "unknown" ) );
+        int text = tree.getFirstChild( book );
+        assertEquals( CompactTree.TEXT, tree.getKind( text ) );
+        assertEquals( "Faust & more", tree.getText( text ) );
+        assertEquals( "Faust & more",
+                      new String( tree.getCharacters(), tree.getTextStart( text ), tree.getTextLength( text ) ) );
+
+        int second = tree.getNextSibling( book );
+        assertEquals( tree.getSymbol( book ), tree.getSymbol( second ) );
+        assertEquals( "2", tree.getAttributeValue( second, null, "id" ) );
+        assertEquals( "Emil", tree.getText( second ) );
+        int title = tree.getChildElement( second, "urn:lib", "title" );
+        assertEquals( "title", tree.getName( title ) );
+        assertEquals( second, tree.getParent( title ) );
+        assertEquals( CompactTree.NONE, tree.getChildElement( second, "urn:x", "title" ) );
+
+        int note = tree.getNextSibling( second );
+        assertEquals( "urn:x", tree.getNamespace( note ) );
+        assertEquals( "x", tree.getPrefix( note ) );
+        assertEquals( CompactTree.NONE, tree.getFirstChild( note ) );
+        assertEquals( CompactTree.NONE, tree.getNextSibling( note ) );
+        assertEquals( "Faust & moreEmil", tree.getText( 0 ) );
+        assertEquals( 6, tree.getSymbolCount() );
+    }
+
+    @Test
+    public void testBuildSubtree()
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer( "<items>" );
+        for ( int i = 0; i < 200; i++ )
+        {
+            sb.append( "<item n='" ).append( i ).append( "'>value " ).append( i ).append( "</item>" );
+        }
+        sb.append( "</items>" );
+        MXParser parser = newParser( sb.toString(), true );
+        parser.nextTag();
+        parser.nextTag();
+        CompactTree first = CompactTree.build( parser );
+        assertEquals( 2, first.getNodeCount() );
+        assertEquals( "0", first.getAttributeValue( 0, 0 ) );
+
+        parser.setInput( new StringReader( sb.toString() ) );
+        CompactTree tree = CompactTree.build( parser );
+        assertEquals( 401, tree.getNodeCount() );
+        int item = tree.getFirstChild( 0 );
+        for ( int i = 0; i < 200; i++ )
+        {
+            assertEquals( String.valueOf( i ), tree.getAttributeValue( item, 0 ) );
+            assertEquals( "value " + i, tree.getText( item ) );
+            item = tree.getNextSibling( item );
+        }
+        assertEquals( CompactTree.NONE, item );
+        assertEquals( 3, tree.getSymbolCount() );
+
+        try
+        {
+            tree.getTextLength( 0 );
+            fail( "Should fail since node is an element" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertEquals( "node 0 is not a text", e.getMessage() );
+        }
+        try
+        {
+            tree.getKind( 401 );
+            fail( "Should fail since node does not exist" );
+        }
+        catch ( IndexOutOfBoundsException e )
+        {
+            assertEquals( "node must be 0..400 and not 401", e.getMessage() );
+        }
+    }
+
+    @Test
+    public void testNoElement()
+        throws Exception
+    {
+        MXParser parser = newParser( "<a/>", true );
+        parser.next();
+        parser.next();
+        try
+        {
+            CompactTree.build( parser );
+            fail( "Should fail since parser is on end tag" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertTrue( e.getMessage().startsWith( "no element to build the tree for" ) );
+        }
+    }
+}
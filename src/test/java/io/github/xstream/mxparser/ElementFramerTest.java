@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import org.junit.Test;
+
+public class ElementFramerTest
+{
+    private static final String STREAM_START = "<?xml version='1.0'?>"
+        + "<stream:stream xmlns='jabber:client' xmlns:stream='http://etherx.jabber.org/streams' to='example.com'>";
+
+    @Test
+    public void testFramesInSmallChunks()
+        throws Exception
+    {
+        List<String> stanzas = new ArrayList<String>();
+        StringBuffer sb = new StringBuffer( STREAM_START );
+        for ( int i = 0; i < 50; i++ )
+        {
+            String stanza = "<message id='m" + i + "'><body>Héllo " + i + "<!-- c --></body></message>";
+            stanzas.add( stanza );
+            sb.append( stanza ).append( "\n  " );
+        }
+        sb.append( "</stream:stream>" );
+        byte[] bytes = sb.toString().getBytes( "UTF-8" );
+
+        ElementFramer framer = new ElementFramer(
+            new MXParser( MXParserConfig.DEFAULT.withReadChunkSize( 32 ).withInitialBufferSize( 32 ) ), "UTF-8" );
+        List<String> frames = new ArrayList<String>();
+        for ( int off = 0; off < bytes.length; off += 7 )
+        {
+            framer.feed( bytes, off, Math.min( 7, bytes.length - off ) );
+            ElementFramer.Frame frame;
+            while ( ( frame = framer.nextFrame() ) != null )
+            {
+                assertEquals( "message", frame.getName() );
+                assertEquals( "jabber:client", frame.getNamespace() );
+                assertEquals( frame.toString().getBytes( "UTF-8" ).length, frame.getByteLength() );
+                frames.add( frame.toString() );
+            }
+        }
+        framer.endOfInput();
+        assertNull( framer.nextFrame() );
+
+        assertTrue( framer.isClosed() );
+        assertEquals( "stream", framer.getRootName() );
+        assertEquals( "http://etherx.jabber.org/streams", framer.getRootNamespace() );
+        assertEquals( stanzas, frames );
+    }
+
+    @Test
+    public void testFrameWithNamespaceContext()
+        throws Exception
+    {
+        ElementFramer framer = new ElementFramer( null );
+        byte[] bytes = ( STREAM_START + "<stream:features><starttls/></stream:features>" ).getBytes( "UTF-8" );
+        framer.feed( bytes, 0, bytes.length - 5 );
+        assertNull( framer.nextFrame() );
+        assertFalse( framer.isClosed() );
+        framer.feed( bytes, bytes.length - 5, 5 );
+
+        ElementFramer.Frame frame = framer.nextFrame();
+        assertEquals( "<stream:features><starttls/></stream:features>", frame.toString() );
+        assertEquals( STREAM_START.length(), frame.getOffset() );
+        assertEquals( STREAM_START.length(), frame.getByteOffset() );
+        assertEquals( 2, frame.getNamespaceCount() );
+        assertNull( frame.getNamespacePrefix( 0 ) );
+        assertEquals( "jabber:client", frame.getNamespaceUri( 0 ) );
+        assertEquals( "stream", frame.getNamespacePrefix( 1 ) );
+        assertEquals( "http://etherx.jabber.org/streams", frame.getNamespaceUri( 1 ) );
+
+        // frame can be parsed on its own with the declarations from the stream root
+        StringBuffer sb = new StringBuffer( "<root" );
+        for ( int i = 0; i < frame.getNamespaceCount(); i++ )
+        {
+            String prefix = frame.getNamespacePrefix( i );
+            sb.append( prefix == null ? " xmlns" : " xmlns:" + prefix ).append( "='" );
+            sb.append( frame.getNamespaceUri( i ) ).append( "'" );
+        }
+        sb.append( '>' ).append( frame.getCharacters(), frame.getStart(), frame.getLength() ).append( "</root>" );
+        MXParser parser = new MXParser();
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        parser.setInput( new StringReader( sb.toString() ) );
+        parser.nextTag();
+        parser.nextTag();
+        assertEquals( "features", parser.getName() );
+        assertEquals( "http://etherx.jabber.org/streams", parser.getNamespace() );
+        parser.nextTag();
+        assertEquals( "starttls", parser.getName() );
+        assertEquals( "jabber:client", parser.getNamespace() );
+
+        assertNull( framer.nextFrame() );
+        assertFalse( framer.isClosed() );
+    }
+}
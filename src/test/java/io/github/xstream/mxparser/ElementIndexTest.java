@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ElementIndexTest
+{
+    private File file;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        file = File.createTempFile( "mxparser-index", ".xml" );
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    private void writeCatalog( String encoding )
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer( "<?xml version='1.0'?>\n" );
+        sb.append( "<catalog xmlns='urn:catalog' xmlns:p='urn:price'>\n" );
+        for ( int i = 0; i < 500; i++ )
+        {
+            sb.append( "  <item id='i" ).append( i ).append( "'><name>Bücher " ).append( i ).append( "</name>" );
+            sb.append( "<p:price>" ).append( i ).append( ".99</p:price></item>\n" );
+            if ( i == 250 )
+            {
+                sb.append( "  <group xmlns:p='urn:other'><item id='nested'/></group>\n" );
+            }
+        }
+        sb.append( "  <item id='x' xmlns='urn:local'/>\n" );
+        sb.append( "</catalog>" );
+        OutputStream out = new FileOutputStream( file );
+        out.write( sb.toString().getBytes( encoding ) );
+        out.close();
+    }
+
+    private ElementIndex buildIndex( String encoding, String path, String keyAttribute )
+        throws Exception
+    {
+        InputStream in = new FileInputStream( file );
+        try
+        {
+            return ElementIndex.build( in, encoding, path, keyAttribute );
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testSeekIndexedElement()
+        throws Exception
+    {
+        writeCatalog( "UTF-8" );
+        ElementIndex index = buildIndex( "UTF-8", "/catalog/item", "id" );
+        assertEquals( 501, index.size() );
+        assertEquals( "i0", index.getKey( 0 ) );
+        assertEquals( "x", index.getKey( 500 ) );
+
+        MXParser parser = index.seek( file, "i321" );
+        assertEquals( XmlPullParser.START_TAG, parser.nextTag() );
+        assertEquals( "item", parser.getName() );
+        assertEquals( "urn:catalog", parser.getNamespace() );
+        assertEquals( "i321", parser.getAttributeValue( null, "id" ) );
+        assertEquals( 2, parser.getNamespaceCount( 0 ) );
+        assertEquals( XmlPullParser.START_TAG, parser.nextTag() );
+        assertEquals( "Bücher 321", parser.nextText() );
+        assertEquals( XmlPullParser.START_TAG, parser.nextTag() );
+        assertEquals( "urn:price", parser.getNamespace() );
+        assertEquals( "321.99", parser.nextText() );
+        assertEquals( XmlPullParser.END_TAG, parser.nextTag() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+
+        parser = index.seek( file, "x" );
+        assertEquals( XmlPullParser.START_TAG, parser.nextTag() );
+        assertEquals( "urn:local", parser.getNamespace() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+
+        assertNull( index.seek( file, "nested" ) );
+        assertFalse( index.seek( new MXParser(), file, "unknown" ) );
+        assertEquals( -1, index.getStartOffset( "unknown" ) );
+    }
+
+    @Test
+    public void testWriteAndReadIndex()
+        throws Exception
+    {
+        writeCatalog( "ISO-8859-1" );
+        ElementIndex index = buildIndex( "ISO-8859-1", "/catalog/group/item", null );
+        assertEquals( 1, index.size() );
+        assertEquals( "0", index.getKey( 0 ) );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo( out );
+        ElementIndex read = ElementIndex.readFrom( new ByteArrayInputStream( out.toByteArray() ) );
+        assertEquals( "ISO-8859-1", read.getEncoding() );
+        assertEquals( "/catalog/group/item", read.getPath() );
+        assertNull( read.getKeyAttribute() );
+        assertEquals( index.getStartOffset( "0" ), read.getStartOffset( "0" ) );
+        assertEquals( index.getEndOffset( "0" ), read.getEndOffset( "0" ) );
+
+        MXParser parser = new MXParser();
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        assertTrue( read.seek( parser, file, "0" ) );
+        assertEquals( XmlPullParser.START_TAG, parser.nextTag() );
+        assertEquals( "nested", parser.getAttributeValue( null, "id" ) );
+        assertEquals( "urn:other", parser.getNamespace( "p" ) );
+        assertEquals( "urn:catalog", parser.getNamespace() );
+    }
+
+    @Test
+    public void testUnsupportedEncoding()
+        throws Exception
+    {
+        writeCatalog( "UTF-16" );
+        try
+        {
+            buildIndex( "UTF-16", "/catalog/item", "id" );
+            fail( "Should fail since byte offsets are not available" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertTrue( e.getMessage().contains( "byte offsets are not supported" ) );
+        }
+    }
+
+    @Test
+    public void testInvalidIndex()
+        throws Exception
+    {
+        try
+        {
+            ElementIndex.readFrom( new ByteArrayInputStream( new byte[] { 1, 2, 3, 4 } ) );
+            fail( "Should fail since input is no index" );
+        }
+        catch ( java.io.IOException e )
+        {
+            assertEquals( "not an element index", e.getMessage() );
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import static org.junit.Assert.assertEquals;
+import static io.github.xstream.mxparser.ParserEvents.events;
+import static io.github.xstream.mxparser.ParserEvents.newParser;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import org.junit.Test;
+
+public class EventBatchTest
+{
+    private static final String XML = "<?xml version='1.0'?>\n"
+        + "<orders xmlns='urn:orders' xmlns:a='urn:address'>\n"
+        + "  <order id='1' a:zip='8000'><city>Zürich</city><note>a &amp; b<![CDATA[ <c> ]]>\r\nend</note></order>\n"
+        + "  <order id='2'><city>Köln</city><empty/></order>\n"
+        + "</orders>";
+
+    // same format as ParserEvents.describe( parser )
+    private static String describe( EventBatch batch, int event )
+    {
+        StringBuffer sb = new StringBuffer( XmlPullParser.TYPES[batch.getType( event )] );
+        sb.append( ' ' ).append( batch.getDepth( event ) );
+        int type = batch.getType( event );
+        if ( type == XmlPullParser.START_TAG || type == XmlPullParser.END_TAG )
+        {
+            sb.append( " {" ).append( batch.getNamespace( event ) ).append( '}' ).append( batch.getString( event ) );
+            int start = batch.getAttributeStart( event );
+            for ( int i = start; i < start + batch.getAttributeCount( event ); i++ )
+            {
+                sb.append( " {" ).append( batch.getAttributeNamespace( i ) ).append( '}' );
+                sb.append( batch.getAttributeName( i ) ).append( '=' ).append( batch.getAttributeValue( i ) );
+            }
+        }
+        else if ( type == XmlPullParser.TEXT )
+        {
+            sb.append( " '" ).append( batch.getString( event ) ).append( '\'' );
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testBatchesMatchEvents()
+        throws Exception
+    {
+        List<String> expected = events( newParser( XML, true ), false, 0 );
+        MXParser parser;
+
+        for ( int capacity = 1; capacity <= 8; capacity++ )
+        {
+            List<String> events = new ArrayList<String>();
+            EventBatch batch = new EventBatch( capacity );
+            parser = newParser( XML, true );
+            while ( parser.nextBatch( batch ) > 0 )
+            {
+                assertTrue( batch.size() <= capacity );
+                for ( int i = 0; i < batch.size(); i++ )
+                {
+                    events.add( describe( batch, i ) );
+                }
+            }
+            assertEquals( "capacity " + capacity, expected, events );
+            assertEquals( 0, parser.nextBatch( batch ) );
+        }
+    }
+
+    @Test
+    public void testBatchesOfMultipleDocuments()
+        throws Exception
+    {
+        MXParser parser = newParser( "<a>x</a><b>y</b>", false );
+        parser.setFeature( MXParser.FEATURE_MULTI_DOCUMENT, true );
+        EventBatch batch = new EventBatch( 8 );
+        assertEquals( 4, parser.nextBatch( batch ) );
+        assertEquals( "END_DOCUMENT 0", describe( batch, 3 ) );
+        assertEquals( 5, parser.nextBatch( batch ) );
+        assertEquals( "START_DOCUMENT 0", describe( batch, 0 ) );
+        assertEquals( "START_TAG 1 {}b", describe( batch, 1 ) );
+        assertEquals( "TEXT 1 'y'", describe( batch, 2 ) );
+        assertEquals( "END_DOCUMENT 0", describe( batch, 4 ) );
+        assertEquals( 0, parser.nextBatch( batch ) );
+    }
+
+    @Test
+    public void testBatchWithoutStrings()
+        throws Exception
+    {
+        MXParser parser = newParser( XML, true );
+        EventBatch batch = new EventBatch( 64 );
+        assertEquals( 21, parser.nextBatch( batch ) );
+        int orders = 0;
+        int ids = 0;
+        for ( int i = 0; i < batch.size(); i++ )
+        {
+            if ( batch.getType( i ) == XmlPullParser.START_TAG && batch.equals( i, "order" ) )
+            {
+                orders++;
+                int start = batch.getAttributeStart( i );
+                for ( int a = start; a < start + batch.getAttributeCount( i ); a++ )
+                {
+                    if ( batch.attributeNameEquals( a, "id" ) )
+                    {
+                        ids += batch.getCharacters()[batch.getAttributeValueStart( a )] - '0';
+                        assertEquals( 1, batch.getAttributeValueLength( a ) );
+                    }
+                }
+            }
+        }
+        assertEquals( 2, orders );
+        assertEquals( 3, ids );
+        assertEquals( XmlPullParser.END_DOCUMENT, batch.getType( batch.size() - 1 ) );
+    }
+
+    @Test
+    public void testBatchInFeedMode()
+        throws Exception
+    {
+        MXParser parser = newParser( null, true );
+        parser.setFeedInput( "UTF-8" );
+        byte[] bytes = XML.getBytes( "UTF-8" );
+        EventBatch batch = new EventBatch( 4 );
+        List<String> events = new ArrayList<String>();
+        for ( int i = 0; i < bytes.length; i += 7 )
+        {
+            parser.feed( bytes, i, Math.min( 7, bytes.length - i ) );
+            while ( parser.nextBatch( batch ) > 0 )
+            {
+                for ( int e = 0; e < batch.size(); e++ )
+                {
+                    events.add( describe( batch, e ) );
+                }
+            }
+        }
+        parser.endOfInput();
+        while ( parser.nextBatch( batch ) > 0 )
+        {
+            for ( int e = 0; e < batch.size(); e++ )
+            {
+                events.add( describe( batch, e ) );
+            }
+        }
+        assertEquals( "END_DOCUMENT 0", events.get( events.size() - 1 ) );
+        assertEquals( "START_TAG 1 {urn:orders}orders", events.get( 0 ) );
+        assertEquals( "TEXT 3 'a & b <c> \nend'", events.get( 7 ) );
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static io.github.xstream.mxparser.ParserEvents.DETAILS;
+import static io.github.xstream.mxparser.ParserEvents.events;
+import static io.github.xstream.mxparser.ParserEvents.newParser;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import org.junit.Test;
+
+public class EventCacheTest
+{
+    @Test
+    public void testCachedParser()
+        throws Exception
+    {
+        byte[] content = EventRecordingTest.XML.getBytes( "UTF-8" );
+        Object expected = events( newParser( EventRecordingTest.XML, true ), false, DETAILS );
+
+        EventCache cache = new EventCache( 1024 * 1024, true );
+        assertEquals( expected, events( cache.getParser( content, "UTF-8" ), false, DETAILS ) );
+        XmlPullParser parser = cache.getParser( new ByteArrayInputStream( content ), "UTF-8" );
+        assertEquals( expected, events( parser, false, DETAILS ) );
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 1, cache.getCount() );
+        assertSame( cache.getRecording( content, "UTF-8" ), cache.getRecording( content.clone(), "UTF-8" ) );
+
+        cache.getParser( content, null );
+        assertEquals( 2, cache.getCount() );
+        cache.clear();
+        assertEquals( 0, cache.getCount() );
+        assertEquals( 0, cache.getSize() );
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed()
+        throws Exception
+    {
+        byte[][] documents = new byte[4][];
+        for ( int i = 0; i < documents.length; i++ )
+        {
+            documents[i] = ( "<doc n='" + i + "'>text of document " + i + "</doc>" ).getBytes( "UTF-8" );
+        }
+        long size = new EventCache( Long.MAX_VALUE, false ).getRecording( documents[0], "UTF-8" ).getSize();
+        EventCache cache = new EventCache( 3 * size, false );
+        cache.getParser( documents[0], "UTF-8" );
+        cache.getParser( documents[1], "UTF-8" );
+        cache.getParser( documents[2], "UTF-8" );
+        assertEquals( 3, cache.getCount() );
+        // touch the first, so that the second is the least recently used
+        cache.getParser( documents[0], "UTF-8" );
+        cache.getParser( documents[3], "UTF-8" );
+        assertEquals( 3, cache.getCount() );
+        assertTrue( cache.getSize() <= 3 * size );
+        long misses = cache.getMisses();
+        cache.getParser( documents[0], "UTF-8" );
+        assertEquals( misses, cache.getMisses() );
+        cache.getParser( documents[1], "UTF-8" );
+        assertEquals( misses + 1, cache.getMisses() );
+
+        EventCache tiny = new EventCache( 1, false );
+        XmlPullParser parser = tiny.getParser( documents[0], "UTF-8" );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( "0", parser.getAttributeValue( null, "n" ) );
+        assertEquals( 0, tiny.getCount() );
+    }
+}
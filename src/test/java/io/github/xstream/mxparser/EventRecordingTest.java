@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static io.github.xstream.mxparser.ParserEvents.DETAILS;
+import static io.github.xstream.mxparser.ParserEvents.events;
+import static io.github.xstream.mxparser.ParserEvents.newParser;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import org.junit.Test;
+
+public class EventRecordingTest
+{
+    static final String XML = "<?xml version='1.0'?>\n"
+        + "<orders xmlns='urn:orders' xmlns:a='urn:address'>\n"
+        + "  <order id='1' a:zip='8000'><a:city>Zürich</a:city><note>a &amp; b<![CDATA[ <c> ]]></note></order>\n"
+        + "  <order id='2' xmlns:a='urn:other'><a:city>Köln</a:city><empty/></order>\n"
+        + "</orders>";
+
+    @Test
+    public void testReplay()
+        throws Exception
+    {
+        for ( int i = 0; i < 2; i++ )
+        {
+            boolean processNamespaces = i == 0;
+            List<String> expected = events( newParser( XML, processNamespaces ), false, DETAILS );
+            EventRecording recording = EventRecording.record( newParser( XML, processNamespaces ) );
+            assertEquals( expected, events( recording.newParser(), false, DETAILS ) );
+            assertEquals( expected, events( recording.newParser(), false, DETAILS ) );
+            XmlPullParser replay = recording.newParser();
+            assertEquals( processNamespaces, replay.getFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES ) );
+        }
+    }
+
+    @Test
+    public void testReplayNamespacesDefinedAtDepthZero()
+        throws Exception
+    {
+        String xml = "<a:root xmlns='urn:default'><a:child b:attr='1'/></a:root>";
+        MXParser parser = newParser( xml, true );
+        parser.defineNamespace( "a", "urn:a" );
+        parser.defineNamespace( "b", "urn:b" );
+        List<String> expected = events( parser, false, DETAILS );
+        parser = newParser( xml, true );
+        parser.defineNamespace( "a", "urn:a" );
+        parser.defineNamespace( "b", "urn:b" );
+        EventRecording recording = EventRecording.record( parser );
+        assertEquals( expected, events( recording.newParser(), false, DETAILS ) );
+
+        XmlPullParser replay = recording.newParser();
+        assertEquals( 2, replay.getNamespaceCount( 0 ) );
+        assertEquals( "a", replay.getNamespacePrefix( 0 ) );
+        assertEquals( "urn:b", replay.getNamespaceUri( 1 ) );
+        assertEquals( "urn:a", replay.getNamespace( "a" ) );
+        assertEquals( XmlPullParser.START_TAG, replay.next() );
+        assertEquals( "urn:a", replay.getNamespace() );
+        assertEquals( 2, replay.getNamespaceCount( 0 ) );
+        assertEquals( 3, replay.getNamespaceCount( 1 ) );
+    }
+
+    @Test
+    public void testReplayParserMethods()
+        throws Exception
+    {
+        XmlPullParser parser = EventRecording.record( newParser( XML, true ) ).newParser();
+        assertEquals( XmlPullParser.START_DOCUMENT, parser.getEventType() );
+        assertEquals( XmlPullParser.START_TAG, parser.nextTag() );
+        parser.require( XmlPullParser.START_TAG, "urn:orders", "orders" );
+        assertEquals( XmlPullParser.START_TAG, parser.nextTag() );
+        assertEquals( "8000", parser.getAttributeValue( "urn:address", "zip" ) );
+        assertEquals( "1", parser.getAttributeValue( null, "id" ) );
+        assertNull( parser.getAttributeValue( "urn:address", "id" ) );
+        assertEquals( "CDATA", parser.getAttributeType( 0 ) );
+        assertFalse( parser.isAttributeDefault( 0 ) );
+        assertEquals( XmlPullParser.START_TAG, parser.nextTag() );
+        assertEquals( "Zürich", parser.nextText() );
+        assertEquals( XmlPullParser.START_TAG, parser.nextTag() );
+        int[] holder = new int[2];
+        parser.next();
+        char[] chars = parser.getTextCharacters( holder );
+        assertEquals( "a & b <c> ", new String( chars, holder[0], holder[1] ) );
+        assertEquals( -1, parser.getLineNumber() );
+        try
+        {
+            parser.require( XmlPullParser.END_TAG, null, "order" );
+            fail( "Should fail since parser is on text" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertTrue( e.getMessage().startsWith( "expected event END_TAG with name 'order' but got TEXT" ) );
+        }
+        try
+        {
+            parser.setInput( new StringReader( XML ) );
+            fail( "Should fail since input of replay can not be changed" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertEquals( "input of a replayed recording can not be changed", e.getMessage() );
+        }
+        while ( parser.next() != XmlPullParser.END_DOCUMENT )
+        {
+        }
+        try
+        {
+            parser.next();
+            fail( "Should fail since end of document is reached" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertTrue( e.getMessage().startsWith( "already reached end of XML input" ) );
+        }
+    }
+
+    @Test
+    public void testWriteAndRead()
+        throws Exception
+    {
+        MXParser parser = new MXParser();
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        parser.setInput( new ByteArrayInputStream( XML.getBytes( "UTF-8" ) ), "UTF-8" );
+        EventRecording recording = EventRecording.record( parser );
+        assertTrue( recording.getSize() > 0 );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recording.writeTo( new DataOutputStream( out ) );
+        EventRecording read = EventRecording.readFrom( new DataInputStream( new ByteArrayInputStream( out.toByteArray() ) ) );
+        assertEquals( "UTF-8", read.newParser().getInputEncoding() );
+        assertEquals( events( recording.newParser(), false, DETAILS ), events( read.newParser(), false, DETAILS ) );
+
+        try
+        {
+            EventRecording.readFrom( new DataInputStream( new ByteArrayInputStream( new byte[] { 1, 2, 3, 4 } ) ) );
+            fail( "Should fail since input is no recording" );
+        }
+        catch ( IOException e )
+        {
+            assertEquals( "not an event recording", e.getMessage() );
+        }
+    }
+}
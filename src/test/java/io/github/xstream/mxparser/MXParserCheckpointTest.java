@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static io.github.xstream.mxparser.ParserEvents.DETAILS;
+import static io.github.xstream.mxparser.ParserEvents.LOCATION;
+import static io.github.xstream.mxparser.ParserEvents.events;
+import static io.github.xstream.mxparser.ParserEvents.newParser;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.List;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import org.junit.Test;
+
+public class MXParserCheckpointTest
+{
+    private static final MXParserConfig SMALL_BUFFER =
+        MXParserConfig.DEFAULT.withReadChunkSize( 16 ).withInitialBufferSize( 16 );
+
+    private static final String XML = "<?xml version='1.0' encoding='UTF-8'?>\n"
+        + "<!-- orders -->\n"
+        + "<orders xmlns='urn:orders' xmlns:a='urn:address'>\n"
+        + "  <order id='1'><a:city>Zürich</a:city><note>a &amp; b<![CDATA[ <c> ]]></note></order>\n"
+        + "  <order id='2' xmlns:a='urn:other'><a:city>Köln</a:city><empty/></order>\n"
+        + "</orders>\n"
+        + "<?pi done?>";
+
+    private static MXParserCheckpoint roundTrip( MXParserCheckpoint checkpoint )
+        throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        checkpoint.writeTo( new DataOutputStream( out ) );
+        return MXParserCheckpoint.readFrom( new DataInputStream( new ByteArrayInputStream( out.toByteArray() ) ) );
+    }
+
+    private void assertResumeAtEveryEvent( boolean tokenize )
+        throws Exception
+    {
+        byte[] bytes = XML.getBytes( "UTF-8" );
+        MXParser reference = newParser( SMALL_BUFFER, null, true );
+        reference.setInput( new ByteArrayInputStream( bytes ), "UTF-8" );
+        List<String> events = events( reference, tokenize, LOCATION | DETAILS );
+
+        MXParser parser = newParser( SMALL_BUFFER, null, true );
+        parser.setInput( new ByteArrayInputStream( bytes ), "UTF-8" );
+        for ( int i = 0; i < events.size() - 1; i++ )
+        {
+            if ( tokenize )
+            {
+                parser.nextToken();
+            }
+            else
+            {
+                parser.next();
+            }
+            MXParserCheckpoint checkpoint = roundTrip( parser.checkpoint() );
+            assertEquals( parser.getEventType(), checkpoint.getEventType() );
+            assertEquals( parser.getDepth(), checkpoint.getDepth() );
+
+            InputStream in = new ByteArrayInputStream( bytes );
+            assertEquals( checkpoint.getByteOffset(), in.skip( checkpoint.getByteOffset() ) );
+            MXParser resumed = newParser( SMALL_BUFFER, null, true );
+            resumed.resume( checkpoint, in );
+            assertEquals( parser.getDepth(), resumed.getDepth() );
+            List<String> remaining = events( resumed, tokenize, LOCATION | DETAILS );
+            assertEquals( "event " + i, events.subList( i + 1, events.size() ), remaining );
+        }
+    }
+
+    @Test
+    public void testResumeAfterEveryEvent()
+        throws Exception
+    {
+        assertResumeAtEveryEvent( false );
+    }
+
+    @Test
+    public void testResumeAfterEveryToken()
+        throws Exception
+    {
+        assertResumeAtEveryEvent( true );
+    }
+
+    @Test
+    public void testResumeWithReader()
+        throws Exception
+    {
+        MXParser parser = newParser( SMALL_BUFFER, null, true );
+        parser.setInput( new StringReader( XML ) );
+        parser.nextTag();
+        parser.nextTag();
+        assertEquals( "order", parser.getName() );
+        MXParserCheckpoint checkpoint = parser.checkpoint();
+        assertEquals( -1, checkpoint.getByteOffset() );
+        List<String> events = events( parser, false, LOCATION | DETAILS );
+
+        MXParser resumed = newParser( SMALL_BUFFER, null, true );
+        resumed.resume( checkpoint, new StringReader( XML.substring( (int)checkpoint.getOffset() ) ) );
+        assertEquals( "order", resumed.getName() );
+        assertEquals( "urn:orders", resumed.getNamespace() );
+        assertEquals( events, events( resumed, false, LOCATION | DETAILS ) );
+
+        try
+        {
+            newParser( SMALL_BUFFER, null, true ).resume( checkpoint, new ByteArrayInputStream( new byte[0] ) );
+            fail( "Should fail since checkpoint has no byte offset" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertTrue( e.getMessage().startsWith( "checkpoint has no byte offset" ) );
+        }
+    }
+
+    @Test
+    public void testMismatchedEndTagAfterResume()
+        throws Exception
+    {
+        String xml = "<root><a>text</b></root>";
+        MXParser parser = newParser( SMALL_BUFFER, null, true );
+        parser.setInput( new StringReader( xml ) );
+        parser.next();
+        parser.next();
+        MXParserCheckpoint checkpoint = roundTrip( parser.checkpoint() );
+        MXParser resumed = newParser( SMALL_BUFFER, null, true );
+        resumed.resume( checkpoint, new StringReader( xml.substring( (int)checkpoint.getOffset() ) ) );
+        assertEquals( XmlPullParser.TEXT, resumed.next() );
+        try
+        {
+            resumed.next();
+            fail( "Should fail since end tag does not match" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertTrue( e.getMessage().contains( "start tag <a> from line 1 (position: TEXT seen ...text</b>... @1:18)" ) );
+        }
+    }
+}
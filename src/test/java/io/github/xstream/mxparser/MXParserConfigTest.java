@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParser;
+
+public class MXParserConfigTest
+{
+    @Test
+    public void testDefaults()
+    {
+        MXParserConfig config = MXParserConfig.DEFAULT;
+        assertEquals( 8 * 1024, config.getReadChunkSize() );
+        assertEquals( 1024, config.getInitialBufferSize() );
+        assertEquals( Integer.MAX_VALUE, config.getMaxBufferSize() );
+        assertEquals( 95, config.getBufferLoadFactor() );
+        assertEquals( 0, config.getExpectedDepth() );
+        assertEquals( 0, config.getExpectedAttributes() );
+        assertEquals( 0, config.getExpectedNamespaces() );
+        assertEquals( 2.0f, config.getGrowthFactor(), 0.0f );
+    }
+
+    @Test
+    public void testWithCreatesNewInstance()
+    {
+        MXParserConfig config = MXParserConfig.DEFAULT.withExpectedDepth( 20 );
+        assertNotSame( MXParserConfig.DEFAULT, config );
+        assertEquals( 0, MXParserConfig.DEFAULT.getExpectedDepth() );
+        assertEquals( 20, config.getExpectedDepth() );
+    }
+
+    @Test
+    public void testGrow()
+    {
+        MXParserConfig config = MXParserConfig.DEFAULT.withGrowthFactor( 1.5f );
+        assertEquals( 15, config.grow( 10, 0 ) );
+        assertEquals( 2, config.grow( 1, 0 ) );
+        assertEquals( 32, config.grow( 10, 32 ) );
+        assertEquals( Integer.MAX_VALUE, config.grow( Integer.MAX_VALUE - 1, 0 ) );
+    }
+
+    @Test
+    public void testMaxBufferSizeLimitsInitialBufferSize()
+        throws Exception
+    {
+        MXParserConfig config = MXParserConfig.DEFAULT.withMaxBufferSize( 512 );
+        assertEquals( 512, config.getMaxBufferSize() );
+        assertEquals( 512, config.getInitialBufferSize() );
+        assertEquals( 1024, config.withMaxBufferSize( 4096 ).getInitialBufferSize() );
+        assertEquals( 256, config.withInitialBufferSize( 256 ).getInitialBufferSize() );
+
+        MXParser parser = new MXParser( config );
+        parser.setInput( new StringReader( "<root>text</root>" ) );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( "text", parser.getText() );
+    }
+
+    @Test
+    public void testInvalidValues()
+    {
+        try
+        {
+            MXParserConfig.DEFAULT.withGrowthFactor( 1.0f );
+            fail( "Thrown " + IllegalArgumentException.class.getName() + " expected" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // OK
+        }
+        try
+        {
+            MXParserConfig.DEFAULT.withMaxBufferSize( 0 );
+            fail( "Thrown " + IllegalArgumentException.class.getName() + " expected" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // OK
+        }
+        try
+        {
+            MXParserConfig.DEFAULT.withBufferLoadFactor( 0 );
+            fail( "Thrown " + IllegalArgumentException.class.getName() + " expected" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // OK
+        }
+    }
+}
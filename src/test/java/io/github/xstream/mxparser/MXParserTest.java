@@ -17,11 +17,23 @@ package io.github.xstream.mxparser;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static io.github.xstream.mxparser.ParserEvents.LOCATION;
+import static io.github.xstream.mxparser.ParserEvents.describe;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -763,6 +775,1303 @@ public class MXParserTest
         }
     }
 
+    @Test
+    public void testSetInputWithExpectedLength()
+        throws Exception
+    {
+        String input = "<root a=\"1\">text &amp; more\r\n</root>";
+
+        MXParser parser = new MXParser();
+        parser.setInput( new StringReader( input ), input.length() );
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( "1", parser.getAttributeValue( null, "a" ) );
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( "text & more\n", parser.getText() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+    }
+
+    @Test
+    public void testSmallInitialBufferGrowsForLargeInput()
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append( "<root>" );
+        for ( int i = 0; i < 2000; i++ )
+        {
+            sb.append( "<item id=\"" ).append( i ).append( "\">value " ).append( i ).append( "</item>" );
+        }
+        sb.append( "</root>" );
+
+        MXParser parser = new MXParser();
+        parser.setInput( new StringReader( sb.toString() ), 10 );
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        for ( int i = 0; i < 2000; i++ )
+        {
+            assertEquals( XmlPullParser.START_TAG, parser.next() );
+            assertEquals( String.valueOf( i ), parser.getAttributeValue( 0 ) );
+            assertEquals( XmlPullParser.TEXT, parser.next() );
+            assertEquals( "value " + i, parser.getText() );
+            assertEquals( XmlPullParser.END_TAG, parser.next() );
+        }
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+    }
+
+    @Test
+    public void testConfiguredParser()
+        throws Exception
+    {
+        MXParserConfig config = MXParserConfig.DEFAULT.withReadChunkSize( 16 ).withInitialBufferSize( 32 )
+            .withExpectedDepth( 3 ).withExpectedAttributes( 2 ).withGrowthFactor( 1.5f );
+        String input = "<a><b x=\"1\" y=\"2\"><c>text</c></b></a>";
+
+        MXParser parser = new MXParser( config );
+        assertSame( config, parser.getConfig() );
+        parser.setInput( new StringReader( input ) );
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( 2, parser.getAttributeCount() );
+        assertEquals( "2", parser.getAttributeValue( null, "y" ) );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( 3, parser.getDepth() );
+        assertEquals( "text", parser.nextText() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+    }
+
+    @Test
+    public void testMaximumBufferSizeExceeded()
+        throws Exception
+    {
+        MXParserConfig config = MXParserConfig.DEFAULT.withInitialBufferSize( 64 ).withMaxBufferSize( 128 );
+        StringBuffer sb = new StringBuffer( "<root>" );
+        for ( int i = 0; i < 100; i++ )
+        {
+            sb.append( "<i>small</i>" );
+        }
+        sb.append( "<text>" );
+        for ( int i = 0; i < 100; i++ )
+        {
+            sb.append( "way too long" );
+        }
+        sb.append( "</text></root>" );
+
+        MXParser parser = new MXParser( config );
+        parser.setInput( new StringReader( sb.toString() ) );
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        for ( int i = 0; i < 100; i++ )
+        {
+            assertEquals( XmlPullParser.START_TAG, parser.next() );
+            assertEquals( "small", parser.nextText() );
+        }
+        try
+        {
+            while ( parser.next() != XmlPullParser.END_DOCUMENT )
+            {
+            }
+            fail( "Should fail since text exceeds maximum buffer size" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertTrue( e.getMessage().contains( "maximum size of 128 characters" ) );
+        }
+    }
+
+    @Test
+    public void testSkippedPrologIsReleasedFromBuffer()
+        throws Exception
+    {
+        MXParserConfig config = MXParserConfig.DEFAULT.withInitialBufferSize( 64 ).withMaxBufferSize( 256 );
+        StringBuffer sb = new StringBuffer( "<?xml version=\"1.0\"?>" );
+        for ( int j = 0; j < 10; j++ )
+        {
+            sb.append( "<!-- " );
+            for ( int i = 0; i < 10; i++ )
+            {
+                sb.append( "ten bytes " );
+            }
+            sb.append( " -->\n<?pi data?>" );
+        }
+        sb.append( "<root><!-- a comment that is skipped -->text</root>" );
+
+        MXParser parser = new MXParser( config );
+        parser.setInput( new StringReader( sb.toString() ) );
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( "text", parser.getText() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+    }
+
+    @Test
+    public void testReservedProcessingInstructionAfterCompaction()
+        throws Exception
+    {
+        MXParserConfig config = MXParserConfig.DEFAULT.withReadChunkSize( 64 ).withInitialBufferSize( 64 );
+        StringBuffer sb = new StringBuffer();
+        for ( int i = 0; i < 20; i++ )
+        {
+            sb.append( "<!-- comment -->" );
+        }
+        sb.append( "<?xml version=\"1.0\"?><root/>" );
+
+        MXParser parser = new MXParser( config );
+        parser.setInput( new StringReader( sb.toString() ) );
+
+        try
+        {
+            parser.next();
+            fail( "Should fail since <?xml is not at the beginning of the input" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertTrue( e.getMessage().contains( "reserved xml name" ) );
+        }
+    }
+
+    @Test
+    public void testManyLongEvents()
+        throws Exception
+    {
+        StringBuffer text = new StringBuffer();
+        for ( int i = 0; i < 300; i++ )
+        {
+            text.append( "0123456789" );
+        }
+        StringBuffer sb = new StringBuffer( "<root>" );
+        for ( int i = 0; i < 100; i++ )
+        {
+            sb.append( "<e>" ).append( text ).append( "</e>" );
+        }
+        sb.append( "</root>" );
+
+        MXParser parser = new MXParser();
+        parser.setInput( new StringReader( sb.toString() ) );
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        for ( int i = 0; i < 100; i++ )
+        {
+            assertEquals( XmlPullParser.START_TAG, parser.next() );
+            assertEquals( text.toString(), parser.nextText() );
+        }
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+    }
+
+    @Test
+    public void testFeedInputInSingleBytes()
+        throws Exception
+    {
+        String input = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<!DOCTYPE root>\n"
+            + "<!-- prolog -->\n"
+            + "<root xmlns=\"urn:a\" xmlns:b=\"urn:b\" attr=\"v&amp;w\">\n"
+            + "  <b:child b:id=\"1\">text &lt; ä€😀<![CDATA[ <cdata> ]]></b:child>\n"
+            + "  <?pi data?><empty/>&#x41;\n"
+            + "</root>\n"
+            + "<!-- epilog -->";
+        byte[] bytes = input.getBytes( "UTF-8" );
+
+        MXParser expected = new MXParser();
+        expected.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        expected.setInput( new StringReader( input ) );
+        StringBuffer expectedEvents = new StringBuffer();
+        int eventType;
+        do
+        {
+            eventType = expected.nextToken();
+            expectedEvents.append( describe( expected, LOCATION ) ).append( '\n' );
+        }
+        while ( eventType != XmlPullParser.END_DOCUMENT );
+
+        MXParser parser = new MXParser( MXParserConfig.DEFAULT.withReadChunkSize( 16 ).withInitialBufferSize( 16 ) );
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        parser.setFeedInput( "UTF-8" );
+        StringBuffer events = new StringBuffer();
+        int incompletes = 0;
+        int i = 0;
+        while ( true )
+        {
+            eventType = parser.nextToken();
+            if ( eventType == MXParser.EVENT_INCOMPLETE )
+            {
+                assertEquals( MXParser.EVENT_INCOMPLETE, parser.getEventType() );
+                ++incompletes;
+                if ( i < bytes.length )
+                {
+                    parser.feed( bytes, i++, 1 );
+                }
+                else
+                {
+                    parser.endOfInput();
+                }
+                continue;
+            }
+            events.append( describe( parser, LOCATION ) ).append( '\n' );
+            if ( eventType == XmlPullParser.END_DOCUMENT )
+            {
+                break;
+            }
+        }
+
+        assertEquals( expectedEvents.toString(), events.toString() );
+        assertTrue( incompletes > bytes.length );
+    }
+
+    @Test
+    public void testFeedInputInChunks()
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer( "<root>" );
+        for ( int i = 0; i < 200; i++ )
+        {
+            sb.append( "<item id=\"" ).append( i ).append( "\">value " ).append( i ).append( "</item>" );
+        }
+        sb.append( "</root>" );
+        byte[] bytes = sb.toString().getBytes( "ISO-8859-1" );
+
+        MXParser parser = new MXParser();
+        parser.setFeedInput( "ISO-8859-1" );
+        assertEquals( "ISO-8859-1", parser.getInputEncoding() );
+        int items = 0;
+        int off = 0;
+        int eventType;
+        while ( ( eventType = parser.next() ) != XmlPullParser.END_DOCUMENT )
+        {
+            if ( eventType == MXParser.EVENT_INCOMPLETE )
+            {
+                if ( off < bytes.length )
+                {
+                    int len = Math.min( 37, bytes.length - off );
+                    parser.feed( ByteBuffer.wrap( bytes, off, len ) );
+                    off += len;
+                }
+                else
+                {
+                    parser.endOfInput();
+                }
+            }
+            else if ( eventType == XmlPullParser.START_TAG && "item".equals( parser.getName() ) )
+            {
+                assertEquals( String.valueOf( items ), parser.getAttributeValue( null, "id" ) );
+                ++items;
+            }
+            else if ( eventType == XmlPullParser.TEXT )
+            {
+                assertEquals( "value " + ( items - 1 ), parser.getText() );
+            }
+        }
+        assertEquals( 200, items );
+    }
+
+    @Test
+    public void testFeedInputIncompleteAtEndOfInput()
+        throws Exception
+    {
+        MXParser parser = new MXParser();
+        parser.setFeedInput( null );
+        parser.feed( "<root><a>".getBytes( "UTF-8" ), 0, 9 );
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( MXParser.EVENT_INCOMPLETE, parser.next() );
+        assertEquals( 2, parser.getDepth() );
+
+        parser.endOfInput();
+        try
+        {
+            parser.next();
+            fail( "Should fail since root element is not closed" );
+        }
+        catch ( EOFException e )
+        {
+            assertTrue( e.getMessage().contains( "expected end tags </a></root>" ) );
+        }
+    }
+
+    @Test
+    public void testFeedWithoutFeedInput()
+        throws Exception
+    {
+        MXParser parser = new MXParser();
+        parser.setInput( new StringReader( "<root/>" ) );
+        try
+        {
+            parser.feed( new byte[1], 0, 1 );
+            fail( "Should fail since parser has no feed input" );
+        }
+        catch ( IllegalStateException e )
+        {
+            // OK
+        }
+    }
+
+    @Test
+    public void testMultipleDocuments()
+        throws Exception
+    {
+        String input = "<?xml version=\"1.0\"?><a>1</a><!-- end -->\n"
+            + "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<b/>\n"
+            + "<c x=\"y\">3</c>";
+
+        MXParser parser = new MXParser();
+        parser.setFeature( MXParser.FEATURE_MULTI_DOCUMENT, true );
+        assertTrue( parser.getFeature( MXParser.FEATURE_MULTI_DOCUMENT ) );
+        parser.setInput( new StringReader( input ) );
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( "a", parser.getName() );
+        assertEquals( "1.0", parser.getProperty( "http://xmlpull.org/v1/doc/properties.html#xmldecl-version" ) );
+        assertEquals( "1", parser.nextText() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+
+        assertEquals( XmlPullParser.START_DOCUMENT, parser.next() );
+        assertEquals( null, parser.getProperty( "http://xmlpull.org/v1/doc/properties.html#xmldecl-version" ) );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( "b", parser.getName() );
+        assertEquals( "1.0", parser.getProperty( "http://xmlpull.org/v1/doc/properties.html#xmldecl-version" ) );
+        assertPosition( 3, 5, parser );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+
+        assertEquals( XmlPullParser.START_DOCUMENT, parser.next() );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( "c", parser.getName() );
+        assertEquals( "y", parser.getAttributeValue( 0 ) );
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+    }
+
+    @Test
+    public void testMultipleDocumentsTokenized()
+        throws Exception
+    {
+        MXParser parser = new MXParser();
+        parser.setFeature( MXParser.FEATURE_MULTI_DOCUMENT, true );
+        parser.setInput( new StringReader( "<a/> <!--c--><b/>" ) );
+
+        assertEquals( XmlPullParser.START_TAG, parser.nextToken() );
+        assertEquals( XmlPullParser.END_TAG, parser.nextToken() );
+        assertEquals( XmlPullParser.IGNORABLE_WHITESPACE, parser.nextToken() );
+        assertEquals( XmlPullParser.COMMENT, parser.nextToken() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.nextToken() );
+        assertEquals( XmlPullParser.START_DOCUMENT, parser.nextToken() );
+        assertEquals( XmlPullParser.START_TAG, parser.nextToken() );
+        assertEquals( "b", parser.getName() );
+        assertPosition( 1, 18, parser );
+        assertEquals( XmlPullParser.END_TAG, parser.nextToken() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.nextToken() );
+    }
+
+    @Test
+    public void testMultipleFragmentsWithSmallBuffer()
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer();
+        for ( int i = 0; i < 100; i++ )
+        {
+            sb.append( "<?xml version=\"1.0\"?>\n<record id=\"" ).append( i ).append( "\"/>\n" );
+        }
+
+        MXParser parser = new MXParser( MXParserConfig.DEFAULT.withReadChunkSize( 64 ).withInitialBufferSize( 64 ) );
+        parser.setFeature( MXParser.FEATURE_MULTI_DOCUMENT, true );
+        parser.setInput( new StringReader( sb.toString() ) );
+        int documents = 0;
+        do
+        {
+            assertEquals( XmlPullParser.START_TAG, parser.nextTag() );
+            assertEquals( String.valueOf( documents++ ), parser.getAttributeValue( null, "id" ) );
+            assertEquals( XmlPullParser.END_TAG, parser.nextTag() );
+            assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+        }
+        while ( parser.next() == XmlPullParser.START_DOCUMENT );
+        assertEquals( 100, documents );
+    }
+
+    @Test
+    public void testSecondRootFailsWithoutMultipleDocuments()
+        throws Exception
+    {
+        MXParser parser = new MXParser();
+        parser.setInput( new StringReader( "<a/><b/>" ) );
+        parser.next();
+        parser.next();
+        try
+        {
+            parser.next();
+            fail( "Should fail since a second root element is not allowed" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertTrue( e.getMessage().contains( "start tag not allowed in epilog" ) );
+        }
+    }
+
+    @Test
+    public void testFollowGrowingInput()
+        throws Exception
+    {
+        GrowingReader reader = new GrowingReader();
+        reader.append( "<?xml version=\"1.0\"?>\n<log>\n<entry>fir" );
+
+        MXParser parser = new MXParser();
+        parser.setFeature( MXParser.FEATURE_FOLLOW, true );
+        assertTrue( parser.getFeature( MXParser.FEATURE_FOLLOW ) );
+        parser.setInput( reader );
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( "log", parser.getName() );
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( MXParser.EVENT_INCOMPLETE, parser.next() );
+        assertEquals( MXParser.EVENT_INCOMPLETE, parser.getEventType() );
+
+        reader.append( "st</entry>\n<en" );
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( "first", parser.getText() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( MXParser.EVENT_INCOMPLETE, parser.next() );
+
+        reader.append( "try>second</entry>\n</log>" );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertPosition( 4, 8, parser );
+        assertEquals( "second", parser.nextText() );
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+    }
+
+    @Test
+    public void testFollowWithPollInterval()
+        throws Exception
+    {
+        final GrowingReader reader = new GrowingReader();
+        reader.append( "<log><entry>1</entry>" );
+
+        MXParser parser = new MXParser();
+        parser.setFeature( MXParser.FEATURE_FOLLOW, true );
+        parser.setProperty( MXParser.PROPERTY_FOLLOW_POLL_INTERVAL, new Integer( 5 ) );
+        assertEquals( new Long( 5 ), parser.getProperty( MXParser.PROPERTY_FOLLOW_POLL_INTERVAL ) );
+        parser.setInput( reader );
+
+        Thread writer = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep( 50 );
+                    reader.append( "<entry>2</entry></log>" );
+                }
+                catch ( InterruptedException e )
+                {
+                    // ignore
+                }
+            }
+        };
+        writer.start();
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( "1", parser.nextText() );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( "2", parser.nextText() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+        writer.join();
+    }
+
+    @Test
+    public void testFollowInterrupted()
+        throws Exception
+    {
+        GrowingReader reader = new GrowingReader();
+        reader.append( "<log><entry>1</en" );
+
+        MXParser parser = new MXParser();
+        parser.setFeature( MXParser.FEATURE_FOLLOW, true );
+        parser.setProperty( MXParser.PROPERTY_FOLLOW_POLL_INTERVAL, new Long( 1000 ) );
+        parser.setInput( reader );
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        Thread.currentThread().interrupt();
+        try
+        {
+            parser.next();
+            fail( "Should fail since thread is interrupted" );
+        }
+        catch ( InterruptedIOException e )
+        {
+            assertTrue( Thread.interrupted() );
+        }
+
+        reader.append( "try>" );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( "entry", parser.getName() );
+    }
+
+    private static class GrowingReader
+        extends Reader
+    {
+        private final StringBuffer content = new StringBuffer();
+        private int pos;
+
+        public synchronized void append( String data )
+        {
+            content.append( data );
+        }
+
+        public synchronized int read( char[] cbuf, int off, int len )
+        {
+            int n = Math.min( len, content.length() - pos );
+            if ( n == 0 )
+            {
+                return -1;
+            }
+            content.getChars( pos, pos + n, cbuf, off );
+            pos += n;
+            return n;
+        }
+
+        public void close()
+        {
+        }
+    }
+
+    @Test
+    public void testEventOffsets()
+        throws Exception
+    {
+        String input = "<?xml version=\"1.0\"?>\n<root a=\"ä\"><!-- € --><e>x😀y</e><e/>text</root>";
+
+        MXParser parser = new MXParser();
+        parser.setInput( new StringReader( input ) );
+        assertEquals( 0, parser.getEventStartOffset() );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( input.indexOf( "<root" ), parser.getEventStartOffset() );
+        assertEquals( input.indexOf( "<!--" ), parser.getEventEndOffset() );
+        assertEquals( -1, parser.getEventStartByteOffset() );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( input.indexOf( "<e>" ), parser.getEventStartOffset() );
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( input.indexOf( "x😀" ), parser.getEventStartOffset() );
+        assertEquals( input.indexOf( "</e>" ), parser.getEventEndOffset() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( input.indexOf( "</e>" ), parser.getEventStartOffset() );
+        assertEquals( input.indexOf( "<e/>" ), parser.getEventEndOffset() );
+    }
+
+    @Test
+    public void testEventByteOffsets()
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer( "﻿<root>" );
+        for ( int i = 0; i < 200; i++ )
+        {
+            sb.append( "<e n=\"" ).append( i ).append( "\">äöü € 😀 text</e><!-- ß -->\n" );
+        }
+        sb.append( "</root>" );
+        String input = sb.toString();
+
+        String[] encodings = { "UTF-8", "ISO-8859-15", "UTF-16LE", "UTF-16BE" };
+        for ( int i = 0; i < encodings.length; i++ )
+        {
+            String encoding = encodings[i];
+            String text = encoding.startsWith( "ISO" ) ? input.substring( 1 ).replaceAll( "[^\u0000-ÿ€]", "?" ) : input;
+            byte[] bytes = text.getBytes( encoding );
+
+            MXParser parser = new MXParser( MXParserConfig.DEFAULT.withReadChunkSize( 64 ).withInitialBufferSize( 64 ) );
+            parser.setInput( new ByteArrayInputStream( bytes ), encoding );
+            int eventType;
+            while ( ( eventType = parser.nextToken() ) != XmlPullParser.END_DOCUMENT )
+            {
+                if ( eventType == XmlPullParser.START_TAG || eventType == XmlPullParser.TEXT )
+                {
+                    int start = (int)parser.getEventStartOffset();
+                    int end = (int)parser.getEventEndOffset();
+                    assertEquals( encoding, text.substring( 0, start ).getBytes( encoding ).length,
+                                  parser.getEventStartByteOffset() );
+                    assertEquals( encoding, text.substring( 0, end ).getBytes( encoding ).length,
+                                  parser.getEventEndByteOffset() );
+                }
+            }
+            assertEquals( encoding, bytes.length, parser.getEventEndByteOffset() );
+        }
+    }
+
+    @Test
+    public void testDefineNamespace()
+        throws Exception
+    {
+        MXParser parser = new MXParser();
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        parser.setInput( new StringReader( "<a:root xmlns='urn:d'><a:child/></a:root>" ) );
+        parser.defineNamespace( new String( "a" ), "urn:a" );
+        parser.defineNamespace( null, "urn:default" );
+
+        assertEquals( 2, parser.getNamespaceCount( 0 ) );
+        assertSame( "a", parser.getNamespacePrefix( 0 ) );
+        assertSame( "urn:a", parser.getNamespaceUri( 0 ) );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( "urn:a", parser.getNamespace() );
+        assertEquals( 2, parser.getNamespaceCount( 0 ) );
+        assertEquals( 3, parser.getNamespaceCount( 1 ) );
+        assertEquals( "urn:d", parser.getNamespace( null ) );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( "urn:a", parser.getNamespace() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+        assertEquals( "urn:default", parser.getNamespace( null ) );
+        try
+        {
+            parser.defineNamespace( "b", "urn:b" );
+            fail( "Should fail since parsing has been started" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            // OK
+        }
+
+        parser.setInput( new StringReader( "<root/>" ) );
+        assertEquals( 0, parser.getNamespaceCount( 0 ) );
+    }
+
+    @Test
+    public void testInputBeyondIntegerRange()
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer( "<root xmlns:n=\"urn:n\">" );
+        for ( int i = 0; i < 100; i++ )
+        {
+            sb.append( "<n:e a=\"" ).append( i ).append( "\"><?pi x?><![CDATA[c" ).append( i ).append( "]]></n:e>" );
+        }
+        sb.append( "</root>" );
+        String input = sb.toString();
+        long offset = Integer.MAX_VALUE - 1000L;
+
+        MXParser parser = new MXParser( MXParserConfig.DEFAULT.withReadChunkSize( 64 ).withInitialBufferSize( 64 ) );
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        parser.setInput( new ByteArrayInputStream( input.getBytes( "UTF-8" ) ), "UTF-8" );
+        parser.setInputOffset( offset, 2 * offset );
+
+        assertEquals( XmlPullParser.START_TAG, parser.nextTag() );
+        for ( int i = 0; i < 100; i++ )
+        {
+            assertEquals( XmlPullParser.START_TAG, parser.nextTag() );
+            assertEquals( "e", parser.getName() );
+            assertEquals( "urn:n", parser.getNamespace() );
+            assertEquals( String.valueOf( i ), parser.getAttributeValue( 0 ) );
+            long start = offset + input.indexOf( "<n:e a=\"" + i + "\"" );
+            assertEquals( start, parser.getEventStartOffset() );
+            assertEquals( start + offset, parser.getEventStartByteOffset() );
+            assertEquals( XmlPullParser.PROCESSING_INSTRUCTION, parser.nextToken() );
+            assertEquals( "pi x", parser.getText() );
+            assertEquals( XmlPullParser.CDSECT, parser.nextToken() );
+            assertEquals( "c" + i, parser.getText() );
+            assertEquals( XmlPullParser.END_TAG, parser.nextToken() );
+        }
+        assertEquals( XmlPullParser.END_TAG, parser.nextTag() );
+        assertTrue( parser.getEventEndOffset() > Integer.MAX_VALUE );
+        assertEquals( offset + input.length(), parser.getEventEndOffset() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+    }
+
+    @Test
+    public void testMarkAndReset()
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer( "<?xml version='1.0'?>\n<root xmlns='urn:a'>" );
+        for ( int i = 0; i < 40; i++ )
+        {
+            sb.append( "\n  <item id='" ).append( i ).append( "' xmlns:p='urn:p" ).append( i ).append( "'>" );
+            sb.append( "<p:v>a &amp; b<!-- c -->" ).append( i ).append( "</p:v><empty/></item>" );
+        }
+        sb.append( "\n</root>" );
+        String xml = sb.toString();
+
+        MXParser reference = new MXParser();
+        reference.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        reference.setInput( new StringReader( xml ) );
+        List<String> events = new ArrayList<String>();
+        while ( true )
+        {
+            events.add( describe( reference, LOCATION ) );
+            if ( reference.getEventType() == XmlPullParser.END_DOCUMENT )
+            {
+                break;
+            }
+            reference.next();
+        }
+
+        MXParser parser = new MXParser( MXParserConfig.DEFAULT.withReadChunkSize( 16 ).withInitialBufferSize( 16 ) );
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        parser.setInput( new StringReader( xml ) );
+        for ( int i = 0; i < events.size(); i++ )
+        {
+            if ( i > 0 )
+            {
+                parser.next();
+            }
+            if ( i % 7 != 3 )
+            {
+                continue;
+            }
+            parser.mark();
+            int ahead = Math.min( 30, events.size() - i - 1 );
+            for ( int j = 0; j < ahead; j++ )
+            {
+                parser.next();
+            }
+            for ( int k = 0; k < 2; k++ )
+            {
+                parser.reset();
+                for ( int j = i; j <= i + ahead; j++ )
+                {
+                    assertEquals( "event " + i, events.get( j ), describe( parser, LOCATION ) );
+                    if ( j < i + ahead )
+                    {
+                        parser.next();
+                    }
+                }
+            }
+            parser.reset();
+            parser.clearMark();
+        }
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.getEventType() );
+
+        try
+        {
+            parser.reset();
+            fail( "Should fail without mark" );
+        }
+        catch ( IllegalStateException e )
+        {
+            assertEquals( "no mark set", e.getMessage() );
+        }
+    }
+
+    @Test
+    public void testPeekNextEvent()
+        throws Exception
+    {
+        MXParser parser = new MXParser();
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        parser.setInput( new StringReader( "<a xmlns='urn:a' class='x'><b xmlns:p='urn:p'/>text</a>" ) );
+        assertEquals( XmlPullParser.START_TAG, parser.peekNextEventType() );
+        assertEquals( "a", parser.peekName() );
+        assertEquals( XmlPullParser.START_DOCUMENT, parser.getEventType() );
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( "b", parser.peekName() );
+        assertEquals( "a", parser.getName() );
+        assertEquals( "x", parser.getAttributeValue( null, "class" ) );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( "urn:p", parser.getNamespace( "p" ) );
+        assertEquals( XmlPullParser.END_TAG, parser.peekNextEventType() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( "b", parser.getName() );
+        assertEquals( XmlPullParser.TEXT, parser.peekNextEventType() );
+        assertNull( parser.peekName() );
+        assertEquals( "b", parser.getName() );
+        assertEquals( "urn:p", parser.getNamespace( "p" ) );
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( "text", parser.getText() );
+        assertEquals( "a", parser.peekName() );
+        assertEquals( "text", parser.getText() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( "urn:a", parser.getNamespace() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.peekNextEventType() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, parser.peekNextEventType() );
+    }
+
+    @Test
+    public void testNextWithEventMask()
+        throws Exception
+    {
+        String xml = "<?xml version='1.0'?>\n<!DOCTYPE root>\n"
+            + "<root a='1'>\r\n  text &amp; &e; <!-- comment --> more<?pi x?>"
+            + "<![CDATA[cdata\r\n]]><child>&lt;</child>\r\n  <empty/>tail</root>\n<!-- end -->";
+        MXParser reference = new MXParser();
+        reference.setInput( new StringReader( xml ) );
+        reference.defineEntityReplacementText( "e", "entity" );
+        StringBuffer expectedTags = new StringBuffer();
+        StringBuffer expectedText = new StringBuffer();
+        int eventType;
+        while ( ( eventType = reference.next() ) != XmlPullParser.END_DOCUMENT )
+        {
+            StringBuffer expectedEvents = eventType == XmlPullParser.TEXT ? expectedText : expectedTags;
+            expectedEvents.append( describe( reference, LOCATION ) ).append( '\n' );
+        }
+
+        MXParser parser = new MXParser( MXParserConfig.DEFAULT.withReadChunkSize( 16 ).withInitialBufferSize( 16 ) );
+        parser.setInput( new StringReader( xml ) );
+        parser.defineEntityReplacementText( "e", "entity" );
+        StringBuffer tags = new StringBuffer();
+        int mask = 1 << XmlPullParser.START_TAG | 1 << XmlPullParser.END_TAG;
+        while ( parser.next( mask ) != XmlPullParser.END_DOCUMENT )
+        {
+            tags.append( describe( parser, LOCATION ) ).append( '\n' );
+        }
+        assertEquals( expectedTags.toString(), tags.toString() );
+
+        parser.setInput( new StringReader( xml ) );
+        parser.defineEntityReplacementText( "e", "entity" );
+        StringBuffer text = new StringBuffer();
+        while ( parser.next( 1 << XmlPullParser.TEXT ) != XmlPullParser.END_DOCUMENT )
+        {
+            text.append( describe( parser, LOCATION ) ).append( '\n' );
+        }
+        assertEquals( expectedText.toString(), text.toString() );
+
+        parser.setInput( new StringReader( "<root>a &undefined; b</root>" ) );
+        try
+        {
+            parser.next( mask );
+            parser.next( mask );
+            fail( "Should fail since entity is not defined" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertTrue( e.getMessage().startsWith( "could not resolve entity named 'undefined'" ) );
+        }
+    }
+
+    @Test
+    public void testWhitespaceText()
+        throws Exception
+    {
+        MXParser parser = new MXParser();
+        parser.setInput( new StringReader( "<root>\n    <a>  &#32;</a>\r\n    <b> <![CDATA[]]]> </b>\n\t\t<c>\n\t\t</c>"
+            + "<d>x </d><e> &amp;</e><f>\n  <!-- c -->\n</f>\n</root>" ) );
+        parser.next();
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertTrue( parser.isWhitespace() );
+        String indentation = parser.getText();
+        assertEquals( "\n    ", indentation );
+        parser.next();
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertTrue( parser.isWhitespace() );
+        assertEquals( "   ", parser.getText() );
+        parser.next();
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertTrue( parser.isWhitespace() );
+        assertSame( indentation, parser.getText() );
+        parser.next();
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( " ] ", parser.getText() );
+        assertEquals( false, parser.isWhitespace() );
+        parser.next();
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        String tabs = parser.getText();
+        assertEquals( "\n\t\t", tabs );
+        parser.next();
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertSame( tabs, parser.getText() );
+        parser.next();
+        parser.next();
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( false, parser.isWhitespace() );
+        parser.next();
+        parser.next();
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( false, parser.isWhitespace() );
+        parser.next();
+        parser.next();
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertTrue( parser.isWhitespace() );
+        assertEquals( "\n  \n", parser.getText() );
+        parser.next();
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( "\n", parser.getText() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+    }
+
+    @Test
+    public void testDeferredTextNormalization()
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer( "<root><a>" );
+        StringBuffer expected = new StringBuffer();
+        for ( int i = 0; i < 20; i++ )
+        {
+            sb.append( "line " ).append( i ).append( "\r\n&lt;x&gt;<!-- c\r\n -->\r<?pi?>" );
+            sb.append( "<![CDATA[cd\r\n]]>&#x41;" );
+            expected.append( "line " ).append( i ).append( "\n<x>\ncd\nA" );
+        }
+        sb.append( "</a><b>\r\n</b><c>]</c></root>" );
+
+        MXParser parser = new MXParser( MXParserConfig.DEFAULT.withReadChunkSize( 16 ).withInitialBufferSize( 16 ) );
+        parser.setInput( new StringReader( sb.toString() ) );
+        parser.nextTag();
+        parser.nextTag();
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        int[] holder = new int[2];
+        char[] chars = parser.getTextCharacters( holder );
+        assertEquals( expected.toString(), new String( chars, holder[0], holder[1] ) );
+        assertEquals( expected.toString(), parser.getText() );
+        parser.next();
+        parser.next();
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( "\n", parser.getText() );
+        parser.next();
+        parser.next();
+        // text that is never requested is not normalized
+        assertEquals( XmlPullParser.TEXT, parser.next() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( "c", parser.getName() );
+
+        parser.setInput( new StringReader( "<root><![CDATA[a\r\nb\rc]]>&amp;</root>" ) );
+        parser.nextToken();
+        assertEquals( XmlPullParser.CDSECT, parser.nextToken() );
+        assertEquals( "a\nb\nc", parser.getText() );
+        assertEquals( XmlPullParser.ENTITY_REF, parser.nextToken() );
+        assertEquals( "&", parser.getText() );
+    }
+
+    @Test
+    public void testMergedTextInBlocks()
+        throws Exception
+    {
+        StringBuffer value = new StringBuffer();
+        StringBuffer expected = new StringBuffer();
+        for ( int i = 0; i < 30; i++ )
+        {
+            value.append( "v" ).append( i ).append( "&amp;\r\n\tx" );
+            expected.append( "v" ).append( i ).append( "&  x" );
+        }
+        String xml = "<!DOCTYPE root [\r\n<!ENTITY x 'y'>\r\n]>\r\n<root a='" + value + "' b=\"&lt;\r\r\">"
+            + "<!-- one\r\ntwo\rthree --><?pi one\r\ntwo?></root>\r\n";
+        MXParser parser = new MXParser( MXParserConfig.DEFAULT.withReadChunkSize( 16 ).withInitialBufferSize( 16 ) );
+        parser.setInput( new StringReader( xml ) );
+        assertEquals( XmlPullParser.DOCDECL, parser.nextToken() );
+        assertEquals( " root [\n<!ENTITY x 'y'>\n]", parser.getText() );
+        assertEquals( XmlPullParser.IGNORABLE_WHITESPACE, parser.nextToken() );
+        assertEquals( "\n", parser.getText() );
+        assertEquals( XmlPullParser.START_TAG, parser.nextToken() );
+        assertEquals( expected.toString(), parser.getAttributeValue( null, "a" ) );
+        assertEquals( "<  ", parser.getAttributeValue( null, "b" ) );
+        assertEquals( XmlPullParser.COMMENT, parser.nextToken() );
+        assertEquals( " one\ntwo\nthree ", parser.getText() );
+        assertEquals( XmlPullParser.PROCESSING_INSTRUCTION, parser.nextToken() );
+        assertEquals( "pi one\ntwo", parser.getText() );
+        assertEquals( XmlPullParser.END_TAG, parser.nextToken() );
+        assertEquals( XmlPullParser.IGNORABLE_WHITESPACE, parser.nextToken() );
+        assertEquals( "\n", parser.getText() );
+    }
+
+    @Test
+    public void testEndTagMatchesRawName()
+        throws Exception
+    {
+        String xml = "<a:root xmlns:a='urn:a'><a:item><item/></a:item><b:x xmlns:b='urn:b'/></a:root>";
+        for ( int i = 0; i < 2; i++ )
+        {
+            MXParser parser = new MXParser();
+            parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, i == 0 );
+            parser.setInput( new StringReader( xml ) );
+            int count = 0;
+            while ( parser.next() != XmlPullParser.END_DOCUMENT )
+            {
+                count++;
+            }
+            assertEquals( 8, count );
+        }
+
+        // same length and same hash code, but different names
+        assertEquals( "Aa".hashCode(), "BB".hashCode() );
+        MXParser parser = new MXParser();
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        parser.setInput( new StringReader( "<p:Aa xmlns:p='urn:p'></p:BB>" ) );
+        parser.next();
+        try
+        {
+            parser.next();
+            fail( "Should fail since end tag does not match" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertTrue( e.getMessage().startsWith( "end tag name </p:BB> must be the same as start tag <p:Aa> from line 1" ) );
+        }
+
+        parser.setInput( new StringReader( "<p:Aa xmlns:p='urn:p'></q:Aa>" ) );
+        parser.next();
+        try
+        {
+            parser.next();
+            fail( "Should fail since end tag does not match" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertTrue( e.getMessage().startsWith( "end tag name </q:Aa> must be the same as start tag <p:Aa> from line 1" ) );
+        }
+
+        parser.setInput( new StringReader( "<root><p:a xmlns:p='urn:p'>" ) );
+        parser.next();
+        parser.next();
+        try
+        {
+            parser.next();
+            fail( "Should fail since document is incomplete" );
+        }
+        catch ( EOFException e )
+        {
+            assertTrue( e.getMessage().contains( "expected end tags </p:a></root> to close start tag <p:a> from line 1 and start tag <root> from line 1" ) );
+        }
+    }
+
+    @Test
+    public void testParseWithHandler()
+        throws Exception
+    {
+        final StringBuffer sb = new StringBuffer();
+        MXParserHandler handler = new MXParserHandler()
+        {
+            public void startElement( String namespace, String name, String prefix, int depth )
+            {
+                sb.append( '<' ).append( depth ).append( '{' ).append( namespace ).append( '}' ).append( name );
+            }
+
+            public void attribute( String namespace, String name, String prefix, String value )
+            {
+                sb.append( ' ' ).append( prefix ).append( ':' ).append( name ).append( '=' ).append( value );
+            }
+
+            public void characters( char[] ch, int start, int length )
+            {
+                sb.append( '[' ).append( ch, start, length ).append( ']' );
+            }
+
+            public void endElement( String namespace, String name, String prefix, int depth )
+            {
+                sb.append( "</" ).append( depth ).append( name ).append( '>' );
+            }
+
+            public void startDocument()
+            {
+                sb.append( "START" );
+            }
+
+            public void endDocument()
+            {
+                sb.append( "END" );
+            }
+        };
+        String xml = "<a xmlns='urn:a' xmlns:x='urn:x' x:y='1'><b>t &amp; <![CDATA[c]]></b><x:c/></a>";
+        String expected = "<1{urn:a}a x:y=1<2{urn:a}b[t & c]</2b><2{urn:x}c</2c></1a>END";
+
+        MXParser parser = new MXParser();
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        parser.setInput( new StringReader( xml ) );
+        assertTrue( parser.parse( handler ) );
+        assertEquals( expected, sb.toString() );
+        assertTrue( parser.parse( handler ) );
+        assertEquals( expected, sb.toString() );
+
+        sb.setLength( 0 );
+        parser.setFeedInput( "UTF-8" );
+        byte[] bytes = xml.getBytes( "UTF-8" );
+        for ( int i = 0; i < bytes.length; i += 5 )
+        {
+            parser.feed( bytes, i, Math.min( 5, bytes.length - i ) );
+            assertFalse( parser.parse( handler ) );
+        }
+        parser.endOfInput();
+        assertTrue( parser.parse( handler ) );
+        assertEquals( expected, sb.toString() );
+
+        sb.setLength( 0 );
+        parser.setInput( new StringReader( "<a>x</a><b>y</b>" ) );
+        parser.setFeature( MXParser.FEATURE_MULTI_DOCUMENT, true );
+        assertTrue( parser.parse( handler ) );
+        assertEquals( "<1{}a[x]</1a>ENDSTART<1{}b[y]</1b>END", sb.toString() );
+        assertTrue( parser.parse( handler ) );
+        assertEquals( "<1{}a[x]</1a>ENDSTART<1{}b[y]</1b>END", sb.toString() );
+    }
+
+    @Test
+    public void testFeedInputRescansOnlyWhenEventCanEnd()
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer( "<root attr=\"" );
+        for ( int i = 0; i < 64 * 1024; i++ )
+        {
+            sb.append( 'a' );
+        }
+        sb.append( "\">" );
+        for ( int i = 0; i < 1024 * 1024; i++ )
+        {
+            sb.append( (char) ( 'a' + i % 26 ) );
+        }
+        sb.append( "</root>" );
+        byte[] bytes = sb.toString().getBytes( "UTF-8" );
+
+        final int[] rescans = new int[1];
+        MXParser parser = new MXParser()
+        {
+            boolean canCompleteEvent()
+                throws XmlPullParserException, IOException
+            {
+                boolean rescan = super.canCompleteEvent();
+                if ( rescan )
+                {
+                    rescans[0]++;
+                }
+                return rescan;
+            }
+        };
+        parser.setFeedInput( "UTF-8" );
+        int off = 0;
+        int eventType;
+        StringBuffer events = new StringBuffer();
+        while ( ( eventType = parser.next() ) != XmlPullParser.END_DOCUMENT )
+        {
+            if ( eventType == MXParser.EVENT_INCOMPLETE )
+            {
+                int len = Math.min( 4096, bytes.length - off );
+                parser.feed( bytes, off, len );
+                off += len;
+                if ( off == bytes.length )
+                {
+                    parser.endOfInput();
+                }
+            }
+            else
+            {
+                events.append( XmlPullParser.TYPES[eventType] ).append( ' ' );
+                int length = eventType == XmlPullParser.TEXT
+                    ? parser.getText().length()
+                    : parser.getAttributeCount() > 0 ? parser.getAttributeValue( 0 ).length() : 0;
+                events.append( length ).append( ' ' );
+            }
+        }
+        assertEquals( "START_TAG 65536 TEXT 1048576 END_TAG 0 ", events.toString() );
+        // each event is scanned again at most once after the chunk containing its end has been fed
+        assertTrue( "rescans: " + rescans[0], rescans[0] <= 3 );
+    }
+
+    @Test
+    public void testPredefinedEntityAfterSupplementaryCharacterReference()
+        throws Exception
+    {
+        String[] inputs = { "<a>&amp;&#x1F600;</a>", "<a>&#x1F600;&amp;&lt;</a>" };
+        String[] texts = { "&😀", "😀&<" };
+        for ( int i = 0; i < inputs.length; i++ )
+        {
+            MXParser parser = new MXParser();
+            parser.setInput( new StringReader( inputs[i] ) );
+            parser.next();
+            assertEquals( XmlPullParser.TEXT, parser.next() );
+            assertEquals( texts[i], parser.getText() );
+
+            byte[] bytes = inputs[i].getBytes( "UTF-8" );
+            for ( int chunk = 1; chunk <= 3; chunk++ )
+            {
+                parser = new MXParser();
+                parser.setFeedInput( "UTF-8" );
+                int off = 0;
+                String text = null;
+                int eventType;
+                while ( ( eventType = parser.next() ) != XmlPullParser.END_DOCUMENT )
+                {
+                    if ( eventType == MXParser.EVENT_INCOMPLETE )
+                    {
+                        if ( off < bytes.length )
+                        {
+                            int len = Math.min( chunk, bytes.length - off );
+                            parser.feed( bytes, off, len );
+                            off += len;
+                        }
+                        else
+                        {
+                            parser.endOfInput();
+                        }
+                    }
+                    else if ( eventType == XmlPullParser.TEXT )
+                    {
+                        text = parser.getText();
+                    }
+                }
+                assertEquals( "chunk " + chunk, texts[i], text );
+            }
+        }
+    }
+
+    @Test
+    public void testSkippedMarkupReleasedBeforeCompaction()
+        throws Exception
+    {
+        String xml = "<?l version=\"1.0\"?>\n<!-- pro -->\n<longElementName a=\"v&amp;&#xE9;0\"><!-- cm --><!-- cm -->"
+            + "&#65;<ElementName at0=\"v&amp;\r\n&#xE9;0\" at1=\"v&amp;\r\n&#xE9;1\"/></longElementName>";
+        MXParserConfig config = MXParserConfig.DEFAULT.withReadChunkSize( 8 ).withInitialBufferSize( 16 );
+        assertEquals( parseToString( new MXParser(), xml ), parseToString( new MXParser( config ), xml ) );
+        xml = "<?pi?>\n<!-- c --><root><?pi data?>text<!-- c --><!-- c -->&amp;<e/></root>\n<!-- c --><?pi?>";
+        assertEquals( parseToString( new MXParser(), xml ), parseToString( new MXParser( config ), xml ) );
+    }
+
+    private static String parseToString( MXParser parser, String xml )
+        throws Exception
+    {
+        parser.setInput( new StringReader( xml ) );
+        StringBuffer sb = new StringBuffer();
+        int type;
+        do
+        {
+            type = parser.next();
+            sb.append( describe( parser ) ).append( '\n' );
+        }
+        while ( type != XmlPullParser.END_DOCUMENT );
+        return sb.toString();
+    }
+
+    @Test
+    public void testFeedInputSplitAfterPendingMarkup()
+        throws Exception
+    {
+        String[][] feeds = {
+            { "<root>text<chi", "ld a='1'>", "xyz" },
+            { "<root>text<", "/root>" },
+            { "<root>text<", "!-- c -->more</root>" },
+            { "<root>a&am", "p;b</root>" } };
+        String[] expected = {
+            "START_TAG root|TEXT text|START_TAG child|",
+            "START_TAG root|TEXT text|END_TAG root|",
+            "START_TAG root|TEXT textmore|END_TAG root|",
+            "START_TAG root|TEXT a|ENTITY_REF amp|TEXT b|END_TAG root|" };
+        for ( int i = 0; i < feeds.length; i++ )
+        {
+            boolean tokenize = i == feeds.length - 1;
+            MXParser parser = new MXParser();
+            parser.setFeedInput( "UTF-8" );
+            StringBuffer events = new StringBuffer();
+            for ( int j = 0; j < feeds[i].length; j++ )
+            {
+                byte[] bytes = feeds[i][j].getBytes( "UTF-8" );
+                parser.feed( bytes, 0, bytes.length );
+                int eventType;
+                while ( ( eventType = tokenize ? parser.nextToken() : parser.next() ) != MXParser.EVENT_INCOMPLETE )
+                {
+                    events.append( XmlPullParser.TYPES[eventType] ).append( ' ' );
+                    events.append( eventType == XmlPullParser.TEXT ? parser.getText() : parser.getName() ).append( '|' );
+                }
+            }
+            assertEquals( expected[i], events.toString() );
+        }
+    }
+
     private static void assertPosition(int row, int col, MXParser parser) {
         assertEquals("Current line", row, parser.getLineNumber());
         assertEquals("Current column", col, parser.getColumnNumber());
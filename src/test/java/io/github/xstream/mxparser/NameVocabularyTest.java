@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import org.junit.Test;
+
+public class NameVocabularyTest
+{
+    private static final int ORDER = 0;
+    private static final int ITEM = 1;
+    private static final int ID = 2;
+    private static final int OTHER_ITEM = 3;
+    private static final int LANG = 4;
+
+    private static final NameVocabulary VOCABULARY = new NameVocabulary(
+        new String[] { "urn:order", "urn:order", null, "urn:other", "http://www.w3.org/XML/1998/namespace" },
+        new String[] { "order", "item", "id", "item", "lang" } );
+
+    @Test
+    public void testIds()
+    {
+        assertEquals( 5, VOCABULARY.size() );
+        assertEquals( ITEM, VOCABULARY.getId( "urn:order", "item" ) );
+        assertEquals( OTHER_ITEM, VOCABULARY.getId( "urn:other", "item" ) );
+        assertEquals( ID, VOCABULARY.getId( null, "id" ) );
+        assertEquals( ID, VOCABULARY.getId( "", "id" ) );
+        assertEquals( NameVocabulary.UNKNOWN, VOCABULARY.getId( "urn:order", "id" ) );
+        assertEquals( NameVocabulary.UNKNOWN, VOCABULARY.getId( "urn:order", "unknown" ) );
+        assertEquals( "", VOCABULARY.getNamespace( ID ) );
+        assertSame( VOCABULARY.getLocalName( ITEM ), VOCABULARY.getLocalName( OTHER_ITEM ) );
+    }
+
+    @Test
+    public void testCollidingHashCodes()
+    {
+        String[] names = new String[] { "Aa", "BB", "AaAa", "BBBB", "AaBB", "BBAa" };
+        NameVocabulary vocabulary = new NameVocabulary( new String[names.length], names );
+        for ( int i = 0; i < names.length; i++ )
+        {
+            assertEquals( i, vocabulary.getId( null, names[i] ) );
+        }
+        assertEquals( NameVocabulary.UNKNOWN, vocabulary.getId( null, "AB" ) );
+    }
+
+    @Test
+    public void testManyNames()
+    {
+        String[] names = new String[3000];
+        for ( int i = 0; i < names.length; i++ )
+        {
+            names[i] = "name" + i;
+        }
+        NameVocabulary vocabulary = new NameVocabulary( new String[names.length], names );
+        for ( int i = 0; i < names.length; i++ )
+        {
+            assertEquals( i, vocabulary.getId( null, names[i] ) );
+            char[] chars = ( "<" + names[i] + ">" ).toCharArray();
+            assertEquals( names[i], vocabulary.getSlotName( vocabulary.lookup( chars, 1, chars.length - 2 ) ) );
+        }
+        assertEquals( NameVocabulary.UNKNOWN, vocabulary.getId( null, "name3000" ) );
+        assertEquals( -1, vocabulary.lookup( "name".toCharArray(), 0, 4 ) );
+    }
+
+    @Test
+    public void testDuplicateName()
+    {
+        try
+        {
+            new NameVocabulary( new String[] { "urn:a", null, "urn:a" }, new String[] { "a", "a", "a" } );
+            fail( "Should fail since name is registered twice" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertEquals( "name {urn:a}a is registered with ID 0 and 2", e.getMessage() );
+        }
+    }
+
+    @Test
+    public void testParserNameIds()
+        throws Exception
+    {
+        String xml = "<order xmlns='urn:order' xmlns:o='urn:other'>"
+            + "<item id='1' xml:lang='en' o:id='x'/><o:item id='2'/><note/></order>";
+        MXParser parser = new MXParser();
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, true );
+        parser.setVocabulary( VOCABULARY );
+        parser.setInput( new StringReader( xml ) );
+        assertEquals( NameVocabulary.UNKNOWN, parser.getNameId() );
+
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( ORDER, parser.getNameId() );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( ITEM, parser.getNameId() );
+        assertSame( VOCABULARY.getLocalName( ITEM ), parser.getName() );
+        assertEquals( ID, parser.getAttributeNameId( 0 ) );
+        assertEquals( LANG, parser.getAttributeNameId( 1 ) );
+        assertEquals( NameVocabulary.UNKNOWN, parser.getAttributeNameId( 2 ) );
+        assertSame( VOCABULARY.getLocalName( ID ), parser.getAttributeName( 2 ) );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( ITEM, parser.getNameId() );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( OTHER_ITEM, parser.getNameId() );
+        assertEquals( ID, parser.getAttributeNameId( 0 ) );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( NameVocabulary.UNKNOWN, parser.getNameId() );
+        assertEquals( "note", parser.getName() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( XmlPullParser.END_TAG, parser.next() );
+        assertEquals( ORDER, parser.getNameId() );
+        try
+        {
+            parser.getAttributeNameId( 0 );
+            fail( "Should fail since END_TAG has no attributes" );
+        }
+        catch ( IndexOutOfBoundsException e )
+        {
+            assertTrue( e.getMessage().contains( "only START_TAG" ) );
+        }
+    }
+
+    @Test
+    public void testParserWithoutNamespaces()
+        throws Exception
+    {
+        NameVocabulary vocabulary = new NameVocabulary( new String[2], new String[] { "o:item", "id" } );
+        MXParser parser = new MXParser();
+        parser.setVocabulary( vocabulary );
+        parser.setInput( new StringReader( "<o:item id='1'><item/></o:item>" ) );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( 0, parser.getNameId() );
+        assertEquals( 1, parser.getAttributeNameId( 0 ) );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( NameVocabulary.UNKNOWN, parser.getNameId() );
+
+        parser.setVocabulary( null );
+        parser.setInput( new StringReader( "<o:item/>" ) );
+        assertEquals( XmlPullParser.START_TAG, parser.next() );
+        assertEquals( NameVocabulary.UNKNOWN, parser.getNameId() );
+        assertNotSame( vocabulary.getLocalName( 0 ), parser.getName() );
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * Creates parsers and describes their events as Strings, so that tests can compare the events of different parsers.
+ */
+final class ParserEvents
+{
+    /** Add the line and column number of the event. */
+    static final int LOCATION = 1;
+
+    /**
+     * Add prefixes, the empty element flag, the namespace declarations in scope and the binding of prefix "a" to
+     * tags, and the whitespace flag to text.
+     */
+    static final int DETAILS = 2;
+
+    private ParserEvents()
+    {
+    }
+
+    static MXParser newParser( String xml, boolean processNamespaces )
+        throws Exception
+    {
+        return newParser( MXParserConfig.DEFAULT, xml, processNamespaces );
+    }
+
+    /**
+     * Create a parser.
+     *
+     * @param xml the input or null to create a parser without input
+     */
+    static MXParser newParser( MXParserConfig config, String xml, boolean processNamespaces )
+        throws Exception
+    {
+        MXParser parser = new MXParser( config );
+        parser.setFeature( XmlPullParser.FEATURE_PROCESS_NAMESPACES, processNamespaces );
+        if ( xml != null )
+        {
+            parser.setInput( new StringReader( xml ) );
+        }
+        return parser;
+    }
+
+    static String describe( XmlPullParser parser )
+        throws Exception
+    {
+        return describe( parser, 0 );
+    }
+
+    /**
+     * Describe the current event as "TYPE depth [@line:col] [prefix] {namespace}name {namespace}attribute=value" for
+     * tags and "TYPE depth [@line:col] 'text'" for any other event with text.
+     */
+    static String describe( XmlPullParser parser, int flags )
+        throws Exception
+    {
+        int type = parser.getEventType();
+        boolean details = ( flags & DETAILS ) != 0;
+        StringBuffer sb = new StringBuffer( XmlPullParser.TYPES[type] );
+        sb.append( ' ' ).append( parser.getDepth() );
+        if ( ( flags & LOCATION ) != 0 )
+        {
+            sb.append( " @" ).append( parser.getLineNumber() ).append( ':' ).append( parser.getColumnNumber() );
+        }
+        if ( type == XmlPullParser.START_TAG || type == XmlPullParser.END_TAG )
+        {
+            if ( details )
+            {
+                sb.append( ' ' ).append( parser.getPrefix() );
+            }
+            sb.append( " {" ).append( parser.getNamespace() ).append( '}' ).append( parser.getName() );
+        }
+        if ( type == XmlPullParser.START_TAG )
+        {
+            if ( details )
+            {
+                sb.append( ' ' ).append( parser.isEmptyElementTag() );
+            }
+            for ( int i = 0; i < parser.getAttributeCount(); i++ )
+            {
+                sb.append( " {" ).append( parser.getAttributeNamespace( i ) ).append( '}' );
+                if ( details )
+                {
+                    sb.append( parser.getAttributePrefix( i ) ).append( ':' );
+                }
+                sb.append( parser.getAttributeName( i ) ).append( '=' ).append( parser.getAttributeValue( i ) );
+            }
+            if ( details )
+            {
+                for ( int i = 0; i < parser.getNamespaceCount( parser.getDepth() ); i++ )
+                {
+                    sb.append( " xmlns:" ).append( parser.getNamespacePrefix( i ) ).append( '=' );
+                    sb.append( parser.getNamespaceUri( i ) );
+                }
+                sb.append( " a=" ).append( parser.getNamespace( "a" ) );
+            }
+        }
+        else if ( type != XmlPullParser.END_TAG && type != XmlPullParser.START_DOCUMENT
+            && type != XmlPullParser.END_DOCUMENT )
+        {
+            sb.append( " '" ).append( parser.getText() ).append( '\'' );
+            if ( details && type == XmlPullParser.TEXT )
+            {
+                sb.append( ' ' ).append( parser.isWhitespace() );
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Describe the remaining events up to and including the END_DOCUMENT.
+     *
+     * @param tokenize true to use nextToken() instead of next()
+     */
+    static List<String> events( XmlPullParser parser, boolean tokenize, int flags )
+        throws Exception
+    {
+        List<String> events = new ArrayList<String>();
+        int type;
+        do
+        {
+            type = tokenize ? parser.nextToken() : parser.next();
+            events.add( describe( parser, flags ) );
+        }
+        while ( type != XmlPullParser.END_DOCUMENT );
+        return events;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2026 XStream committers.
+ * All rights reserved.
+ *
+ * The software in this package is published under the terms of the BSD
+ * style license a copy of which has been included with this distribution in
+ * the LICENSE.txt file.
+ *
+ * Created on 19. October 2026
+ */
+package io.github.xstream.mxparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import org.junit.Test;
+
+public class StructuralIndexTest
+{
+    private static final String XML = "<?xml version='1.0'?>\n"
+        + "<!DOCTYPE catalog [<!ELEMENT catalog ANY>]>\n"
+        + "<catalog>\r\n"
+        + "  <item id='1' name=\"a &amp; b\"><!-- first --><price>1.99</price></item>\n"
+        + "  <item id='2' note='line\r\nbreak'><![CDATA[<raw>]]>x &lt; y &#x41;&#66;</item>\n"
+        + "  <empty/>\n"
+        + "</catalog>\n<?pi after?>";
+
+    @Test
+    public void testCursorEvents()
+        throws Exception
+    {
+        StructuralIndex index = StructuralIndex.build( new StringReader( XML ) );
+        StructuralIndex.Cursor cursor = index.cursor();
+        assertEquals( XmlPullParser.START_DOCUMENT, cursor.getType() );
+
+        assertEquals( XmlPullParser.START_TAG, cursor.next() );
+        assertEquals( 1, cursor.getDepth() );
+        assertTrue( cursor.isName( "catalog" ) );
+        assertEquals( 0, cursor.getAttributeCount() );
+        assertEquals( XmlPullParser.TEXT, cursor.next() );
+        assertEquals( "\n  ", cursor.getText() );
+
+        assertEquals( XmlPullParser.START_TAG, cursor.next() );
+        assertEquals( 2, cursor.getDepth() );
+        assertEquals( "item", cursor.getName() );
+        assertEquals( 2, cursor.getAttributeCount() );
+        assertEquals( "name", cursor.getAttributeName( 1 ) );
+        assertEquals( "a & b", cursor.getAttributeValue( 1 ) );
+        assertEquals( "1", cursor.getAttributeValue( "id" ) );
+        assertNull( cursor.getAttributeValue( "unknown" ) );
+        assertEquals( XmlPullParser.START_TAG, cursor.next() );
+        assertEquals( 3, cursor.getDepth() );
+        assertEquals( XmlPullParser.TEXT, cursor.next() );
+        assertEquals( "1.99", cursor.getText() );
+        assertEquals( "1.99", new String( index.getCharacters(), cursor.getStart(), cursor.getEnd() - cursor.getStart() ) );
+        assertEquals( XmlPullParser.END_TAG, cursor.next() );
+        assertEquals( 3, cursor.getDepth() );
+        assertEquals( XmlPullParser.END_TAG, cursor.next() );
+        assertEquals( 2, cursor.getDepth() );
+        assertTrue( cursor.isName( "item" ) );
+
+        assertEquals( XmlPullParser.START_TAG, cursor.nextTag() );
+        assertEquals( "line break", cursor.getAttributeValue( "note" ) );
+        assertEquals( XmlPullParser.CDSECT, cursor.next() );
+        assertEquals( "<raw>", cursor.getText() );
+        assertEquals( XmlPullParser.TEXT, cursor.next() );
+        assertEquals( "x < y AB", cursor.getText() );
+        assertEquals( XmlPullParser.END_TAG, cursor.next() );
+
+        assertEquals( XmlPullParser.START_TAG, cursor.nextTag() );
+        assertEquals( "empty", cursor.getName() );
+        assertEquals( XmlPullParser.END_TAG, cursor.next() );
+        assertEquals( 2, cursor.getDepth() );
+        assertEquals( XmlPullParser.END_TAG, cursor.nextTag() );
+        assertEquals( 1, cursor.getDepth() );
+        assertEquals( XmlPullParser.END_DOCUMENT, cursor.next() );
+        assertEquals( XmlPullParser.END_DOCUMENT, cursor.next() );
+    }
+
+    @Test
+    public void testLineBreaksInCdataSection()
+        throws Exception
+    {
+        String xml = "<a><![CDATA[a\r\nb&amp;\rc]]>d\r\n</a>";
+        StructuralIndex.Cursor cursor = StructuralIndex.build( new StringReader( xml ) ).cursor();
+        MXParser parser = new MXParser();
+        parser.setInput( new StringReader( xml ) );
+        assertEquals( XmlPullParser.START_TAG, cursor.next() );
+        assertEquals( XmlPullParser.START_TAG, parser.nextToken() );
+        assertEquals( XmlPullParser.CDSECT, cursor.next() );
+        assertEquals( XmlPullParser.CDSECT, parser.nextToken() );
+        assertEquals( "a\nb&amp;\nc", cursor.getText() );
+        assertEquals( parser.getText(), cursor.getText() );
+        assertEquals( XmlPullParser.TEXT, cursor.next() );
+        assertEquals( "d\n", cursor.getText() );
+    }
+
+    @Test
+    public void testSkipElements()
+        throws Exception
+    {
+        StringBuffer sb = new StringBuffer( "<items>" );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            sb.append( "<item n='" ).append( i ).append( "'><a><b>deep</b></a><c/></item>" );
+        }
+        sb.append( "</items>" );
+        char[] chars = sb.toString().toCharArray();
+        StructuralIndex index = StructuralIndex.build( chars, 0, chars.length );
+        assertEquals( 1 + 1000 * 10 + 1, index.size() );
+
+        StructuralIndex.Cursor cursor = index.cursor();
+        cursor.next();
+        int count = 0;
+        while ( cursor.nextTag() == XmlPullParser.START_TAG )
+        {
+            assertEquals( String.valueOf( count++ ), cursor.getAttributeValue( 0 ) );
+            assertEquals( XmlPullParser.END_TAG, cursor.skip() );
+            assertTrue( cursor.isName( "item" ) );
+            assertEquals( 2, cursor.getDepth() );
+        }
+        assertEquals( 1000, count );
+        assertFalse( cursor.isName( "item" ) );
+        assertEquals( 1, cursor.getDepth() );
+
+        try
+        {
+            cursor.skip();
+            fail( "Should fail since cursor is on end tag" );
+        }
+        catch ( IllegalStateException e )
+        {
+            assertEquals( "cursor is on END_TAG and not on START_TAG", e.getMessage() );
+        }
+    }
+
+    @Test
+    public void testMalformedDocuments()
+        throws Exception
+    {
+        assertError( "<a><b></a>", "end tag name </a> must match start tag name <b> (offset: 8)" );
+        assertError( "<a><b>", "no more data available - expected end tag </b> (offset: 6)" );
+        assertError( "<a/><b/>", "only one root element is allowed (offset: 5)" );
+        assertError( "<a x=1/>", "attribute value must start with quotation or apostrophe (offset: 5)" );
+        assertError( "<a><!-- x </a>", "unexpected end of document, expected --> (offset: 7)" );
+        assertError( "", "document contains no root element (offset: 0)" );
+
+        char[] chars = "<a>&unknown;</a>".toCharArray();
+        StructuralIndex.Cursor cursor = StructuralIndex.build( chars, 0, chars.length ).cursor();
+        cursor.next();
+        cursor.next();
+        try
+        {
+            cursor.getText();
+            fail( "Should fail since entity is unknown" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertEquals( "could not resolve entity named 'unknown' (offset: 4)", e.getMessage() );
+        }
+    }
+
+    private static void assertError( String xml, String message )
+        throws Exception
+    {
+        try
+        {
+            StructuralIndex.build( new StringReader( xml ) );
+            fail( "Should fail for " + xml );
+        }
+        catch ( XmlPullParserException e )
+        {
+            assertEquals( message, e.getMessage() );
+        }
+    }
+}